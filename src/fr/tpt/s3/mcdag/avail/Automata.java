@@ -27,6 +27,7 @@ import fr.tpt.s3.mcdag.model.Vertex;
 import fr.tpt.s3.mcdag.model.VertexAvailability;
 import fr.tpt.s3.mcdag.model.VertexScheduling;
 import fr.tpt.s3.mcdag.model.McDAG;
+import fr.tpt.s3.mcdag.model.SchedulingTable;
 import fr.tpt.s3.mcdag.scheduling.SingleDAG;
 
 public class Automata {
@@ -66,12 +67,11 @@ public class Automata {
 	// Calculate completion time of tasks and create a new state
 	public void calcCompTimeLO (String task) {
 		int c_t = 0;
-		for (int i = 0; i < ls.getDeadline(); i++){
+		int index = ls.getTable().indexOf(task);
+		for (int i = 0; i < ls.getDeadline() && index != SchedulingTable.IDLE; i++){
 			for (int j = 0; j < ls.getNbCores(); j++) {
-				if (ls.getSched()[0][i] != null && ls.getSched()[0][i][j] != null) {
-					if (ls.getSched()[0][i][j].contentEquals(task))
-						c_t = i;
-				}
+				if (ls.getTable().get(0, i, j) == index)
+					c_t = i;
 			}
 		}
 
@@ -112,9 +112,10 @@ public class Automata {
 	// Calculate completion time of tasks and create a new state HI mode
 	public void calcCompTimeHI (String task) {
 		int c_t = 0;
-		for (int i = 0; i < ls.getDeadline(); i++){
+		int index = ls.getTable().indexOf(task);
+		for (int i = 0; i < ls.getDeadline() && index != SchedulingTable.IDLE; i++){
 			for (int j = 0; j < ls.getNbCores(); j++) {
-				if (ls.getSched()[1][i][j].contentEquals(task))
+				if (ls.getTable().get(1, i, j) == index)
 					c_t = i;
 			}
 		}
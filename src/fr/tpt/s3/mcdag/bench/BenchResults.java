@@ -0,0 +1,200 @@
+/*******************************************************************************
+ * Copyright (c) 2017, 2018 Roberto Medina
+ * Written by Roberto Medina (rmedina@telecom-paristech.fr)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package fr.tpt.s3.mcdag.bench;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Results of the benchmark threads. The totals of each policy are kept in
+ * memory with counters that the threads update without locking, the rows of
+ * the tested systems are written to the result file by a single thread.
+ * @author roberto
+ *
+ */
+public class BenchResults {
+
+	// Stops the writer, compared by reference
+	private static final String DONE = new String();
+	
+	private LongAdder schedulable[];
+	private LongAdder preempts[];
+	private LongAdder activations[];
+	private LongAdder systems;
+	
+	private BlockingQueue<String> rows;
+	private Thread writer;
+	private IOException error;
+	
+	/**
+	 * Constructor, the result file is created with its header
+	 * @param outFile
+	 * @param header
+	 * @param nbPolicies
+	 * @throws IOException
+	 */
+	public BenchResults (String outFile, String header, int nbPolicies) throws IOException {
+		final Writer output = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(outFile), "UTF-8"));
+		
+		schedulable = new LongAdder[nbPolicies];
+		preempts = new LongAdder[nbPolicies];
+		activations = new LongAdder[nbPolicies];
+		for (int p = 0; p < nbPolicies; p++) {
+			schedulable[p] = new LongAdder();
+			preempts[p] = new LongAdder();
+			activations[p] = new LongAdder();
+		}
+		systems = new LongAdder();
+		
+		rows = new LinkedBlockingQueue<String>();
+		output.write(header+"\n");
+		writer = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				write(output);
+			}
+		});
+		writer.setName("ResultsWriter");
+		writer.start();
+	}
+	
+	/**
+	 * Results of dual-criticality systems: federated, laxity, EDF and hybrid
+	 * @param outFile
+	 * @return
+	 * @throws IOException
+	 */
+	public static BenchResults dualCriticality (String outFile) throws IOException {
+		return new BenchResults(outFile, "Thread; File; FSched (%); FPreempts; FAct; LSched (%); LPreempts; LAct; ESched (%); EPreempts; EAct; HSched(%); HPreempts; HAct; Utilization", 4);
+	}
+	
+	/**
+	 * Results of N-level systems: laxity, EDF and hybrid
+	 * @param outFile
+	 * @return
+	 * @throws IOException
+	 */
+	public static BenchResults nLevels (String outFile) throws IOException {
+		return new BenchResults(outFile, "Thread; File; LSched (%); LPreempts; LAct; ESched (%); EPreempts; EAct; HSched(%); HPreempts; HAct; Utilization", 3);
+	}
+	
+	private void write (Writer output) {
+		try {
+			for (String row = rows.take(); row != DONE; row = rows.take())
+				output.write(row);
+		} catch (IOException e) {
+			error = e;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			try {
+				output.close();
+			} catch (IOException e) {
+				if (error == null)
+					error = e;
+			}
+		}
+	}
+	
+	/**
+	 * Adds the result of a policy for a system
+	 * @param policy
+	 * @param sched
+	 * @param nbPreempts
+	 * @param nbActivations
+	 */
+	public void add (int policy, boolean sched, int nbPreempts, int nbActivations) {
+		if (sched)
+			schedulable[policy].increment();
+		preempts[policy].add(nbPreempts);
+		activations[policy].add(nbActivations);
+	}
+	
+	/**
+	 * Queues the row of a tested system, once its policies were added
+	 * @param row
+	 */
+	public void addRow (String row) {
+		systems.increment();
+		rows.add(row);
+	}
+	
+	/**
+	 * Waits until all the rows are written and closes the result file
+	 * @throws IOException If a row could not be written
+	 * @throws InterruptedException
+	 */
+	public void close () throws IOException, InterruptedException {
+		rows.put(DONE);
+		writer.join();
+		if (error != null)
+			throw error;
+	}
+	
+	/**
+	 * Appends the totals of the policies to a file: the ratio of schedulable
+	 * systems, the preemptions, the activations and the preemptions per activation
+	 * @param outFile
+	 * @param utilization
+	 * @param nbSystems Number of systems that were expected
+	 * @throws IOException
+	 */
+	public void writeTotals (String outFile, double utilization, int nbSystems) throws IOException {
+		Writer output = new BufferedWriter(new FileWriter(outFile, true));
+		StringBuilder line = new StringBuilder(Thread.currentThread().getName()+"; "+utilization);
+		
+		for (int p = 0; p < schedulable.length; p++) {
+			long nbPreempts = preempts[p].sum();
+			long nbActivations = activations[p].sum();
+			
+			line.append("; "+((double) schedulable[p].sum() / nbSystems)+"; "+nbPreempts+"; "+nbActivations
+						+"; "+((double) nbPreempts / nbActivations));
+		}
+		output.write(line.append("\n").toString());
+		output.close();
+	}
+	
+	/*
+	 * Getters
+	 */
+	public int getNbPolicies() {
+		return schedulable.length;
+	}
+	
+	public long getSchedulable(int policy) {
+		return schedulable[policy].sum();
+	}
+	
+	public long getPreempts(int policy) {
+		return preempts[policy].sum();
+	}
+	
+	public long getActivations(int policy) {
+		return activations[policy].sum();
+	}
+	
+	public long getNbSystems() {
+		return systems.sum();
+	}
+}
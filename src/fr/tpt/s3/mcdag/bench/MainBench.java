@@ -16,13 +16,9 @@
  *******************************************************************************/
 package fr.tpt.s3.mcdag.bench;
 
-import java.io.BufferedWriter;
-import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.io.PrintWriter;
-import java.io.Writer;
-import java.util.Scanner;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
@@ -37,6 +33,7 @@ import org.apache.commons.cli.ParseException;
 
 import fr.tpt.s3.mcdag.bench.multidag.BenchThreadDualCriticality;
 import fr.tpt.s3.mcdag.bench.nlevel.BenchThreadNLevels;
+import fr.tpt.s3.mcdag.parser.MCBinaryArchive;
 
 /**
  * These benchmarks compares us to the state of the art techniques
@@ -46,12 +43,41 @@ import fr.tpt.s3.mcdag.bench.nlevel.BenchThreadNLevels;
  */
 public class MainBench {
 
+	/**
+	 * Lists the systems given as input: one per XML file and
+	 * one per system stored in a binary archive. An archive is mapped and
+	 * indexed once, its systems are read from the same mapping.
+	 * @param inputFilePath
+	 * @param inputs Input file of each system
+	 * @param systems Index of each system in its archive, -1 for XML files
+	 * @param archives Archive of each system, null for XML files
+	 * @throws IOException
+	 */
+	private static void listSystems (String inputFilePath[], List<String> inputs, List<Integer> systems,
+									 List<MCBinaryArchive> archives) throws IOException {
+		for (String in : inputFilePath) {
+			if (MCBinaryArchive.isArchive(in)) {
+				MCBinaryArchive archive = new MCBinaryArchive(in);
+				
+				for (int i = 0; i < archive.getNbSystems(); i++) {
+					inputs.add(in);
+					systems.add(i);
+					archives.add(archive);
+				}
+			} else {
+				inputs.add(in);
+				systems.add(-1);
+				archives.add(null);
+			}
+		}
+	}
+
 	public static void main (String[] args) throws IOException, InterruptedException {
 		
 		// Command line options
 		Options options = new Options();
 		
-		Option input = new Option("i", "input", true, "MC-DAG XML models");
+		Option input = new Option("i", "input", true, "MC-DAG XML models or binary archives");
 		input.setRequired(true);
 		input.setArgs(Option.UNLIMITED_VALUES);
 		options.addOption(input);
@@ -84,6 +110,10 @@ public class MainBench {
 		debug.setRequired(false);
 		options.addOption(debug);
 		
+		Option parallel = new Option("p", "parallel", false, "Test the scheduling policies of a file concurrently.");
+		parallel.setRequired(false);
+		options.addOption(parallel);
+		
 		/*
 		 * Parsing of the command line
 		 */
@@ -105,9 +135,15 @@ public class MainBench {
 		String outputFilePathTotal = cmd.getOptionValue("output-total");
 		double utilization = Double.parseDouble(cmd.getOptionValue("utilization"));
 		boolean boolDebug = cmd.hasOption("debug");
+		boolean boolParallel = cmd.hasOption("parallel");
 		int nbLvls = Integer.parseInt(cmd.getOptionValue("levels"));
 		int nbJobs = 1;
-		int nbFiles = inputFilePath.length;
+		List<String> inputs = new ArrayList<String>();
+		List<Integer> systems = new ArrayList<Integer>();
+		List<MCBinaryArchive> archives = new ArrayList<MCBinaryArchive>();
+		
+		listSystems(inputFilePath, inputs, systems, archives);
+		int nbFiles = inputs.size();
 				
 		if (cmd.hasOption("jobs"))
 			nbJobs = Integer.parseInt(cmd.getOptionValue("jobs"));
@@ -126,13 +162,16 @@ public class MainBench {
 			
 			int i_files2 = 0;
 			String outFile = outputFilePath.substring(0, outputFilePath.lastIndexOf('.')).concat("-schedulability.csv");
-			PrintWriter writer = new PrintWriter(outFile, "UTF-8");
-			writer.println("Thread; File; FSched (%); FPreempts; FAct; LSched (%); LPreempts; LAct; ESched (%); EPreempts; EAct; HSched(%); HPreempts; HAct; Utilization");
-			writer.close();
+			BenchResults results = BenchResults.dualCriticality(outFile);
 						
 			ExecutorService executor2 = Executors.newFixedThreadPool(nbJobs);
 			while (i_files2 != nbFiles) {
-				BenchThreadDualCriticality bt2 = new BenchThreadDualCriticality(inputFilePath[i_files2], outFile, nbCores, boolDebug);
+				BenchThreadDualCriticality bt2 = new BenchThreadDualCriticality(inputs.get(i_files2), results, nbCores, boolDebug);
+				if (systems.get(i_files2) >= 0) {
+					bt2.setArchive(archives.get(i_files2));
+					bt2.setSystemIndex(systems.get(i_files2));
+				}
+				bt2.setParallel(boolParallel);
 				
 				executor2.execute(bt2);
 				i_files2++;
@@ -141,93 +180,24 @@ public class MainBench {
 			executor2.shutdown();
 			executor2.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
 			
-			int fedTotal = 0;
-			int laxTotal = 0;
-			int edfTotal = 0;
-			int hybridTotal = 0;
-			int fedPreempts = 0;
-			int laxPreempts = 0;
-			int edfPreempts = 0;
-			int hybridPreempts = 0;
-			int fedActiv = 0;
-			int laxActiv = 0;
-			int edfActiv = 0;
-			int hybridActiv = 0;
-			// Read lines in file and do average
-			int i = 0;
-			File f = new File(outFile);
-			@SuppressWarnings("resource")
-			Scanner line = new Scanner(f);
-			while (line.hasNextLine()) {
-				String s = line.nextLine();
-				if (i > 0) { // To skip the first line
-					try (Scanner inLine = new Scanner(s).useDelimiter("; ")) {
-						int j = 0;
-						
-						while (inLine.hasNext()) {
-							String val = inLine.next();
-							if (j == 2) {
-								fedTotal += Integer.parseInt(val);
-							} else if (j == 3) {
-								fedPreempts += Integer.parseInt(val);
-							} else if (j == 4) {
-								fedActiv += Integer.parseInt(val);
-							} else if (j == 5) {
-								laxTotal += Integer.parseInt(val);
-							} else if (j == 6) {
-								laxPreempts += Integer.parseInt(val);
-							} else if (j == 7) {
-								laxActiv += Integer.parseInt(val);
-							} else if (j == 8) {
-								edfTotal += Integer.parseInt(val);
-							} else if (j == 9) {
-								edfPreempts += Integer.parseInt(val);
-							} else if (j == 10) {
-								edfActiv += Integer.parseInt(val);
-							} else if (j == 11) {
-								hybridTotal += Integer.parseInt(val);
-							} else if (j == 12) {
-								hybridPreempts += Integer.parseInt(val);
-							} else if (j == 13) {
-								hybridActiv += Integer.parseInt(val);
-							}
-							j++;
-						}
-					}
-				}
-				i++;
-			}
-			
-			// Write percentage
-			double fedPerc = (double) fedTotal / nbFiles;
-			double laxPerc = (double) laxTotal / nbFiles;
-			double edfPerc = (double) edfTotal / nbFiles;
-			double hybridPerc = (double) hybridTotal / nbFiles;
-			
-			double fedPercPreempts = (double) fedPreempts / fedActiv;
-			double laxPercPreempts = (double) laxPreempts / laxActiv;
-			double edfPercPreempts = (double) edfPreempts / edfActiv;
-			double hybridPercPreempts = (double) hybridPreempts / hybridActiv;
-			
-			Writer wOutput = new BufferedWriter(new FileWriter(outputFilePathTotal, true));
-			wOutput.write(Thread.currentThread().getName()+"; "+utilization+"; "+fedPerc+"; "+fedPreempts+"; "+fedActiv+"; "+fedPercPreempts+"; "
-						  +laxPerc+"; "+laxPreempts+"; "+laxActiv+"; "+laxPercPreempts+"; "
-						  +edfPerc+"; "+edfPreempts+"; "+edfActiv+"; "+edfPercPreempts+"; "
-						  +hybridPerc+"; "+hybridPreempts+"; "+hybridActiv+"; "+hybridPercPreempts+"\n");
-			wOutput.close();
+			results.close();
+			results.writeTotals(outputFilePathTotal, utilization, nbFiles);
 			
 		} else if (nbLvls > 2) {
 			int i_files2 = 0;
 			String outFile = outputFilePath.substring(0, outputFilePath.lastIndexOf('.')).concat("-schedulability.csv");
-			PrintWriter writer = new PrintWriter(outFile, "UTF-8");
-			writer.println("Thread; File; LSched (%); LPreempts; LAct; ESched (%); EPreempts; EAct; HSched(%); HPreempts; HAct; Utilization");
-			writer.close();
+			BenchResults results = BenchResults.nLevels(outFile);
 			
 
 			
 			ExecutorService executor2 = Executors.newFixedThreadPool(nbJobs);
 			while (i_files2 != nbFiles) {
-				BenchThreadNLevels bt2 = new BenchThreadNLevels(inputFilePath[i_files2], outFile, nbCores, boolDebug);
+				BenchThreadNLevels bt2 = new BenchThreadNLevels(inputs.get(i_files2), results, nbCores, boolDebug);
+				if (systems.get(i_files2) >= 0) {
+					bt2.setArchive(archives.get(i_files2));
+					bt2.setSystemIndex(systems.get(i_files2));
+				}
+				bt2.setParallel(boolParallel);
 				
 				executor2.execute(bt2);
 				i_files2++;
@@ -236,69 +206,8 @@ public class MainBench {
 			executor2.shutdown();
 			executor2.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
 			
-			int laxTotal = 0;
-			int edfTotal = 0;
-			int hybridTotal = 0;
-			int laxPreempts = 0;
-			int edfPreempts = 0;
-			int hybridPreempts = 0;
-			int laxActiv = 0;
-			int edfActiv = 0;
-			int hybridActiv = 0;
-			// Read lines in file and do average
-			int i = 0;
-			File f = new File(outFile);
-			@SuppressWarnings("resource")
-			Scanner line = new Scanner(f);
-			while (line.hasNextLine()) {
-				String s = line.nextLine();
-				if (i > 0) { // To skip the first line
-					try (Scanner inLine = new Scanner(s).useDelimiter("; ")) {
-						int j = 0;
-						
-						while (inLine.hasNext()) {
-							String val = inLine.next();
-							if (j == 2) {
-								laxTotal += Integer.parseInt(val);
-							} else if (j == 3) {
-								laxPreempts += Integer.parseInt(val);
-							} else if (j == 4) {
-								laxActiv += Integer.parseInt(val);
-							} else if (j == 5) {
-								edfTotal += Integer.parseInt(val);
-							} else if (j == 6) {
-								edfPreempts += Integer.parseInt(val);
-							} else if (j == 7) {
-								edfActiv += Integer.parseInt(val);
-							} else if (j == 8) {
-								hybridTotal += Integer.parseInt(val);
-							} else if (j == 9) {
-								hybridPreempts += Integer.parseInt(val);
-							} else if (j == 10) {
-								hybridActiv += Integer.parseInt(val);
-							}
-							j++;
-						}
-					}
-				}
-				i++;
-			}
-			
-			// Write percentage
-			double laxPerc = (double) laxTotal / nbFiles;
-			double edfPerc = (double) edfTotal / nbFiles;
-			double hybridPerc = (double) hybridTotal / nbFiles;
-			
-			double laxPercPreempts = (double) laxPreempts / laxActiv;
-			double edfPercPreempts = (double) edfPreempts / edfActiv;
-			double hybridPercPreempts = (double) hybridPreempts / hybridActiv;
-			
-			Writer wOutput = new BufferedWriter(new FileWriter(outputFilePathTotal, true));
-			wOutput.write(Thread.currentThread().getName()+"; "+utilization+"; "
-						  +laxPerc+"; "+laxPreempts+"; "+laxActiv+"; "+laxPercPreempts+"; "
-						  +edfPerc+"; "+edfPreempts+"; "+edfActiv+"; "+edfPercPreempts+"; "
-						  +hybridPerc+"; "+hybridPreempts+"; "+hybridActiv+"; "+hybridPercPreempts+"\n");
-			wOutput.close();
+			results.close();
+			results.writeTotals(outputFilePathTotal, utilization, nbFiles);
 			
 		} else {
 			System.err.println("Wrong number of levels");
@@ -0,0 +1,248 @@
+/*******************************************************************************
+ * Copyright (c) 2017, 2018 Roberto Medina
+ * Written by Roberto Medina (rmedina@telecom-paristech.fr)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package fr.tpt.s3.mcdag.bench;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.CommandLineParser;
+import org.apache.commons.cli.DefaultParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+
+import fr.tpt.s3.mcdag.bench.multidag.BenchThreadDualCriticality;
+import fr.tpt.s3.mcdag.bench.nlevel.BenchThreadNLevels;
+import fr.tpt.s3.mcdag.generator.MCSystemGenerator;
+import fr.tpt.s3.mcdag.generator.MCSystemGeneratorDev;
+import fr.tpt.s3.mcdag.model.McDAG;
+import fr.tpt.s3.mcdag.parser.MCParser;
+import fr.tpt.s3.mcdag.util.RandomNumberGenerator;
+
+/**
+ * Generates systems and benchmarks them in the same process: the generated
+ * MC-DAGs go through a bounded queue to the benchmark threads without being
+ * written and parsed again. Writing the systems to XML files is optional.
+ * The results are the same than the ones of MainBench on the written files.
+ * @author roberto
+ *
+ */
+public class MainPipeline {
+
+	public static void main (String[] args) throws IOException, InterruptedException {
+		
+		// Command line options
+		Options options = new Options();
+		
+		Option o_hi = new Option("mu", "max_utilization", true, "Upper bound utilization");
+		o_hi.setRequired(true);
+		options.addOption(o_hi);
+		
+		Option o_tasks = new Option("nt", "nb_tasks", true, "Number of tasks for the system");
+		o_tasks.setRequired(true);
+		options.addOption(o_tasks);
+				
+		Option o_eprob = new Option("e", "eprobability", true, "Probability of edges");
+		o_eprob.setRequired(true);
+		options.addOption(o_eprob);
+		
+		Option o_levels = new Option("l", "levels", true, "Number of criticality levels");
+		o_levels.setRequired(true);
+		options.addOption(o_levels);
+		
+		Option o_para = new Option("p", "parallelism", true, "Max parallelism for the DAGs");
+		o_para.setRequired(true);
+		options.addOption(o_para);
+		
+		Option o_nbdags = new Option("nd", "num_dags", true, "Number of DAGs");
+		o_nbdags.setRequired(true);
+		options.addOption(o_nbdags);
+		
+		Option o_nbfiles = new Option("nf", "num_files", true, "Number of systems");
+		o_nbfiles.setRequired(true);
+		options.addOption(o_nbfiles);
+		
+		Option o_rfactor = new Option("rf", "reduc_factor", true, "Reduction factor for criticality modes");
+		o_rfactor.setRequired(false);
+		options.addOption(o_rfactor);
+		
+		Option seedOpt = new Option("s", "seed", true, "Master seed, each system is generated from its own stream of the seed");
+		seedOpt.setRequired(false);
+		options.addOption(seedOpt);
+		
+		Option writeOpt = new Option("w", "write", true, "Also write the systems to XML files named after this file");
+		writeOpt.setRequired(false);
+		options.addOption(writeOpt);
+		
+		Option output = new Option("o", "output", true, "Folder where results have to be written.");
+		output.setRequired(true);
+		options.addOption(output);
+		
+		Option output2 = new Option("ot", "output-total", true, "File where total results are being written");
+		output2.setRequired(true);
+		options.addOption(output2);
+		
+		Option oCores = new Option("c", "cores", true, "Cores given to the test");
+		oCores.setRequired(true);
+		options.addOption(oCores);
+		
+		Option jobs = new Option("j", "jobs", true, "Number of benchmark threads.");
+		jobs.setRequired(false);
+		options.addOption(jobs);
+		
+		Option genJobs = new Option("gj", "gen-jobs", true, "Number of generator threads.");
+		genJobs.setRequired(false);
+		options.addOption(genJobs);
+		
+		Option queueOpt = new Option("q", "queue", true, "Number of generated systems waiting to be tested.");
+		queueOpt.setRequired(false);
+		options.addOption(queueOpt);
+		
+		Option debug = new Option("d", "debug", false, "Debug logs.");
+		debug.setRequired(false);
+		options.addOption(debug);
+		
+		Option parallel = new Option("pa", "parallel", false, "Test the scheduling policies of a system concurrently.");
+		parallel.setRequired(false);
+		options.addOption(parallel);
+		
+		/*
+		 * Parsing of the command line
+		 */
+		CommandLineParser parser = new DefaultParser();
+		HelpFormatter formatter = new HelpFormatter();
+		CommandLine cmd;
+		
+		try {
+			cmd = parser.parse(options, args);
+		} catch (ParseException e ) {
+			System.err.println(e.getMessage());
+			formatter.printHelp("Generation and benchmarks", options);
+			System.exit(1);
+			return;
+		}
+		
+		final double maxU = Double.parseDouble(cmd.getOptionValue("max_utilization"));
+		final int nbTasks = Integer.parseInt(cmd.getOptionValue("nb_tasks"));
+		final int edgeProb = Integer.parseInt(cmd.getOptionValue("eprobability"));
+		final int nbLvls = Integer.parseInt(cmd.getOptionValue("levels"));
+		final int para = Integer.parseInt(cmd.getOptionValue("parallelism"));
+		final int nbDags = Integer.parseInt(cmd.getOptionValue("num_dags"));
+		final int nbFiles = Integer.parseInt(cmd.getOptionValue("num_files"));
+		final double rfactor = cmd.hasOption("reduc_factor") ? Double.parseDouble(cmd.getOptionValue("reduc_factor")) : 2.0;
+		final boolean seeded = cmd.hasOption("seed");
+		final long seed = seeded ? Long.parseLong(cmd.getOptionValue("seed")) : 0;
+		final String writeFile = cmd.getOptionValue("write");
+		final String outputFilePath = cmd.getOptionValue("output");
+		final String outputFilePathTotal = cmd.getOptionValue("output-total");
+		final int nbCores = Integer.parseInt(cmd.getOptionValue("cores"));
+		final boolean boolDebug = cmd.hasOption("debug");
+		final boolean boolParallel = cmd.hasOption("parallel");
+		int nbJobs = 1;
+		int nbGenJobs = 1;
+		
+		if (cmd.hasOption("jobs"))
+			nbJobs = Integer.parseInt(cmd.getOptionValue("jobs"));
+		if (cmd.hasOption("gen-jobs"))
+			nbGenJobs = Integer.parseInt(cmd.getOptionValue("gen-jobs"));
+		int capacity = 2 * nbJobs;
+		if (cmd.hasOption("queue"))
+			capacity = Integer.parseInt(cmd.getOptionValue("queue"));
+		
+		if (nbFiles < 0 || nbDags < 0 || nbJobs < 1 || nbGenJobs < 1 || capacity < 1 || nbLvls < 2) {
+			System.err.println("[ERROR] Pipeline: wrong number of systems, DAGs, threads or levels.");
+			formatter.printHelp("Generation and benchmarks", options);
+			System.exit(1);
+			return;
+		}
+		
+		String outFile = outputFilePath.substring(0, outputFilePath.lastIndexOf('.')).concat("-schedulability.csv");
+		final BenchResults results = nbLvls == 2 ? BenchResults.dualCriticality(outFile) : BenchResults.nLevels(outFile);
+		
+		final Pipeline pipeline = new Pipeline(capacity, nbJobs);
+		final AtomicInteger next = new AtomicInteger();
+		Thread generators[] = new Thread[nbGenJobs];
+		
+		/* Generators take the next system to create until all are created */
+		for (int i = 0; i < nbGenJobs; i++) {
+			generators[i] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					for (int count = next.getAndIncrement(); count < nbFiles; count = next.getAndIncrement()) {
+						MCSystemGenerator ug = new MCSystemGeneratorDev(maxU, nbTasks, edgeProb, nbLvls, para,
+																		nbDags, rfactor, boolDebug);
+						String name = "genned-"+count;
+						
+						if (seeded)
+							ug.setRng(new RandomNumberGenerator(seed, count));
+						ug.genAllDags();
+						
+						if (writeFile != null) {
+							MCParser mcp;
+							
+							name = writeFile.substring(0, writeFile.lastIndexOf('.')).concat("-"+count+".xml");
+							mcp = new MCParser(name, ug);
+							mcp.setNbLevels(nbLvls);
+							try {
+								mcp.writeGennedDAG();
+							} catch (IOException e) {
+								System.err.println("[ERROR] Failed to write the system in the pipeline " + e.getMessage());
+								System.exit(1);
+								return;
+							}
+						}
+						
+						Set<McDAG> system = ug.buildSystem();
+						Runnable bench;
+						if (nbLvls == 2) {
+							BenchThreadDualCriticality bt = new BenchThreadDualCriticality(system, name, results, nbCores, boolDebug);
+							
+							bt.setParallel(boolParallel);
+							bench = bt;
+						} else {
+							BenchThreadNLevels bt = new BenchThreadNLevels(system, name, nbLvls, results, nbCores, boolDebug);
+							
+							bt.setParallel(boolParallel);
+							bench = bt;
+						}
+						
+						try {
+							pipeline.submit(bench);
+						} catch (InterruptedException e) {
+							Thread.currentThread().interrupt();
+							return;
+						}
+					}
+				}
+			});
+			generators[i].setName("GeneratorThread-"+i);
+			generators[i].start();
+		}
+		
+		for (Thread t : generators)
+			t.join();
+		pipeline.finish();
+		
+		results.close();
+		results.writeTotals(outputFilePathTotal, maxU, nbFiles);
+		
+		System.out.println("[BENCH Pipeline] Done benchmarking U = "+maxU+" Levels "+nbLvls);
+	}
+}
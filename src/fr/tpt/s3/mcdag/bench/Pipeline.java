@@ -0,0 +1,96 @@
+/*******************************************************************************
+ * Copyright (c) 2017, 2018 Roberto Medina
+ * Written by Roberto Medina (rmedina@telecom-paristech.fr)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package fr.tpt.s3.mcdag.bench;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Bounded queue between the threads that produce the tests and the threads
+ * that run them. Producers block when the queue is full, so the systems that
+ * are generated faster than they are scheduled do not pile up in memory.
+ * @author roberto
+ *
+ */
+public class Pipeline {
+
+	// Tells a worker to stop
+	private static final Runnable DONE = new Runnable() {
+		@Override
+		public void run() {
+		}
+	};
+	
+	private BlockingQueue<Runnable> queue;
+	private Thread workers[];
+	
+	/**
+	 * Constructor, the workers are started right away
+	 * @param capacity Number of tests that can wait in the queue
+	 * @param nbWorkers
+	 */
+	public Pipeline (int capacity, int nbWorkers) {
+		queue = new ArrayBlockingQueue<Runnable>(capacity);
+		workers = new Thread[nbWorkers];
+		
+		for (int i = 0; i < nbWorkers; i++) {
+			workers[i] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					work();
+				}
+			});
+			workers[i].setName("BenchWorker-"+i);
+			workers[i].start();
+		}
+	}
+	
+	private void work () {
+		try {
+			for (Runnable task = queue.take(); task != DONE; task = queue.take()) {
+				// A failed test must not stop the worker, the producers would block
+				try {
+					task.run();
+				} catch (RuntimeException e) {
+					e.printStackTrace();
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+	
+	/**
+	 * Adds a test, waits until there is room in the queue
+	 * @param task
+	 * @throws InterruptedException
+	 */
+	public void submit (Runnable task) throws InterruptedException {
+		queue.put(task);
+	}
+	
+	/**
+	 * Waits until all the submitted tests are done and stops the workers
+	 * @throws InterruptedException
+	 */
+	public void finish () throws InterruptedException {
+		for (int i = 0; i < workers.length; i++)
+			queue.put(DONE);
+		for (Thread t : workers)
+			t.join();
+	}
+}
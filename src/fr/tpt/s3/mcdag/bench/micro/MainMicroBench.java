@@ -0,0 +1,380 @@
+/*******************************************************************************
+ * Copyright (c) 2017, 2018 Roberto Medina
+ * Written by Roberto Medina (rmedina@telecom-paristech.fr)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package fr.tpt.s3.mcdag.bench.micro;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.CommandLineParser;
+import org.apache.commons.cli.DefaultParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+
+import fr.tpt.s3.mcdag.generator.MCSystemGenerator;
+import fr.tpt.s3.mcdag.generator.MCSystemGeneratorDev;
+import fr.tpt.s3.mcdag.model.McDAG;
+import fr.tpt.s3.mcdag.model.Vertex;
+import fr.tpt.s3.mcdag.model.VertexScheduling;
+import fr.tpt.s3.mcdag.parser.MCParser;
+import fr.tpt.s3.mcdag.scheduling.EartliestDeadlineFirstMCSched;
+import fr.tpt.s3.mcdag.scheduling.FederatedMCSched;
+import fr.tpt.s3.mcdag.scheduling.GlobalGenericMCScheduler;
+import fr.tpt.s3.mcdag.scheduling.HybridMCSched;
+import fr.tpt.s3.mcdag.scheduling.LeastLaxityFirstMCSched;
+import fr.tpt.s3.mcdag.scheduling.SchedulingException;
+import fr.tpt.s3.mcdag.scheduling.SingleDAG;
+import fr.tpt.s3.mcdag.util.Counters;
+import fr.tpt.s3.mcdag.util.RandomNumberGenerator;
+
+/**
+ * Microbenchmarks of the hot paths of the framework: the global schedulers,
+ * the federated and single DAG schedulers, the preemption counters, the XML
+ * parser and the generator. The systems are generated from a seed for each
+ * number of tasks and of levels, and read from the given XML files.
+ * Every scheduler is measured on each number of cores.
+ * @author roberto
+ *
+ */
+public class MainMicroBench {
+
+	// Results are printed here, the framework prints are dropped
+	private static PrintStream results;
+	private static String filter;
+	private static int warmups;
+	private static int iterations;
+	
+	/**
+	 * System used by the benchmarks
+	 */
+	private static class Fixture {
+		private String name;
+		private String file;
+		private Set<McDAG> dags;
+		private int levels;
+		
+		private Fixture (String name, String file, Set<McDAG> dags, int levels) {
+			this.name = name;
+			this.file = file;
+			this.dags = dags;
+			this.levels = levels;
+		}
+	}
+	
+	private static int[] parseList (String values) {
+		String split[] = values.split(",");
+		int ret[] = new int[split.length];
+		
+		for (int i = 0; i < split.length; i++)
+			ret[i] = Integer.parseInt(split[i].trim());
+		return ret;
+	}
+	
+	/**
+	 * Runs a benchmark if its name matches the filter and prints its times
+	 * @param b
+	 * @param fixture
+	 * @param levels
+	 * @param cores
+	 * @throws Exception
+	 */
+	private static void bench (MicroBenchmark b, String fixture, int levels, int cores) throws Exception {
+		if (filter != null && !b.getName().matches(filter))
+			return;
+		
+		b.measure(warmups, iterations);
+		results.println(b.getName()+"; "+fixture+"; "+levels+"; "+cores+"; "
+						+String.format("%.1f", b.getMean() / 1000.0)+"; "
+						+String.format("%.1f", b.getMedian() / 1000.0)+"; "
+						+String.format("%.1f", b.getMin() / 1000.0));
+	}
+	
+	/**
+	 * Global scheduler of a policy
+	 * @param policy
+	 * @param f
+	 * @param cores
+	 * @return
+	 */
+	private static GlobalGenericMCScheduler global (String policy, Fixture f, int cores) {
+		Set<McDAG> dags = McDAG.copyAll(f.dags);
+		
+		if (policy.contentEquals("llf"))
+			return new LeastLaxityFirstMCSched(dags, cores, f.levels, false, true);
+		else if (policy.contentEquals("edf"))
+			return new EartliestDeadlineFirstMCSched(dags, cores, f.levels, false, true);
+		return new HybridMCSched(dags, cores, f.levels, false, true);
+	}
+	
+	private static void benchSchedulers (final Fixture f, final int cores) throws Exception {
+		for (final String policy : new String[] {"llf", "edf", "hybrid"}) {
+			bench(new MicroBenchmark(policy+".scheduleSystem") {
+				private GlobalGenericMCScheduler sched;
+				
+				@Override
+				protected void setUp() {
+					if (sched != null)
+						sched.closeTable();
+					sched = global(policy, f, cores);
+				}
+				
+				@Override
+				protected long run() {
+					try {
+						sched.scheduleSystem();
+						return 1;
+					} catch (SchedulingException se) {
+						return 0;
+					}
+				}
+			}, f.name, f.levels, cores);
+		}
+		
+		// Schedulers of dual-criticality systems
+		if (f.levels == 2) {
+			bench(new MicroBenchmark("federated.buildAllTables") {
+				private FederatedMCSched sched;
+				
+				@Override
+				protected void setUp() {
+					sched = new FederatedMCSched(McDAG.copyAll(f.dags), cores, false);
+				}
+				
+				@Override
+				protected long run() {
+					try {
+						sched.buildAllTables();
+						return 1;
+					} catch (SchedulingException se) {
+						return 0;
+					}
+				}
+			}, f.name, f.levels, cores);
+			
+			bench(new MicroBenchmark("singleDAG.buildAllTables") {
+				private List<SingleDAG> scheds;
+				
+				@Override
+				protected void setUp() {
+					if (scheds != null) {
+						for (SingleDAG sched : scheds)
+							sched.closeTable();
+					}
+					scheds = new ArrayList<SingleDAG>();
+					for (McDAG d : McDAG.copyAll(f.dags))
+						scheds.add(new SingleDAG(d, cores));
+				}
+				
+				@Override
+				protected long run() {
+					long ret = 0;
+					
+					for (SingleDAG sched : scheds) {
+						try {
+							sched.buildAllTables();
+							ret++;
+						} catch (SchedulingException se) {
+							continue;
+						}
+					}
+					return ret;
+				}
+			}, f.name, f.levels, cores);
+		}
+		
+		// Preemptions are counted on the table built by LLF
+		final GlobalGenericMCScheduler llf = global("llf", f, cores);
+		try {
+			llf.scheduleSystem();
+		} catch (SchedulingException se) {
+			// The table is partially filled, it can still be counted
+		}
+		// No table when the system is rejected before the tables are built
+		if (llf.getTable() == null)
+			return;
+		bench(new MicroBenchmark("counters.countPreemptions") {
+			private Hashtable<VertexScheduling, Integer> refs;
+			
+			@Override
+			protected void setUp() {
+				refs = new Hashtable<VertexScheduling, Integer>();
+				for (McDAG d : llf.getMcDAGs()) {
+					for (Vertex a : d.getVertices())
+						refs.put((VertexScheduling) a, 0);
+				}
+			}
+			
+			@Override
+			protected long run() {
+				return Counters.countPreemptions(llf.getTable(), refs, f.levels, llf.gethPeriod(), cores).getTotalStarts();
+			}
+		}, f.name, f.levels, cores);
+	}
+	
+	private static void benchParser (final Fixture f) throws Exception {
+		bench(new MicroBenchmark("parser.readXML") {
+			@Override
+			protected long run() {
+				Set<McDAG> dags = new HashSet<McDAG>();
+				MCParser mcp = new MCParser(f.file, null, dags, false);
+				
+				mcp.readXML();
+				return dags.size();
+			}
+		}, f.name, f.levels, 0);
+	}
+	
+	public static void main (String[] args) throws Exception {
+		
+		// Command line options
+		Options options = new Options();
+		
+		Option benchOpt = new Option("b", "bench", true, "Regular expression of the benchmarks to run, e.g. llf.*");
+		benchOpt.setRequired(false);
+		options.addOption(benchOpt);
+		
+		Option filesOpt = new Option("f", "files", true, "MC-DAG XML models used as fixtures, e.g. btests/*.xml");
+		filesOpt.setRequired(false);
+		filesOpt.setArgs(Option.UNLIMITED_VALUES);
+		options.addOption(filesOpt);
+		
+		Option tasksOpt = new Option("nt", "nb_tasks", true, "Numbers of tasks of the generated systems, separated by commas");
+		tasksOpt.setRequired(false);
+		options.addOption(tasksOpt);
+		
+		Option levelsOpt = new Option("l", "levels", true, "Numbers of levels of the generated systems, separated by commas");
+		levelsOpt.setRequired(false);
+		options.addOption(levelsOpt);
+		
+		Option coresOpt = new Option("c", "cores", true, "Numbers of cores given to the schedulers, separated by commas");
+		coresOpt.setRequired(false);
+		options.addOption(coresOpt);
+		
+		Option uOpt = new Option("u", "utilization", true, "Utilization of the generated systems");
+		uOpt.setRequired(false);
+		options.addOption(uOpt);
+		
+		Option dagsOpt = new Option("nd", "num_dags", true, "Number of DAGs of the generated systems");
+		dagsOpt.setRequired(false);
+		options.addOption(dagsOpt);
+		
+		Option seedOpt = new Option("s", "seed", true, "Seed of the generated systems");
+		seedOpt.setRequired(false);
+		options.addOption(seedOpt);
+		
+		Option warmOpt = new Option("w", "warmups", true, "Warm-up invocations of each benchmark");
+		warmOpt.setRequired(false);
+		options.addOption(warmOpt);
+		
+		Option itOpt = new Option("it", "iterations", true, "Measured invocations of each benchmark");
+		itOpt.setRequired(false);
+		options.addOption(itOpt);
+		
+		CommandLineParser parser = new DefaultParser();
+		HelpFormatter formatter = new HelpFormatter();
+		CommandLine cmd;
+		
+		try {
+			cmd = parser.parse(options, args);
+		} catch (ParseException e) {
+			System.err.println(e.getMessage());
+			formatter.printHelp("Microbenchmarks", options);
+			System.exit(1);
+			return;
+		}
+		
+		filter = cmd.getOptionValue("bench");
+		String files[] = cmd.hasOption("files") ? cmd.getOptionValues("files") : new String[0];
+		int sizes[] = parseList(cmd.getOptionValue("nb_tasks", "20,40"));
+		int levels[] = parseList(cmd.getOptionValue("levels", "2,3"));
+		int cores[] = parseList(cmd.getOptionValue("cores", "4,8"));
+		final double utilization = Double.parseDouble(cmd.getOptionValue("utilization", "3.0"));
+		final int nbDags = Integer.parseInt(cmd.getOptionValue("num_dags", "2"));
+		final long seed = Long.parseLong(cmd.getOptionValue("seed", "1"));
+		warmups = Integer.parseInt(cmd.getOptionValue("warmups", "5"));
+		iterations = Integer.parseInt(cmd.getOptionValue("iterations", "10"));
+		
+		if (warmups < 0 || iterations < 1) {
+			System.err.println("[ERROR] Microbenchmarks: at least one measured invocation is needed.");
+			System.exit(1);
+			return;
+		}
+		
+		results = System.out;
+		System.setOut(new PrintStream(new OutputStream() {
+			@Override
+			public void write(int b) {
+			}
+		}));
+		results.println("Benchmark; Fixture; Levels; Cores; Mean (us); Median (us); Min (us)");
+		
+		/* Fixtures: generated systems then XML files */
+		List<Fixture> fixtures = new ArrayList<Fixture>();
+		for (final int size : sizes) {
+			for (final int lvl : levels) {
+				MCSystemGenerator ug = new MCSystemGeneratorDev(utilization, size, 20, lvl, 4, nbDags, 2.0, false);
+				
+				ug.setRng(new RandomNumberGenerator(seed, 0));
+				ug.genAllDags();
+				fixtures.add(new Fixture("genned-"+size, null, ug.buildSystem(), lvl));
+				
+				bench(new MicroBenchmark("generator.genAllDags") {
+					private MCSystemGenerator gen;
+					private long stream;
+					
+					@Override
+					protected void setUp() {
+						gen = new MCSystemGeneratorDev(utilization, size, 20, lvl, 4, nbDags, 2.0, false);
+						gen.setRng(new RandomNumberGenerator(seed, stream++));
+					}
+					
+					@Override
+					protected long run() {
+						gen.genAllDags();
+						return gen.getGennedDAGs().size();
+					}
+				}, "genned-"+size, lvl, 0);
+			}
+		}
+		for (String file : files) {
+			Set<McDAG> dags = new HashSet<McDAG>();
+			MCParser mcp = new MCParser(file, null, dags, false);
+			
+			mcp.readXML();
+			if (dags.isEmpty()) {
+				System.err.println("[WARNING] Microbenchmarks: no MC-DAG could be read from "+file);
+				continue;
+			}
+			fixtures.add(new Fixture(file, file, dags, mcp.getNbLevels()));
+		}
+		
+		for (Fixture f : fixtures) {
+			if (f.file != null)
+				benchParser(f);
+			for (int c : cores)
+				benchSchedulers(f, c);
+		}
+		results.println("Sink "+MicroBenchmark.getSink());
+	}
+}
@@ -0,0 +1,128 @@
+/*******************************************************************************
+ * Copyright (c) 2017, 2018 Roberto Medina
+ * Written by Roberto Medina (rmedina@telecom-paristech.fr)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package fr.tpt.s3.mcdag.bench.micro;
+
+import java.util.Arrays;
+
+/**
+ * Measure of one operation of the framework. Each invocation is prepared by
+ * setUp, which is not measured, then run is timed. Warm-up invocations are run
+ * first so the measured ones use compiled code. The values returned by run are
+ * accumulated so the JIT cannot remove the measured work.
+ * @author roberto
+ *
+ */
+public abstract class MicroBenchmark {
+
+	// Values returned by the invocations
+	private static volatile long sink;
+	
+	private String name;
+	private long times[];
+	
+	public MicroBenchmark (String name) {
+		this.name = name;
+	}
+	
+	/**
+	 * Prepares the state used by the next invocation, it is not measured
+	 * @throws Exception
+	 */
+	protected void setUp () throws Exception {
+	}
+	
+	/**
+	 * Measured operation
+	 * @return A value that depends on the work that was done
+	 * @throws Exception
+	 */
+	protected abstract long run () throws Exception;
+	
+	/**
+	 * Runs the warm-up invocations then the measured ones
+	 * @param warmups
+	 * @param iterations
+	 * @throws Exception
+	 */
+	public void measure (int warmups, int iterations) throws Exception {
+		long acc = 0;
+		
+		for (int i = 0; i < warmups; i++) {
+			setUp();
+			acc += run();
+		}
+		
+		times = new long[iterations];
+		for (int i = 0; i < iterations; i++) {
+			setUp();
+			long start = System.nanoTime();
+			acc += run();
+			times[i] = System.nanoTime() - start;
+		}
+		sink += acc;
+	}
+	
+	/**
+	 * Average time of the measured invocations
+	 * @return In nanoseconds
+	 */
+	public double getMean () {
+		double sum = 0;
+		
+		for (long t : times)
+			sum += t;
+		return sum / times.length;
+	}
+	
+	/**
+	 * Median time of the measured invocations
+	 * @return In nanoseconds
+	 */
+	public long getMedian () {
+		long sorted[] = times.clone();
+		
+		Arrays.sort(sorted);
+		return sorted[sorted.length / 2];
+	}
+	
+	/**
+	 * Shortest time of the measured invocations
+	 * @return In nanoseconds
+	 */
+	public long getMin () {
+		long min = Long.MAX_VALUE;
+		
+		for (long t : times)
+			min = Math.min(min, t);
+		return min;
+	}
+	
+	/*
+	 * Getters
+	 */
+	public String getName() {
+		return name;
+	}
+	
+	public long[] getTimes() {
+		return times;
+	}
+	
+	public static long getSink() {
+		return sink;
+	}
+}
@@ -16,17 +16,19 @@
  *******************************************************************************/
 package fr.tpt.s3.mcdag.bench.multidag;
 
-import java.io.BufferedWriter;
-import java.io.FileWriter;
-import java.io.IOException;
-import java.io.Writer;
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.Hashtable;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
+import fr.tpt.s3.mcdag.bench.BenchResults;
 import fr.tpt.s3.mcdag.model.Vertex;
 import fr.tpt.s3.mcdag.model.VertexScheduling;
 import fr.tpt.s3.mcdag.model.McDAG;
+import fr.tpt.s3.mcdag.parser.MCBinaryArchive;
 import fr.tpt.s3.mcdag.parser.MCParser;
 import fr.tpt.s3.mcdag.scheduling.EartliestDeadlineFirstMCSched;
 import fr.tpt.s3.mcdag.scheduling.FederatedMCSched;
@@ -40,7 +42,10 @@ public class BenchThreadDualCriticality implements Runnable {
 	private Set<McDAG> dags;
 	private MCParser mcp;
 	private String inputFile;
-	private String outputFile;
+	private int systemIndex = -1;
+	// The system is given to the thread instead of being read
+	private boolean inMemory;
+	private BenchResults results;
 	private boolean debug;
 	private int nbCores;
 	private FederatedMCSched fedScheduler;
@@ -61,10 +66,13 @@ public class BenchThreadDualCriticality implements Runnable {
 	private boolean schedEdf;
 	private boolean schedHybrid;
 	
-	public BenchThreadDualCriticality (String input, String output, int cores, boolean debug) {
+	// Policies are tested concurrently
+	private boolean parallel;
+	
+	public BenchThreadDualCriticality (String input, BenchResults results, int cores, boolean debug) {
 		setInputFile(input);
 		dags = new HashSet<McDAG>();
-		setOutputFile(output);
+		setResults(results);
 		setNbCores(cores);
 		setDebug(debug);
 		setSchedFede(true);
@@ -75,13 +83,24 @@ public class BenchThreadDualCriticality implements Runnable {
 	}
 	
 	/**
-	 * Writes the results of the thread in the text file
-	 * @throws IOException 
+	 * Constructor for a system that is already in memory, e.g. a generated one
+	 * @param system
+	 * @param name Name of the system in the results
+	 * @param results
+	 * @param cores
+	 * @param debug
+	 */
+	public BenchThreadDualCriticality (Set<McDAG> system, String name, BenchResults results, int cores, boolean debug) {
+		this(name, results, cores, debug);
+		dags.addAll(system);
+		inMemory = true;
+	}
+	
+	/**
+	 * Adds the results of the thread to the totals and queues its row
 	 */
-	private synchronized void writeResults () throws IOException {
-		Writer output;
+	private void writeResults () {
 		double uDAGs = 0.0;
-		output = new BufferedWriter(new FileWriter(getOutputFile(), true));
 		
 		int outBFSched = 0;
 		int outBLSched = 0;
@@ -133,12 +152,15 @@ public class BenchThreadDualCriticality implements Runnable {
 		for (McDAG d : dags)
 			uDAGs += d.getUmax();
 		
-		output.write(Thread.currentThread().getName()+"; "+getInputFile()+"; "+outBFSched+"; "+outPreemptsFed+"; "+outActFed+"; "
+		results.add(0, isSchedFede(), outPreemptsFed, outActFed);
+		results.add(1, isSchedLax(), outPreemptsLax, outActLax);
+		results.add(2, isSchedEdf(), outPreemptsEdf, outActEdf);
+		results.add(3, isSchedHybrid(), outPreemptsHybrid, outActHybrid);
+		results.addRow(Thread.currentThread().getName()+"; "+getSystemName()+"; "+outBFSched+"; "+outPreemptsFed+"; "+outActFed+"; "
 		+outBLSched+"; "+outPreemptsLax+"; "+outActLax+"; "
 		+outBEDFSched+"; "+outPreemptsEdf+"; "+outActEdf+"; "
 		+outBHybridSched+"; "+outPreemptsHybrid+"; "+outActHybrid+"; "
 		+uDAGs+"\n");
-		output.close();
 	}
 	
 	/**
@@ -154,13 +176,11 @@ public class BenchThreadDualCriticality implements Runnable {
 		}
 	}
 	
-	@Override
-	public void run() {
-		mcp.readXML();
-		
-		// Test federated approach
-		// Make a copy of the system instance
-		Set<McDAG> fedDAGs = new HashSet<McDAG>(dags);
+	/**
+	 * Test federated approach
+	 * @param fedDAGs
+	 */
+	private void testFederated (Set<McDAG> fedDAGs) {
 		fedScheduler = new FederatedMCSched(fedDAGs, nbCores, debug);
 		
 		try {
@@ -169,10 +189,13 @@ public class BenchThreadDualCriticality implements Runnable {
 			setSchedFede(false);
 			if (isDebug()) System.out.println("[BENCH "+Thread.currentThread().getName()+"] FEDERATED non schedulable with "+nbCores+" cores.");
 		}
-		
-		// Test edf
-		// Make another copy of the system instance
-		Set<McDAG> edfDAGs = new HashSet<McDAG>(dags);
+	}
+	
+	/**
+	 * Test edf
+	 * @param edfDAGs
+	 */
+	private void testEdf (Set<McDAG> edfDAGs) {
 		edf = new EartliestDeadlineFirstMCSched(edfDAGs, nbCores, 2, debug, true);
 		
 		try {
@@ -181,38 +204,111 @@ public class BenchThreadDualCriticality implements Runnable {
 		} catch (SchedulingException se) {
 			setSchedEdf(false);
 			if (isDebug()) System.out.println("[BENCH "+Thread.currentThread().getName()+"] EDF non schedulable with "+nbCores+" cores.");
+		} finally {
+			// Only the counters are kept
+			edf.closeTable();
 		}
+	}
 	
-		// Test laxity
-		llf = new LeastLaxityFirstMCSched(edfDAGs, nbCores, 2, debug, true);
+	/**
+	 * Test laxity
+	 * @param laxDAGs
+	 */
+	private void testLax (Set<McDAG> laxDAGs) {
+		llf = new LeastLaxityFirstMCSched(laxDAGs, nbCores, 2, debug, true);
 		
 		try {
-			resetVisited(edfDAGs);
+			resetVisited(laxDAGs);
 			llf.scheduleSystem();
 		} catch (SchedulingException se) {
 			setSchedLax(false);
 			if (isDebug()) System.out.println("[BENCH "+Thread.currentThread().getName()+"] LAXITY non schedulable with "+nbCores+" cores.");
+		} finally {
+			// Only the counters are kept
+			llf.closeTable();
 		}
-		
-		// Test hybrid
-		hybrid = new HybridMCSched(edfDAGs, nbCores, 2, debug, true);
+	}
+	
+	/**
+	 * Test hybrid
+	 * @param hybridDAGs
+	 */
+	private void testHybrid (Set<McDAG> hybridDAGs) {
+		hybrid = new HybridMCSched(hybridDAGs, nbCores, 2, debug, true);
 		
 		try {
-			resetVisited(edfDAGs);
+			resetVisited(hybridDAGs);
 			hybrid.scheduleSystem();
 		} catch (SchedulingException se) {
 			setSchedHybrid(false);
 			if (isDebug()) System.out.println("[BENCH "+Thread.currentThread().getName()+"] HYBRID non schedulable with "+nbCores+" cores.");
+		} finally {
+			// Only the counters are kept
+			hybrid.closeTable();
 		}
+	}
+	
+	/**
+	 * Runs the tests of the policies, concurrently on the common fork/join pool
+	 * when the thread is parallel
+	 * @param tests
+	 */
+	private void runTests (Runnable tests[]) {
+		if (isParallel()) {
+			List<ForkJoinTask<?>> tasks = new ArrayList<ForkJoinTask<?>>();
+			
+			for (Runnable t : tests)
+				tasks.add(ForkJoinPool.commonPool().submit(t));
+			for (ForkJoinTask<?> t : tasks)
+				t.join();
+		} else {
+			for (Runnable t : tests)
+				t.run();
+		}
+	}
+	
+	@Override
+	public void run() {
+		if (!inMemory)
+			mcp.read();
+		
+		// Each policy schedules its own copy of the system instance
+		final Set<McDAG> fedDAGs = McDAG.copyAll(dags);
+		final Set<McDAG> edfDAGs = McDAG.copyAll(dags);
+		final Set<McDAG> laxDAGs = McDAG.copyAll(dags);
+		final Set<McDAG> hybridDAGs = McDAG.copyAll(dags);
+		
+		Runnable tests[] = {
+			new Runnable() {
+				@Override
+				public void run() {
+					testFederated(fedDAGs);
+				}
+			},
+			new Runnable() {
+				@Override
+				public void run() {
+					testEdf(edfDAGs);
+				}
+			},
+			new Runnable() {
+				@Override
+				public void run() {
+					testLax(laxDAGs);
+				}
+			},
+			new Runnable() {
+				@Override
+				public void run() {
+					testHybrid(hybridDAGs);
+				}
+			}
+		};
+		runTests(tests);
 		
 		// Write results
-		try {
-			writeResults();
-			if (isDebug()) System.out.println("[BENCH "+Thread.currentThread().getName()+"] Writing results "+nbCores+" cores.");
-
-		} catch (IOException ie) {
-			ie.printStackTrace();
-		}
+		writeResults();
+		if (isDebug()) System.out.println("[BENCH "+Thread.currentThread().getName()+"] Writing results "+nbCores+" cores.");
 	}
 	
 	/*
@@ -242,6 +338,35 @@ public class BenchThreadDualCriticality implements Runnable {
 		this.inputFile = inputFile;
 	}
 
+	public int getSystemIndex() {
+		return systemIndex;
+	}
+
+	/**
+	 * Selects the system to test when the input is a binary archive
+	 * @param systemIndex
+	 */
+	public void setSystemIndex(int systemIndex) {
+		this.systemIndex = systemIndex;
+		mcp.setSystemIndex(systemIndex);
+	}
+
+	/**
+	 * Reads the system from an archive mapped once for all the threads
+	 * @param archive
+	 */
+	public void setArchive(MCBinaryArchive archive) {
+		mcp.setArchive(archive);
+	}
+
+	/**
+	 * Name of the tested system in the results
+	 * @return
+	 */
+	public String getSystemName() {
+		return systemIndex < 0 ? inputFile : inputFile+"#"+systemIndex;
+	}
+
 	public boolean isDebug() {
 		return debug;
 	}
@@ -258,12 +383,12 @@ public class BenchThreadDualCriticality implements Runnable {
 		this.schedFede = schedFede;
 	}
 
-	public String getOutputFile() {
-		return outputFile;
+	public BenchResults getResults() {
+		return results;
 	}
 
-	public void setOutputFile(String outputFile) {
-		this.outputFile = outputFile;
+	public void setResults(BenchResults results) {
+		this.results = results;
 	}
 
 	public boolean isSchedLax() {
@@ -289,4 +414,12 @@ public class BenchThreadDualCriticality implements Runnable {
 	public void setSchedHybrid(boolean schedHybrid) {
 		this.schedHybrid = schedHybrid;
 	}
+
+	public boolean isParallel() {
+		return parallel;
+	}
+
+	public void setParallel(boolean parallel) {
+		this.parallel = parallel;
+	}
 }
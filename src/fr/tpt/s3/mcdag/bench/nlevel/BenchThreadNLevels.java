@@ -16,17 +16,19 @@
  *******************************************************************************/
 package fr.tpt.s3.mcdag.bench.nlevel;
 
-import java.io.BufferedWriter;
-import java.io.FileWriter;
-import java.io.IOException;
-import java.io.Writer;
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.Hashtable;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
+import fr.tpt.s3.mcdag.bench.BenchResults;
 import fr.tpt.s3.mcdag.model.McDAG;
 import fr.tpt.s3.mcdag.model.Vertex;
 import fr.tpt.s3.mcdag.model.VertexScheduling;
+import fr.tpt.s3.mcdag.parser.MCBinaryArchive;
 import fr.tpt.s3.mcdag.parser.MCParser;
 import fr.tpt.s3.mcdag.scheduling.EartliestDeadlineFirstMCSched;
 import fr.tpt.s3.mcdag.scheduling.GlobalGenericMCScheduler;
@@ -39,7 +41,10 @@ public class BenchThreadNLevels implements Runnable {
 	private Set<McDAG> dags;
 	private MCParser mcp;
 	private String inputFile;
-	private String outputFile;
+	private int systemIndex = -1;
+	// The system is given to the thread instead of being read
+	private boolean inMemory;
+	private BenchResults results;
 	private boolean debug;
 	private int nbCores;
 	private GlobalGenericMCScheduler llf;
@@ -49,10 +54,13 @@ public class BenchThreadNLevels implements Runnable {
 	private boolean schedEdf;
 	private boolean schedHybrid;
 	
-	public BenchThreadNLevels(String input, String output, int cores, boolean debug) {
+	// Policies are tested concurrently
+	private boolean parallel;
+	
+	public BenchThreadNLevels(String input, BenchResults results, int cores, boolean debug) {
 		setInputFile(input);
 		dags = new HashSet<McDAG>();
-		setOutputFile(output);
+		setResults(results);
 		setNbCores(cores);
 		setDebug(debug);
 		setSchedLax(true);
@@ -62,13 +70,26 @@ public class BenchThreadNLevels implements Runnable {
 	}
 	
 	/**
-	 * Writes the results of the thread in the text file
-	 * @throws IOException 
+	 * Constructor for a system that is already in memory, e.g. a generated one
+	 * @param system
+	 * @param name Name of the system in the results
+	 * @param levels
+	 * @param results
+	 * @param cores
+	 * @param debug
 	 */
-	private synchronized void writeResults () throws IOException {
-		Writer output;
+	public BenchThreadNLevels (Set<McDAG> system, String name, int levels, BenchResults results, int cores, boolean debug) {
+		this(name, results, cores, debug);
+		dags.addAll(system);
+		mcp.setNbLevels(levels);
+		inMemory = true;
+	}
+	
+	/**
+	 * Adds the results of the thread to the totals and queues its row
+	 */
+	private void writeResults () {
 		double uDAGs = 0.0;
-		output = new BufferedWriter(new FileWriter(getOutputFile(), true));
 		
 		int outBLSched = 0;
 		int outBEDFSched = 0;
@@ -107,12 +128,14 @@ public class BenchThreadNLevels implements Runnable {
 		for (McDAG d : dags)
 			uDAGs += d.getUmax();
 		
-		output.write(Thread.currentThread().getName()+"; "+getInputFile()+"; "
+		results.add(0, isSchedLax(), outPreemptsLax, outActLax);
+		results.add(1, isSchedEdf(), outPreemptsEdf, outActEdf);
+		results.add(2, isSchedHybrid(), outPreemptsHybrid, outActHybrid);
+		results.addRow(Thread.currentThread().getName()+"; "+getSystemName()+"; "
 		+outBLSched+"; "+outPreemptsLax+"; "+outActLax+"; "
 		+outBEDFSched+"; "+outPreemptsEdf+"; "+outActEdf+"; "
 		+outBHybridSched+"; "+outPreemptsHybrid+"; "+outActHybrid+"; "
 		+uDAGs+"\n");
-		output.close();
 	}
 	
 	private void resetVisited (Set<McDAG> sd) {
@@ -125,51 +148,117 @@ public class BenchThreadNLevels implements Runnable {
 	}
 	
 	
-	@Override
-	public void run() {
-		mcp.readXML();
-		// Test edf
-		// Make another copy of the system instance
-		edf = new EartliestDeadlineFirstMCSched(getDags(), nbCores, mcp.getNbLevels(), debug, true);
+	/**
+	 * Test edf
+	 * @param edfDAGs
+	 */
+	private void testEdf (Set<McDAG> edfDAGs) {
+		edf = new EartliestDeadlineFirstMCSched(edfDAGs, nbCores, mcp.getNbLevels(), debug, true);
 		
 		try {
-			resetVisited(getDags());
+			resetVisited(edfDAGs);
 			edf.scheduleSystem();
 		} catch (SchedulingException se) {
 			setSchedEdf(false);
 			if (isDebug()) System.out.println("[BENCH "+Thread.currentThread().getName()+"] EDF non schedulable with "+nbCores+" cores.");
+		} finally {
+			// Only the counters are kept
+			edf.closeTable();
 		}
+	}
 	
-		// Test laxity
-		llf = new LeastLaxityFirstMCSched(getDags(), nbCores, mcp.getNbLevels(), debug, true);
+	/**
+	 * Test laxity
+	 * @param laxDAGs
+	 */
+	private void testLax (Set<McDAG> laxDAGs) {
+		llf = new LeastLaxityFirstMCSched(laxDAGs, nbCores, mcp.getNbLevels(), debug, true);
 		
 		try {
-			resetVisited(getDags());
+			resetVisited(laxDAGs);
 			llf.scheduleSystem();
 		} catch (SchedulingException se) {
 			setSchedLax(false);
 			if (isDebug()) System.out.println("[BENCH "+Thread.currentThread().getName()+"] LAXITY non schedulable with "+nbCores+" cores.");
+		} finally {
+			// Only the counters are kept
+			llf.closeTable();
 		}
-		
-		// Test hybrid
-		hybrid = new HybridMCSched(getDags(), nbCores, mcp.getNbLevels(), debug, true);
+	}
+	
+	/**
+	 * Test hybrid
+	 * @param hybridDAGs
+	 */
+	private void testHybrid (Set<McDAG> hybridDAGs) {
+		hybrid = new HybridMCSched(hybridDAGs, nbCores, mcp.getNbLevels(), debug, true);
 		
 		try {
-			resetVisited(getDags());
+			resetVisited(hybridDAGs);
 			hybrid.scheduleSystem();
 		} catch (SchedulingException se) {
 			setSchedHybrid(false);
 			if (isDebug()) System.out.println("[BENCH "+Thread.currentThread().getName()+"] HYBRID non schedulable with "+nbCores+" cores.");
+		} finally {
+			// Only the counters are kept
+			hybrid.closeTable();
 		}
+	}
+	
+	/**
+	 * Runs the tests of the policies, concurrently on the common fork/join pool
+	 * when the thread is parallel
+	 * @param tests
+	 */
+	private void runTests (Runnable tests[]) {
+		if (isParallel()) {
+			List<ForkJoinTask<?>> tasks = new ArrayList<ForkJoinTask<?>>();
+			
+			for (Runnable t : tests)
+				tasks.add(ForkJoinPool.commonPool().submit(t));
+			for (ForkJoinTask<?> t : tasks)
+				t.join();
+		} else {
+			for (Runnable t : tests)
+				t.run();
+		}
+	}
+	
+	@Override
+	public void run() {
+		if (!inMemory)
+			mcp.read();
+		
+		// Each policy schedules its own copy of the system instance
+		final Set<McDAG> edfDAGs = McDAG.copyAll(getDags());
+		final Set<McDAG> laxDAGs = McDAG.copyAll(getDags());
+		final Set<McDAG> hybridDAGs = McDAG.copyAll(getDags());
+		
+		Runnable tests[] = {
+			new Runnable() {
+				@Override
+				public void run() {
+					testEdf(edfDAGs);
+				}
+			},
+			new Runnable() {
+				@Override
+				public void run() {
+					testLax(laxDAGs);
+				}
+			},
+			new Runnable() {
+				@Override
+				public void run() {
+					testHybrid(hybridDAGs);
+				}
+			}
+		};
+		runTests(tests);
 		
 		// Write results
-		try {
-			writeResults();
-			if (isDebug()) System.out.println("[BENCH "+Thread.currentThread().getName()+"] Writing results "+nbCores+" cores.");
-
-		} catch (IOException ie) {
-			ie.printStackTrace();
-		}
+		writeResults();
+		if (isDebug()) System.out.println("[BENCH "+Thread.currentThread().getName()+"] Writing results "+nbCores+" cores.");
 	}
 
 	public Set<McDAG> getDags() {
@@ -196,12 +285,41 @@ public class BenchThreadNLevels implements Runnable {
 		this.inputFile = inputFile;
 	}
 
-	public String getOutputFile() {
-		return outputFile;
+	public BenchResults getResults() {
+		return results;
 	}
 
-	public void setOutputFile(String outputFile) {
-		this.outputFile = outputFile;
+	public void setResults(BenchResults results) {
+		this.results = results;
+	}
+
+	public int getSystemIndex() {
+		return systemIndex;
+	}
+
+	/**
+	 * Selects the system to test when the input is a binary archive
+	 * @param systemIndex
+	 */
+	public void setSystemIndex(int systemIndex) {
+		this.systemIndex = systemIndex;
+		mcp.setSystemIndex(systemIndex);
+	}
+
+	/**
+	 * Reads the system from an archive mapped once for all the threads
+	 * @param archive
+	 */
+	public void setArchive(MCBinaryArchive archive) {
+		mcp.setArchive(archive);
+	}
+
+	/**
+	 * Name of the tested system in the results
+	 * @return
+	 */
+	public String getSystemName() {
+		return systemIndex < 0 ? inputFile : inputFile+"#"+systemIndex;
 	}
 
 	public boolean isDebug() {
@@ -267,5 +385,13 @@ public class BenchThreadNLevels implements Runnable {
 	public void setSchedHybrid(boolean schedHybrid) {
 		this.schedHybrid = schedHybrid;
 	}
+
+	public boolean isParallel() {
+		return parallel;
+	}
+
+	public void setParallel(boolean parallel) {
+		this.parallel = parallel;
+	}
 	
 }
@@ -26,6 +26,7 @@ public class GeneratorThread implements Runnable{
 	private MCParser mcp;
 	private boolean graphBool;
 	private boolean debug;
+	private String binaryFile;
 	
 	public GeneratorThread (double maxU, int nbTasks, double eProb, int levels,
 			int pDegree, int nbDags, double rfactor, String outFile, boolean graphBool, boolean debug) {
@@ -45,13 +46,21 @@ public class GeneratorThread implements Runnable{
 		// Write the file
 		try {
 			mcp.setNbLevels(ug.getNbLevels());
-			mcp.writeGennedDAG();
+			if (binaryFile != null) {
+				String outFile = mcp.getOutGenFile();
+				
+				mcp.setOutGenFile(binaryFile);
+				mcp.writeGennedBinary();
+				mcp.setOutGenFile(outFile);
+			} else {
+				mcp.writeGennedDAG();
+			}
 			if (isGraphBool()) {
 				mcp.setOutDotFile(mcp.getOutGenFile().concat(".dot"));
 				mcp.writeDot();
 			}
 		} catch (IOException e) {
-			System.err.println("[ERROR] Failed to write the XML file in the generator " + e.getMessage());
+			System.err.println("[ERROR] Failed to write the system in the generator " + e.getMessage());
 			System.exit(1);
 			return;
 		}
@@ -84,6 +93,18 @@ public class GeneratorThread implements Runnable{
 		this.debug = debug;
 	}
 
+	public String getBinaryFile() {
+		return binaryFile;
+	}
+
+	/**
+	 * Appends the generated system to a binary archive instead of writing an XML file
+	 * @param binaryFile
+	 */
+	public void setBinaryFile(String binaryFile) {
+		this.binaryFile = binaryFile;
+	}
+
 	public boolean isGraphBool() {
 		return graphBool;
 	}
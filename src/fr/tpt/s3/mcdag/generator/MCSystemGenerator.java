@@ -17,14 +17,17 @@
 package fr.tpt.s3.mcdag.generator;
 
 import java.util.Arrays;
-import java.util.HashSet;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.Iterator;
+import java.util.Map;
 import java.util.Set;
 
 import fr.tpt.s3.mcdag.model.Vertex;
 import fr.tpt.s3.mcdag.model.VertexScheduling;
 import fr.tpt.s3.mcdag.model.McDAG;
 import fr.tpt.s3.mcdag.model.Edge;
+import fr.tpt.s3.mcdag.model.CriticalPath;
 import fr.tpt.s3.mcdag.util.RandomNumberGenerator;
 
 public class MCSystemGenerator {
@@ -59,7 +62,7 @@ public class MCSystemGenerator {
 		setDebug(debug);
 		setRfactor(rfactor);
 		rng = new RandomNumberGenerator();
-		gennedDAGs = new HashSet<>();
+		gennedDAGs = new LinkedHashSet<>();
 	}
 	
 	/**
@@ -133,6 +136,20 @@ public class MCSystemGenerator {
 		System.out.println("");
 	}
 	
+	/**
+	 * Creates a vertex that keeps its edges in insertion order: the same
+	 * random numbers give the same system
+	 * @param id
+	 * @return
+	 */
+	protected VertexScheduling newVertex (int id) {
+		VertexScheduling n = new VertexScheduling(id, Integer.toString(id), nbLevels);
+		
+		n.setRcvEdges(new LinkedHashSet<Edge>());
+		n.setSndEdges(new LinkedHashSet<Edge>());
+		return n;
+	}
+	
 	/**
 	 * Method that resets Ranks on nodes that have no edges
 	 * -> They become source edges
@@ -151,7 +168,7 @@ public class MCSystemGenerator {
 	protected void GenerateGraph(double utilization) {
 		int id = 0;
 		McDAG d = new McDAG();
-		Set<Vertex> nodes = new HashSet<Vertex>();
+		Set<Vertex> nodes = new LinkedHashSet<Vertex>();
 		int rank;
 		int prevRank;
 		
@@ -212,7 +229,7 @@ public class MCSystemGenerator {
 				int nodesPerRank = rng.randomUnifInt(1, parallelismDegree);
 				
 				for (int j = 0; j < nodesPerRank || budgets[i] < 0; j++) {
-					VertexScheduling n = new VertexScheduling(id, Integer.toString(id), nbLevels);
+					VertexScheduling n = newVertex(id);
 					
 					// Transform uSet to budget
 					if ((tasks[i] - tasksToGen) < tasks[i])
@@ -242,13 +259,8 @@ public class MCSystemGenerator {
 								&& n.getRank() > src.getRank()
 								&& src.getCpFromNode()[i] + n.getWcet(i) <= rDead
 								){
-								@SuppressWarnings("unused")
-								Edge e = new Edge(src,n);
-								
-								/* Once the edge is added the critical path needs to
-								 * be updated
-								 */
-								src.CPfromNode(i);
+								// Adding the edge updates the critical path of n
+								CriticalPath.addEdge(src, n);
 							}
 						}
 					}
@@ -259,7 +271,7 @@ public class MCSystemGenerator {
 					}
 					nodes.add(n);
 					tasksToGen--;
-					n.CPfromNode(i);
+					CriticalPath.update(n);
 					id++;
 					if (isDebug())
 						debugNode(n, "GenerateGraph()");
@@ -297,13 +309,11 @@ public class MCSystemGenerator {
 						debugNode(a, "GenerateGraph()");
 				}
 				
-				Iterator<Vertex> it_n = nodes.iterator();
+				// Execution times changed, critical paths are computed again
+				CriticalPath.compute(nodes);
 				actualBudget = 0;
-				while (it_n.hasNext()) {
-					Vertex a = it_n.next();
-					a.CPfromNode(i - 1);
+				for (Vertex a : nodes)
 					actualBudget += a.getWcet(i - 1);
-				}
 				// Update remaining budgets
 				budgets[i - 1] -= actualBudget;				
 			}
@@ -368,7 +378,7 @@ public class MCSystemGenerator {
 	 * the set of DAGs
 	 * @return
 	 */
-	protected void genAllDags () {
+	public void genAllDags () {
 		boolean done = false;
 		
 		while (!done) {
@@ -391,6 +401,51 @@ public class MCSystemGenerator {
 			}
 		}
 		
+		// DAGs are complete, removed nodes could be part of critical paths
+		for (McDAG d : getGennedDAGs()) {
+			d.freeze();
+			CriticalPath.compute(d);
+		}
+	}
+	
+	/**
+	 * Builds the generated system as the parsers read it back: new vertices
+	 * numbered in the order of their DAG and named like in the written files,
+	 * that know the id and the deadline of the DAG. The system can be scheduled
+	 * without being written to a file.
+	 * @return
+	 */
+	public Set<McDAG> buildSystem () {
+		Set<McDAG> ret = new LinkedHashSet<McDAG>();
+		
+		for (McDAG d : getGennedDAGs()) {
+			McDAG c = new McDAG();
+			Map<Vertex, Vertex> vertices = new HashMap<Vertex, Vertex>();
+			int id = 0;
+			
+			c.setId(d.getId());
+			c.setDeadline(d.getDeadline());
+			c.setLevels(nbLevels);
+			for (Vertex a : d.getVertices()) {
+				VertexScheduling v = new VertexScheduling(id++, "D"+d.getId()+"N"+a.getId(), nbLevels);
+				
+				v.setWcets(a.getWcets().clone());
+				v.setGraphID(c.getId());
+				v.setGraphDead(c.getDeadline());
+				vertices.put(a, v);
+				c.getVertices().add(v);
+			}
+			for (Vertex a : d.getVertices()) {
+				for (Edge e : a.getSndEdges()) {
+					// Creating the edge adds it to the corresponding nodes
+					@SuppressWarnings("unused")
+					Edge ed = new Edge(vertices.get(a), vertices.get(e.getDest()));
+				}
+			}
+			c.freeze();
+			ret.add(c);
+		}
+		return ret;
 	}
 	
 	/**
@@ -1,10 +1,10 @@
 package fr.tpt.s3.mcdag.generator;
 
-import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.Iterator;
 import java.util.Set;
 
-import fr.tpt.s3.mcdag.model.Edge;
+import fr.tpt.s3.mcdag.model.CriticalPath;
 import fr.tpt.s3.mcdag.model.McDAG;
 import fr.tpt.s3.mcdag.model.Vertex;
 import fr.tpt.s3.mcdag.model.VertexScheduling;
@@ -25,7 +25,7 @@ public class MCSystemGeneratorDev extends MCSystemGenerator{
 		protected void GenerateGraph(double utilization) {
 			int id = 0;
 			McDAG d = new McDAG();
-			Set<Vertex> nodes = new HashSet<Vertex>();
+			Set<Vertex> nodes = new LinkedHashSet<Vertex>();
 			int rank;
 			int prevRank;
 			
@@ -75,7 +75,7 @@ public class MCSystemGeneratorDev extends MCSystemGenerator{
 					int nodesPerRank = rng.randomUnifInt(1, parallelismDegree);
 					
 					for (int j = 0; j < nodesPerRank && tasksToGen > 0; j++) {
-						VertexScheduling n = new VertexScheduling(id, Integer.toString(id), nbLevels);
+						VertexScheduling n = newVertex(id);
 						
 						// Transform uSet to budget
 						n.getWcets()[i] = taskBudets[tasksToGen - 1];						
@@ -94,13 +94,8 @@ public class MCSystemGeneratorDev extends MCSystemGenerator{
 									&& n.getRank() > src.getRank()
 									&& src.getCpFromNode()[i] + n.getWcet(i) <= rDead
 									){
-									@SuppressWarnings("unused")
-									Edge e = new Edge(src,n);
-									
-									/* Once the edge is added the critical path needs to
-									 * be updated
-									 */
-									src.CPfromNode(i);
+									// Adding the edge updates the critical path of n
+									CriticalPath.addEdge(src, n);
 								}
 							}
 						}
@@ -111,7 +106,7 @@ public class MCSystemGeneratorDev extends MCSystemGenerator{
 						}
 						nodes.add(n);
 						tasksToGen--;
-						n.CPfromNode(i);
+						CriticalPath.update(n);
 						id++;
 						if (isDebug())
 							debugNode(n, "GenerateGraph()");
@@ -148,13 +143,11 @@ public class MCSystemGeneratorDev extends MCSystemGenerator{
 							debugNode(a, "GenerateGraph()");
 					}
 					
-					Iterator<Vertex> it_n = nodes.iterator();
+					// Execution times changed, critical paths are computed again
+					CriticalPath.compute(nodes);
 					actualBudget = 0;
-					while (it_n.hasNext()) {
-						Vertex a = it_n.next();
-						a.CPfromNode(i - 1);
+					for (Vertex a : nodes)
 						actualBudget += a.getWcet(i - 1);
-					}
 					// Update remaining budgets
 					budgets[i - 1] -= actualBudget;
 				}
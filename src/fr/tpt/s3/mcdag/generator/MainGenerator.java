@@ -16,8 +16,12 @@
  *******************************************************************************/
 package fr.tpt.s3.mcdag.generator;
 
+import java.io.File;
+
 import org.apache.commons.cli.*;
 
+import fr.tpt.s3.mcdag.util.RandomNumberGenerator;
+
 /**
  * Main for the Graph generator interface
  * @author Roberto Medina
@@ -79,10 +83,18 @@ public class MainGenerator {
 		debugOpt.setRequired(false);
 		options.addOption(debugOpt);
 		
+		Option binOpt = new Option("b", "binary", false, "Append all the systems to the output file as a binary archive");
+		binOpt.setRequired(false);
+		options.addOption(binOpt);
+		
 		Option jobsOpt = new Option("j", "jobs", true, "Number of jobs");
 		jobsOpt.setRequired(false);
 		options.addOption(jobsOpt);
 		
+		Option seedOpt = new Option("s", "seed", true, "Master seed, each file is generated from its own stream of the seed");
+		seedOpt.setRequired(false);
+		options.addOption(seedOpt);
+		
 		CommandLineParser parser = new DefaultParser();
 		HelpFormatter formatter = new HelpFormatter();
 		CommandLine cmd;
@@ -106,10 +118,15 @@ public class MainGenerator {
 		int nbTasks = Integer.parseInt(cmd.getOptionValue("nb_tasks"));
 		boolean graph = cmd.hasOption("graphviz");	
 		boolean debug = cmd.hasOption("debug");	
+		boolean binary = cmd.hasOption("binary");
 		String output = cmd.getOptionValue("output");
 		int nbJobs = 1;
 		if (cmd.hasOption("jobs"))
 			nbJobs = Integer.parseInt(cmd.getOptionValue("jobs"));
+		boolean seeded = cmd.hasOption("seed");
+		long seed = 0;
+		if (seeded)
+			seed = Long.parseLong(cmd.getOptionValue("seed"));
 		double rfactor = 2.0;
 		if (cmd.hasOption("reduc_factor"))
 			 rfactor = Double.parseDouble(cmd.getOptionValue("reduc_factor"));
@@ -122,6 +139,13 @@ public class MainGenerator {
 			return;
 		}
 		
+		// Systems are appended to the archive, a previous archive is replaced
+		if (binary && new File(output).exists() && !new File(output).delete()) {
+			System.err.println("[ERROR] Generator: Unable to replace the archive "+output);
+			System.exit(1);
+			return;
+		}
+		
 		Thread threads[] = new Thread[nbJobs];
 		
 		int nbFilesCreated = 0;
@@ -134,6 +158,10 @@ public class MainGenerator {
 				String outFile = output.substring(0, output.lastIndexOf('.')).concat("-"+count+".xml");
 				GeneratorThread gt = new GeneratorThread(maxU, nbTasks, edgeProb,
 									levels, para, nbDags, rfactor, outFile, graph, debug);
+				if (binary)
+					gt.setBinaryFile(output);
+				if (seeded)
+					gt.getUg().setRng(new RandomNumberGenerator(seed, count));
 				threads[i] = new Thread(gt);
 				threads[i].setName("GeneratorThread-"+i);
 				launched++;
@@ -0,0 +1,286 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Roberto Medina
+ * Written by Roberto Medina (rmedina@telecom-paristech.fr)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package fr.tpt.s3.mcdag.model;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Critical paths of the MC-DAGs.
+ * The value cpFromNode[l] of a vertex is the length in the level l of the longest
+ * path that ends with the vertex. All the levels are computed in the same topological
+ * pass, and the values are updated incrementally when edges are added to a DAG that
+ * is being built.
+ * @author roberto
+ *
+ */
+public class CriticalPath {
+
+	private static int nbLevels (Vertex a) {
+		return Math.min(a.getWcets().length, a.getCpFromNode().length);
+	}
+
+	/**
+	 * Computes the value of a vertex from its predecessors, they have to be up to date
+	 * @param a
+	 * @return true if the value changed in a level
+	 */
+	private static boolean fromPreds (Vertex a) {
+		boolean changed = false;
+
+		for (int l = 0; l < nbLevels(a); l++) {
+			int max = 0;
+
+			for (Edge e : a.getRcvEdges()) {
+				if (e.getSrc().getCpFromNode()[l] > max)
+					max = e.getSrc().getCpFromNode()[l];
+			}
+			if (a.getCpFromNode()[l] != max + a.getWcet(l)) {
+				a.getCpFromNode()[l] = max + a.getWcet(l);
+				changed = true;
+			}
+		}
+		return changed;
+	}
+
+	/**
+	 * Computes the critical paths of a set of vertices closed under predecessors
+	 * @param vertices
+	 * @return The longest path of each level
+	 */
+	public static int[] compute (Collection<? extends Vertex> vertices) {
+		Map<Vertex, Integer> pending = new HashMap<Vertex, Integer>(2 * vertices.size() + 1);
+		Deque<Vertex> ready = new ArrayDeque<Vertex>();
+		int levels = 0;
+		int done = 0;
+
+		for (Vertex a : vertices) {
+			levels = Math.max(levels, nbLevels(a));
+			if (a.getRcvEdges().isEmpty())
+				ready.add(a);
+			else
+				pending.put(a, a.getRcvEdges().size());
+		}
+
+		int max[] = new int[levels];
+		while (!ready.isEmpty()) {
+			Vertex a = ready.poll();
+
+			fromPreds(a);
+			for (int l = 0; l < nbLevels(a); l++)
+				max[l] = Math.max(max[l], a.getCpFromNode()[l]);
+			done++;
+
+			for (Edge e : a.getSndEdges()) {
+				Integer p = pending.get(e.getDest());
+
+				if (p == null)
+					continue;
+				if (p == 1) {
+					pending.remove(e.getDest());
+					ready.add(e.getDest());
+				} else {
+					pending.put(e.getDest(), p - 1);
+				}
+			}
+		}
+
+		if (done != vertices.size())
+			throw new IllegalArgumentException("Critical path: the graph has a cycle or a predecessor outside the set");
+		return max;
+	}
+
+	/**
+	 * Topological pass over an array view
+	 * @param view
+	 * @param cps Longest path ending with each vertex by view index, then level
+	 * @return The longest path of each level, null if the view has a cycle
+	 */
+	private static int[] longestPaths (McDAGView view, int cps[][]) {
+		int n = view.size();
+		int predOffsets[] = view.getPredOffsets();
+		int preds[] = view.getPreds();
+		int succOffsets[] = view.getSuccOffsets();
+		int succs[] = view.getSuccs();
+		int levels = view.getLevels();
+		int pending[] = new int[n];
+		int order[] = new int[n];
+		int head = 0;
+		int tail = 0;
+		int max[] = new int[levels];
+
+		for (int i = 0; i < n; i++) {
+			pending[i] = view.nbPreds(i);
+			if (pending[i] == 0)
+				order[tail++] = i;
+		}
+
+		while (head < tail) {
+			int i = order[head++];
+			int cp[] = cps[i];
+
+			for (int l = 0; l < levels && l < cp.length; l++) {
+				int best = 0;
+
+				for (int k = predOffsets[i]; k < predOffsets[i + 1]; k++) {
+					if (l < cps[preds[k]].length)
+						best = Math.max(best, cps[preds[k]][l]);
+				}
+				cp[l] = best + view.getWcet(i, l);
+				max[l] = Math.max(max[l], cp[l]);
+			}
+
+			for (int k = succOffsets[i]; k < succOffsets[i + 1]; k++) {
+				if (--pending[succs[k]] == 0)
+					order[tail++] = succs[k];
+			}
+		}
+
+		return tail == n ? max : null;
+	}
+
+	/**
+	 * Computes the critical paths of a complete DAG with its array view,
+	 * the critical path of the DAG is updated
+	 * @param d
+	 * @return The longest path of each level
+	 */
+	public static int[] compute (McDAG d) {
+		McDAGView view = d.getView();
+		int cps[][] = new int[view.size()][];
+
+		for (int i = 0; i < view.size(); i++)
+			cps[i] = view.getVertex(i).getCpFromNode();
+
+		int max[] = longestPaths(view, cps);
+		if (max == null)
+			throw new IllegalArgumentException("Critical path: DAG "+d.getId()+" has a cycle");
+
+		int cp = 0;
+		for (int l = 0; l < max.length; l++)
+			cp = Math.max(cp, max[l]);
+		d.setCritPath(cp);
+		return max;
+	}
+
+	/**
+	 * Computes the critical paths of an array view without changing the vertices
+	 * nor the DAG
+	 * @param view
+	 * @return The longest path of each level
+	 */
+	public static int[] lengths (McDAGView view) {
+		int cps[][] = new int[view.size()][view.getLevels()];
+		int max[] = longestPaths(view, cps);
+
+		if (max == null)
+			throw new IllegalArgumentException("Critical path: the view has a cycle");
+		return max;
+	}
+
+	/**
+	 * Updates a vertex from its predecessors, the change is propagated to the
+	 * vertices that can be reached from it. Used when a vertex is added or when
+	 * its execution times change.
+	 * @param a
+	 */
+	public static void update (Vertex a) {
+		if (fromPreds(a))
+			propagate(a);
+	}
+
+	/**
+	 * Creates an edge and updates the critical paths: only the destination and the
+	 * vertices reached from it can have a longer path
+	 * @param src
+	 * @param dest
+	 * @return The new edge
+	 */
+	public static Edge addEdge (Vertex src, Vertex dest) {
+		Edge e = new Edge(src, dest);
+		boolean changed = false;
+
+		for (int l = 0; l < nbLevels(dest) && l < nbLevels(src); l++) {
+			int cp = src.getCpFromNode()[l] + dest.getWcet(l);
+
+			if (cp > dest.getCpFromNode()[l]) {
+				dest.getCpFromNode()[l] = cp;
+				changed = true;
+			}
+		}
+		if (changed)
+			propagate(dest);
+		return e;
+	}
+
+	/**
+	 * Pushes the longer paths of a vertex to its successors, paths only grow
+	 * @param a
+	 */
+	private static void propagate (Vertex a) {
+		Deque<Vertex> toVisit = new ArrayDeque<Vertex>();
+
+		toVisit.add(a);
+		while (!toVisit.isEmpty()) {
+			Vertex v = toVisit.poll();
+
+			for (Edge e : v.getSndEdges()) {
+				Vertex dest = e.getDest();
+				boolean changed = false;
+
+				for (int l = 0; l < nbLevels(dest) && l < nbLevels(v); l++) {
+					int cp = v.getCpFromNode()[l] + dest.getWcet(l);
+
+					if (cp > dest.getCpFromNode()[l]) {
+						dest.getCpFromNode()[l] = cp;
+						changed = true;
+					}
+				}
+				if (changed)
+					toVisit.add(dest);
+			}
+		}
+	}
+
+	/**
+	 * Computes the critical paths of a vertex and of all its ancestors
+	 * @param a
+	 */
+	public static void computeFrom (Vertex a) {
+		Set<Vertex> ancestors = new HashSet<Vertex>();
+		List<Vertex> toVisit = new ArrayList<Vertex>();
+
+		ancestors.add(a);
+		toVisit.add(a);
+		while (!toVisit.isEmpty()) {
+			Vertex v = toVisit.remove(toVisit.size() - 1);
+
+			for (Edge e : v.getRcvEdges()) {
+				if (ancestors.add(e.getSrc()))
+					toVisit.add(e.getSrc());
+			}
+		}
+		compute(ancestors);
+	}
+}
@@ -16,9 +16,13 @@
  *******************************************************************************/
 package fr.tpt.s3.mcdag.model;
 
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Class to model the DAG in MxC
@@ -36,6 +40,12 @@ public class McDAG {
 	private int deadline;
 	private int levels;
 	
+	// Array view built once the DAG is complete
+	private McDAGView view;
+	
+	// Latest finish times by level and view index, shared with the copies
+	private AtomicReference<int[][]> lfts = new AtomicReference<int[][]>();
+	
 	public McDAG() {
 		nodes = new HashSet<Vertex>();
 		nodesHI = new HashSet<Vertex>();
@@ -49,16 +59,70 @@ public class McDAG {
 	public int calcCriticalPath() {
 		int cp = 0;
 		
-		for(int i = 0; i < this.getVertices().size(); i++) {
-			if (cp < this.getNodebyID(i).getCpFromNode()[0])
-				cp = this.getNodebyID(i).getCpFromNode()[0];
-			if (cp < this.getNodebyID(i).getCpFromNode()[1])
-				cp = this.getNodebyID(i).getCpFromNode()[1];
+		for (Vertex a : getVertices()) {
+			if (cp < a.getCpFromNode()[0])
+				cp = a.getCpFromNode()[0];
+			if (cp < a.getCpFromNode()[1])
+				cp = a.getCpFromNode()[1];
 		}
 		this.setCritPath(cp);
 		return cp;
 	}
 	
+	/**
+	 * Builds the array view of the DAG, it has to be called again
+	 * if vertices or edges are modified afterwards
+	 * @return
+	 */
+	public McDAGView freeze () {
+		view = new McDAGView(this);
+		detachLatestFinishTimes();
+		return view;
+	}
+	
+	/**
+	 * Returns the array view of the DAG, the view is built if needed
+	 * @return
+	 */
+	public McDAGView getView () {
+		if (view == null)
+			view = new McDAGView(this);
+		return view;
+	}
+	
+	/**
+	 * Stops sharing the latest finish times with the copies, the DAG changed
+	 */
+	private void detachLatestFinishTimes () {
+		lfts = new AtomicReference<int[][]>();
+	}
+	
+	public boolean isFrozen () {
+		return view != null;
+	}
+	
+	/**
+	 * Divides the deadline and the WCETs by a time quantum, the view is
+	 * built again if the DAG was frozen
+	 * @param quantum Divisor of the deadline and of all the WCETs
+	 */
+	public void scaleTime (int quantum) {
+		setDeadline(getDeadline() / quantum);
+		
+		for (Vertex a : getVertices()) {
+			int wcets[] = new int[a.getWcets().length];
+			
+			for (int l = 0; l < wcets.length; l++)
+				wcets[l] = a.getWcet(l) / quantum;
+			a.setWcets(wcets);
+			if (a instanceof VertexScheduling)
+				((VertexScheduling) a).setGraphDead(getDeadline());
+		}
+		
+		if (isFrozen())
+			freeze();
+	}
+	
 	/**
 	 * Sets HI nodes in the corresponding set
 	 */
@@ -171,6 +235,74 @@ public class McDAG {
 		return ret;
 	}
 	
+	/**
+	 * Returns a copy of the DAG with its own vertices and edges. Sets of the copy
+	 * are iterated in the same order than the ones of this DAG, so a scheduler gives
+	 * the same result on both, but they do not share any scheduling state.
+	 * @return
+	 */
+	public McDAG copy () {
+		McDAG d = new McDAG();
+		Map<Vertex, Vertex> vertices = new HashMap<Vertex, Vertex>();
+		Map<Edge, Edge> edges = new HashMap<Edge, Edge>();
+		
+		d.setId(getId());
+		d.setDeadline(getDeadline());
+		d.setLevels(getLevels());
+		d.setCritPath(getCritPath());
+		
+		for (Vertex a : getVertices())
+			vertices.put(a, a.copy());
+		
+		for (Vertex a : getVertices()) {
+			for (Edge e : a.getSndEdges())
+				edges.put(e, new Edge(vertices.get(e.getSrc()), vertices.get(e.getDest())));
+		}
+		
+		for (Vertex a : getVertices()) {
+			Vertex c = vertices.get(a);
+			
+			c.setRcvEdges(new LinkedHashSet<Edge>());
+			for (Edge e : a.getRcvEdges())
+				c.getRcvEdges().add(edges.get(e));
+			c.setSndEdges(new LinkedHashSet<Edge>());
+			for (Edge e : a.getSndEdges())
+				c.getSndEdges().add(edges.get(e));
+		}
+		
+		d.setNodes(copySet(getVertices(), vertices));
+		d.setNodes_HI(copySet(getNodes_HI(), vertices));
+		d.setLoOuts(copySet(getLoOuts(), vertices));
+		d.setOuts(copySet(getOuts(), vertices));
+		// Same vertex ids and edge order: the view indexes are the same
+		d.lfts = lfts;
+		
+		return d;
+	}
+	
+	private static Set<Vertex> copySet (Set<Vertex> set, Map<Vertex, Vertex> vertices) {
+		if (set == null)
+			return null;
+		
+		Set<Vertex> ret = new LinkedHashSet<Vertex>();
+		for (Vertex a : set)
+			ret.add(vertices.get(a));
+		return ret;
+	}
+	
+	/**
+	 * Copies a system of MC-DAGs
+	 * @param dags
+	 * @return
+	 */
+	public static Set<McDAG> copyAll (Set<McDAG> dags) {
+		Set<McDAG> ret = new LinkedHashSet<McDAG>();
+		
+		for (McDAG d : dags)
+			ret.add(d.copy());
+		return ret;
+	}
+	
 	/*
 	 * Getters & Setters
 	 * 
@@ -180,9 +312,14 @@ public class McDAG {
 	}
 	public void setNodes(Set<Vertex> Nodes) {
 		nodes = Nodes;
+		view = null;
+		detachLatestFinishTimes();
 	}
 	
 	public Vertex getNodebyID(int id){
+		if (view != null)
+			return view.getVertexById(id);
+		
 		Iterator<Vertex> it = nodes.iterator();
 		while(it.hasNext()){
 			Vertex n = it.next();
@@ -193,6 +330,9 @@ public class McDAG {
 	}
 
 	public Vertex getNodebyName(String name){
+		if (view != null)
+			return view.getVertexByName(name);
+		
 		Iterator<Vertex> it = nodes.iterator();
 		while(it.hasNext()){
 			Vertex n = it.next();
@@ -212,6 +352,12 @@ public class McDAG {
 	}
 	
 	public Vertex getNodeHIbyID(int id){
+		if (view != null) {
+			Vertex n = view.getVertexById(id);
+			
+			return n != null && nodesHI.contains(n) ? n : null;
+		}
+		
 		Iterator<Vertex> it = nodesHI.iterator();
 		while(it.hasNext()){
 			Vertex n = it.next();
@@ -242,6 +388,8 @@ public class McDAG {
 	}
 
 	public void setDeadline(int deadline) {
+		if (deadline != this.deadline)
+			detachLatestFinishTimes();
 		this.deadline = deadline;
 	}
 	
@@ -268,4 +416,16 @@ public class McDAG {
 	public void setLevels(int levels) {
 		this.levels = levels;
 	}
+
+	/**
+	 * Latest finish times computed by the schedulers
+	 * @return Level, view index -> latest finish time, null if not computed
+	 */
+	public int[][] getLatestFinishTimes() {
+		return lfts.get();
+	}
+
+	public void setLatestFinishTimes(int lfts[][]) {
+		this.lfts.set(lfts);
+	}
 }
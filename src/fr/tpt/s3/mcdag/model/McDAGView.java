@@ -0,0 +1,261 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Roberto Medina
+ * Written by Roberto Medina (rmedina@telecom-paristech.fr)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package fr.tpt.s3.mcdag.model;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Frozen, array based view of a complete MC-DAG.
+ * Vertices get a dense index ordered by id. Predecessors and successors are
+ * stored in CSR form: the neighbours of the vertex i are the entries
+ * [offsets[i], offsets[i + 1][ of the adjacency array, in the iteration order of
+ * the edge sets when the view was built.
+ * The view is not updated when the DAG changes, the DAG has to be frozen again.
+ * @author roberto
+ *
+ */
+public class McDAGView {
+
+	private Vertex vertices[];
+	private int levels;
+
+	// Vertex id -> index, -1 for unused ids
+	private int indexes[];
+	private Map<String, Integer> names;
+
+	private int predOffsets[];
+	private int preds[];
+	private int succOffsets[];
+	private int succs[];
+
+	// WCETs by level then index
+	private int wcets[][];
+
+	// Critical path of each level, computed on the first request
+	private volatile int critPaths[];
+
+	/**
+	 * Builds the view of a DAG
+	 * @param d
+	 */
+	public McDAGView (McDAG d) {
+		int maxId = -1;
+		int nbPreds = 0;
+		int nbSuccs = 0;
+
+		vertices = d.getVertices().toArray(new Vertex[0]);
+		Arrays.sort(vertices, new Comparator<Vertex>() {
+			@Override
+			public int compare(Vertex o1, Vertex o2) {
+				return Integer.compare(o1.getId(), o2.getId());
+			}
+		});
+
+		levels = d.getLevels();
+		for (Vertex a : vertices) {
+			if (a.getId() > maxId)
+				maxId = a.getId();
+			if (a.getWcets().length > levels)
+				levels = a.getWcets().length;
+			nbPreds += a.getRcvEdges().size();
+			nbSuccs += a.getSndEdges().size();
+		}
+
+		indexes = new int[maxId + 1];
+		Arrays.fill(indexes, -1);
+		names = new HashMap<String, Integer>(2 * vertices.length + 1);
+		for (int i = 0; i < vertices.length; i++) {
+			indexes[vertices[i].getId()] = i;
+			if (vertices[i].getName() != null && !names.containsKey(key(vertices[i].getName())))
+				names.put(key(vertices[i].getName()), i);
+		}
+
+		predOffsets = new int[vertices.length + 1];
+		preds = new int[nbPreds];
+		succOffsets = new int[vertices.length + 1];
+		succs = new int[nbSuccs];
+		wcets = new int[levels][vertices.length];
+
+		for (int i = 0; i < vertices.length; i++) {
+			int p = predOffsets[i];
+			int s = succOffsets[i];
+
+			for (Edge e : vertices[i].getRcvEdges())
+				preds[p++] = indexes[e.getSrc().getId()];
+			for (Edge e : vertices[i].getSndEdges())
+				succs[s++] = indexes[e.getDest().getId()];
+			predOffsets[i + 1] = p;
+			succOffsets[i + 1] = s;
+
+			for (int l = 0; l < vertices[i].getWcets().length; l++)
+				wcets[l][i] = vertices[i].getWcet(l);
+		}
+	}
+
+	private static String key (String name) {
+		return name.toLowerCase(Locale.ROOT);
+	}
+
+	public int size () {
+		return vertices.length;
+	}
+
+	/**
+	 * Returns the vertex stored at an index
+	 * @param index
+	 * @return
+	 */
+	public Vertex getVertex (int index) {
+		return vertices[index];
+	}
+
+	/**
+	 * Returns the index of the vertex with the given id, -1 if there is none
+	 * @param id
+	 * @return
+	 */
+	public int indexOf (int id) {
+		return id >= 0 && id < indexes.length ? indexes[id] : -1;
+	}
+
+	/**
+	 * Returns the index of a vertex of the DAG
+	 * @param a
+	 * @return
+	 */
+	public int indexOf (Vertex a) {
+		return indexOf(a.getId());
+	}
+
+	/**
+	 * Returns the vertex with the given id or null
+	 * @param id
+	 * @return
+	 */
+	public Vertex getVertexById (int id) {
+		int i = indexOf(id);
+
+		return i == -1 ? null : vertices[i];
+	}
+
+	/**
+	 * Returns the first vertex with this name, case is ignored
+	 * @param name
+	 * @return
+	 */
+	public Vertex getVertexByName (String name) {
+		Integer i = name == null ? null : names.get(key(name));
+
+		return i == null ? null : vertices[i];
+	}
+
+	public int getWcet (int index, int level) {
+		return wcets[level][index];
+	}
+
+	public int nbPreds (int index) {
+		return predOffsets[index + 1] - predOffsets[index];
+	}
+
+	public int nbSuccs (int index) {
+		return succOffsets[index + 1] - succOffsets[index];
+	}
+
+	/**
+	 * Tests if a vertex executes in L mode and has no predecessor executing in L mode
+	 * @param index
+	 * @param level
+	 * @return
+	 */
+	public boolean isSourceinL (int index, int level) {
+		if (wcets[level][index] == 0)
+			return false;
+
+		for (int k = predOffsets[index]; k < predOffsets[index + 1]; k++) {
+			if (wcets[level][preds[k]] != 0)
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Tests if a vertex executes in L mode and has no successor executing in L mode
+	 * @param index
+	 * @param level
+	 * @return
+	 */
+	public boolean isSinkinL (int index, int level) {
+		if (wcets[level][index] == 0)
+			return false;
+
+		for (int k = succOffsets[index]; k < succOffsets[index + 1]; k++) {
+			if (wcets[level][succs[k]] != 0)
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the length of the critical path of each level, computed once
+	 * without changing the vertices nor the DAG
+	 * @return
+	 */
+	public int[] getCriticalPaths () {
+		int ret[] = critPaths;
+
+		if (ret == null) {
+			ret = CriticalPath.lengths(this);
+			critPaths = ret;
+		}
+		return ret;
+	}
+
+	/*
+	 * Getters
+	 */
+	public int getLevels() {
+		return levels;
+	}
+
+	public Vertex[] getVertices() {
+		return vertices;
+	}
+
+	public int[] getPredOffsets() {
+		return predOffsets;
+	}
+
+	public int[] getPreds() {
+		return preds;
+	}
+
+	public int[] getSuccOffsets() {
+		return succOffsets;
+	}
+
+	public int[] getSuccs() {
+		return succs;
+	}
+
+	public int[][] getWcets() {
+		return wcets;
+	}
+}
@@ -0,0 +1,468 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Roberto Medina
+ * Written by Roberto Medina (rmedina@telecom-paristech.fr)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package fr.tpt.s3.mcdag.model;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Scheduling tables of all the criticality levels stored in a single arena.
+ * Each cell holds the index of a vertex name in a dictionary kept on the side,
+ * names are only materialized when the tables are exported.
+ * The arena is split in chunks that are allocated when a slot of the chunk is
+ * written, slots that were never written are idle. Once the chunks on the heap
+ * reach the memory budget, the next chunks are mapped from a temporary file.
+ * A table that is no longer used has to be closed to release this file.
+ * @author roberto
+ *
+ */
+public class SchedulingTable implements Closeable {
+
+	// Value returned for a slot that is not allocated
+	public static final int IDLE = -1;
+	public static final String IDLE_NAME = "-";
+
+	// Cells by chunk
+	private static final int CHUNK_BITS = 16;
+	private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+	private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+	// Heap used by the chunks of a new table before spilling to a file
+	private static long defaultBudget = Long.MAX_VALUE;
+
+	private int levels;
+	private int hPeriod;
+	private int nbCores;
+
+	// Cells are ordered by level, then slot, then core
+	// and store the dictionary index + 1 (0 is an idle slot)
+	private long size;
+	private boolean wide;
+	private short shortChunks[][];
+	private int intChunks[][];
+	private MappedByteBuffer mappedChunks[];
+
+	// Spilled chunks
+	private long budget;
+	private long heapBytes;
+	private File spillFile;
+	private RandomAccessFile spill;
+
+	// Name dictionary
+	private List<String> names;
+	private HashMap<String, Integer> indexes;
+
+	/**
+	 * Constructor
+	 * @param levels
+	 * @param hPeriod
+	 * @param nbCores
+	 * @param nbNames Expected number of names, used to pick the size of the cells
+	 */
+	public SchedulingTable (int levels, int hPeriod, int nbCores, int nbNames) {
+		long nbChunks;
+
+		this.levels = levels;
+		this.hPeriod = hPeriod;
+		this.nbCores = nbCores;
+		this.size = (long) levels * hPeriod * nbCores;
+		this.budget = defaultBudget;
+
+		nbChunks = (size + CHUNK_SIZE - 1) >>> CHUNK_BITS;
+		if (nbChunks > Integer.MAX_VALUE - 8)
+			throw new IllegalArgumentException("Scheduling table of "+size+" cells is too large");
+
+		wide = nbNames >= Short.MAX_VALUE;
+		if (wide)
+			intChunks = new int[(int) nbChunks][];
+		else
+			shortChunks = new short[(int) nbChunks][];
+		mappedChunks = new MappedByteBuffer[(int) nbChunks];
+
+		names = new ArrayList<String>(nbNames);
+		indexes = new HashMap<String, Integer>(2 * nbNames + 1);
+	}
+
+	/**
+	 * Builds a table from its String representation
+	 * @param sched
+	 * @return
+	 */
+	public static SchedulingTable fromStrings (String sched[][][]) {
+		int hPeriod = sched.length > 0 ? sched[0].length : 0;
+		int nbCores = hPeriod > 0 ? sched[0][0].length : 0;
+		SchedulingTable table = new SchedulingTable(sched.length, hPeriod, nbCores, 0);
+
+		for (int l = 0; l < sched.length; l++) {
+			for (int s = 0; s < hPeriod; s++) {
+				for (int c = 0; c < nbCores; c++) {
+					if (sched[l][s][c] != null && !sched[l][s][c].contentEquals(IDLE_NAME))
+						table.set(l, s, c, sched[l][s][c]);
+				}
+			}
+		}
+		return table;
+	}
+
+	/**
+	 * Adds a name to the dictionary
+	 * @param name
+	 * @return The index of the name, the same name always gets the same index
+	 */
+	public int register (String name) {
+		Integer index = indexes.get(name);
+
+		if (index == null) {
+			index = names.size();
+			if (!wide && index + 1 >= Short.MAX_VALUE)
+				widen();
+			names.add(name);
+			indexes.put(name, index);
+		}
+		return index;
+	}
+
+	/**
+	 * Returns the index of a name or IDLE if it was never registered
+	 * @param name
+	 * @return
+	 */
+	public int indexOf (String name) {
+		Integer index = indexes.get(name);
+
+		return index == null ? IDLE : index;
+	}
+
+	/**
+	 * Returns the name stored with a dictionary index
+	 * @param index
+	 * @return
+	 */
+	public String getName (int index) {
+		return index == IDLE ? IDLE_NAME : names.get(index);
+	}
+
+	private int cellBytes () {
+		return wide ? 4 : 2;
+	}
+
+	/**
+	 * Maps a chunk from the spill file, the file is created with the first chunk
+	 * @param chunk
+	 * @return
+	 */
+	private MappedByteBuffer map (int chunk) {
+		long chunkBytes = (long) CHUNK_SIZE * cellBytes();
+
+		try {
+			if (spill == null) {
+				spillFile = File.createTempFile("mcdag-table", ".bin");
+				spillFile.deleteOnExit();
+				spill = new RandomAccessFile(spillFile, "rw");
+			}
+			// Chunks of short and int cells never share the same region
+			long offset = (wide ? (long) mappedChunks.length * CHUNK_SIZE * 2 : 0) + chunk * chunkBytes;
+			return spill.getChannel().map(FileChannel.MapMode.READ_WRITE, offset, chunkBytes);
+		} catch (IOException e) {
+			throw new IllegalStateException("Unable to spill the scheduling table: "+e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Allocates a chunk on the heap or in the spill file when the budget is reached
+	 * @param chunk
+	 */
+	private void allocate (int chunk) {
+		long chunkBytes = (long) CHUNK_SIZE * cellBytes();
+
+		if (heapBytes + chunkBytes > budget) {
+			mappedChunks[chunk] = map(chunk);
+		} else {
+			heapBytes += chunkBytes;
+			if (wide)
+				intChunks[chunk] = new int[CHUNK_SIZE];
+			else
+				shortChunks[chunk] = new short[CHUNK_SIZE];
+		}
+	}
+
+	private boolean allocated (int chunk) {
+		return mappedChunks[chunk] != null || (wide ? intChunks[chunk] != null : shortChunks[chunk] != null);
+	}
+
+	/**
+	 * Reads the raw value of a cell, 0 if its chunk was never written
+	 * @param cell
+	 * @return
+	 */
+	private int read (long cell) {
+		int chunk = (int) (cell >>> CHUNK_BITS);
+		int offset = (int) cell & CHUNK_MASK;
+
+		if (wide) {
+			if (intChunks[chunk] != null)
+				return intChunks[chunk][offset];
+			if (mappedChunks[chunk] != null)
+				return mappedChunks[chunk].getInt(offset << 2);
+		} else {
+			if (shortChunks[chunk] != null)
+				return shortChunks[chunk][offset];
+			if (mappedChunks[chunk] != null)
+				return mappedChunks[chunk].getShort(offset << 1);
+		}
+		return 0;
+	}
+
+	private void write (long cell, int value) {
+		int chunk = (int) (cell >>> CHUNK_BITS);
+		int offset = (int) cell & CHUNK_MASK;
+
+		if (!allocated(chunk)) {
+			if (value == 0)
+				return;
+			allocate(chunk);
+		}
+
+		if (wide) {
+			if (intChunks[chunk] != null)
+				intChunks[chunk][offset] = value;
+			else
+				mappedChunks[chunk].putInt(offset << 2, value);
+		} else {
+			if (shortChunks[chunk] != null)
+				shortChunks[chunk][offset] = (short) value;
+			else
+				mappedChunks[chunk].putShort(offset << 1, (short) value);
+		}
+	}
+
+	/**
+	 * Switches the cells to int once the dictionary no longer fits in a short
+	 */
+	private void widen () {
+		short oldChunks[][] = shortChunks;
+		MappedByteBuffer oldMapped[] = mappedChunks;
+
+		wide = true;
+		heapBytes = 0;
+		intChunks = new int[oldChunks.length][];
+		mappedChunks = new MappedByteBuffer[oldChunks.length];
+		shortChunks = null;
+
+		for (int c = 0; c < oldChunks.length; c++) {
+			if (oldChunks[c] == null && oldMapped[c] == null)
+				continue;
+			allocate(c);
+			for (int o = 0; o < CHUNK_SIZE; o++) {
+				int value = oldChunks[c] != null ? oldChunks[c][o] : oldMapped[c].getShort(o << 1);
+
+				if (intChunks[c] != null)
+					intChunks[c][o] = value;
+				else
+					mappedChunks[c].putInt(o << 2, value);
+			}
+			oldChunks[c] = null;
+		}
+	}
+
+	private long cell (int level, int slot, int core) {
+		return ((long) level * hPeriod + slot) * nbCores + core;
+	}
+
+	/**
+	 * Returns the dictionary index allocated to a slot, IDLE if it is free
+	 * @param level
+	 * @param slot
+	 * @param core
+	 * @return
+	 */
+	public int get (int level, int slot, int core) {
+		return read(cell(level, slot, core)) - 1;
+	}
+
+	/**
+	 * Returns the name allocated to a slot, "-" if it is free
+	 * @param level
+	 * @param slot
+	 * @param core
+	 * @return
+	 */
+	public String getCell (int level, int slot, int core) {
+		return getName(get(level, slot, core));
+	}
+
+	/**
+	 * Allocates a slot to a registered index
+	 * @param level
+	 * @param slot
+	 * @param core
+	 * @param index
+	 */
+	public void set (int level, int slot, int core, int index) {
+		write(cell(level, slot, core), index + 1);
+	}
+
+	/**
+	 * Allocates a slot to a name, registering it if needed
+	 * @param level
+	 * @param slot
+	 * @param core
+	 * @param name
+	 */
+	public void set (int level, int slot, int core, String name) {
+		set(level, slot, core, register(name));
+	}
+
+	/**
+	 * Allocates the slots [from, to[ of a core to a registered index
+	 * @param level
+	 * @param from
+	 * @param to
+	 * @param core
+	 * @param index
+	 */
+	public void fill (int level, int from, int to, int core, int index) {
+		for (int s = from; s < to; s++)
+			set(level, s, core, index);
+	}
+
+	/**
+	 * Counts the slots allocated to an index between from and to (both included)
+	 * on all the cores
+	 * @param level
+	 * @param from
+	 * @param to
+	 * @param index
+	 * @return
+	 */
+	public int count (int level, int from, int to, int index) {
+		int ret = 0;
+		long end = cell(level, to, nbCores - 1);
+
+		for (long i = cell(level, from, 0); i <= end; i++) {
+			if (read(i) == index + 1)
+				ret++;
+		}
+		return ret;
+	}
+
+	/**
+	 * Number of bytes of the chunks allocated on the heap
+	 * @return
+	 */
+	public long getHeapBytes () {
+		return heapBytes;
+	}
+
+	/**
+	 * Tests if some chunks are stored in the spill file
+	 * @return
+	 */
+	public boolean isSpilled () {
+		return spill != null;
+	}
+
+	/**
+	 * Releases the spill file, the table can no longer be read afterwards
+	 * when it was spilled. Closing a table twice has no effect.
+	 */
+	@Override
+	public void close () {
+		if (spill != null) {
+			try {
+				spill.close();
+			} catch (IOException e) {
+				throw new IllegalStateException("Unable to close the spilled scheduling table: "+e.getMessage(), e);
+			} finally {
+				spill = null;
+				for (int c = 0; c < mappedChunks.length; c++)
+					mappedChunks[c] = null;
+				spillFile.delete();
+			}
+		}
+	}
+
+	/**
+	 * Materializes the tables with the names of the vertices
+	 * @return
+	 */
+	public String[][][] toStrings () {
+		String sched[][][] = new String[levels][hPeriod][nbCores];
+
+		for (int l = 0; l < levels; l++) {
+			for (int s = 0; s < hPeriod; s++) {
+				for (int c = 0; c < nbCores; c++)
+					sched[l][s][c] = getCell(l, s, c);
+			}
+		}
+		return sched;
+	}
+
+	/*
+	 * Getters & Setters
+	 */
+	public int getLevels() {
+		return levels;
+	}
+
+	public int gethPeriod() {
+		return hPeriod;
+	}
+
+	public int getNbCores() {
+		return nbCores;
+	}
+
+	public int getNbNames() {
+		return names.size();
+	}
+
+	public long getSize() {
+		return size;
+	}
+
+	public long getBudget() {
+		return budget;
+	}
+
+	/**
+	 * Sets the heap that can be used by the chunks that are not allocated yet
+	 * @param budget In bytes
+	 */
+	public void setBudget(long budget) {
+		this.budget = budget;
+	}
+
+	public static long getDefaultBudget() {
+		return defaultBudget;
+	}
+
+	/**
+	 * Sets the heap budget of the tables created afterwards
+	 * @param defaultBudget In bytes
+	 */
+	public static void setDefaultBudget(long defaultBudget) {
+		SchedulingTable.defaultBudget = defaultBudget;
+	}
+}
@@ -67,54 +67,20 @@ public abstract class Vertex {
 	}
 	
 	/**
-	 * Calculates the critical Path from a given node
-	 * @param n
+	 * Calculates the critical Path from a given node, the paths of
+	 * all its ancestors are computed in one topological pass
 	 * @param mode
 	 * @return
 	 */
 	public int CPfromNode (short mode) {
-		
-		if (this.getRcvEdges().size() == 0) {
-			if (mode == 0) {
-				getCpFromNode()[mode] = this.getWcets()[0];
-				return this.getWcets()[0];
-			} else {
-				getCpFromNode()[mode] = this.getWcets()[1];
-				return this.getWcets()[1];
-			}
-		} else {
-			int max = 0;
-			int tmp = 0;
-			Iterator<Edge> it_e = this.getRcvEdges().iterator();
-			
-			while (it_e.hasNext()){
-				Edge e = it_e.next();
-				if (mode == VertexScheduling.LO) {
-					tmp = e.getSrc().CPfromNode(VertexScheduling.LO);
-					if (max < tmp)
-						max = tmp;
-				} else {
-					tmp = e.getSrc().CPfromNode(VertexScheduling.HI);
-					if (max < tmp)
-						max = tmp;
-				}
-			}
-			if (mode == VertexScheduling.LO) {
-				max += this.getWcets()[0];
-				getCpFromNode()[mode] = max;
-			} else {
-				max += this.getWcets()[1];
-				getCpFromNode()[mode] = max;
-			}
-			
-			return max;
-		}
+		CriticalPath.computeFrom(this);
+		return getCpFromNode()[mode];
 	}
 	
 	/**
-	 * Calculates the critical Path from a given node
-	 * @param n
-	 * @param mode
+	 * Calculates the critical Path from a given node in a level,
+	 * the values of the predecessors have to be up to date
+	 * @param level
 	 * @return
 	 */
 	public int CPfromNode (int level) {
@@ -207,6 +173,12 @@ public abstract class Vertex {
 		return true;
 	}
 	
+	/**
+	 * Returns a copy of the vertex without its edges
+	 * @return
+	 */
+	public abstract Vertex copy ();
+	
 	/*
 	 * Getters and setters
 	 *
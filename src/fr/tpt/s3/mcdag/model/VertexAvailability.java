@@ -35,6 +35,21 @@ public class VertexAvailability extends VertexScheduling {
 		this.setWcets(wcet);
 	}
 	
+	@Override
+	public VertexAvailability copy () {
+		VertexAvailability v = new VertexAvailability(getId(), getName(), getWcets().clone());
+		
+		copyState(v);
+		v.votTask = votTask;
+		v.fMechanism = fMechanism;
+		v.fMechType = fMechType;
+		v.isVoted = isVoted;
+		v.nbReplicas = nbReplicas;
+		v.M = M;
+		v.K = K;
+		return v;
+	}
+	
 	/*
 	 * Getters and Setters
 	 */
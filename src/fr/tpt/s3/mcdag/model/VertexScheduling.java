@@ -69,6 +69,39 @@ public class VertexScheduling extends Vertex {
 		laxityDelayed = false;
 	}
 	
+	/**
+	 * Returns a copy of the vertex without its edges, the scheduling state
+	 * (deadlines, weights, visits...) is not shared with this vertex
+	 */
+	@Override
+	public VertexScheduling copy () {
+		VertexScheduling v = new VertexScheduling(getId(), getName(), getWcets().length);
+		
+		copyState(v);
+		return v;
+	}
+	
+	/**
+	 * Copies the timing parameters and the scheduling state to another vertex
+	 * @param v
+	 */
+	protected void copyState (VertexScheduling v) {
+		v.setWcets(getWcets().clone());
+		v.setCpFromNode(getCpFromNode().clone());
+		v.hlfet = hlfet.clone();
+		v.rank = rank;
+		v.graphDead = graphDead;
+		v.deadlines = deadlines.clone();
+		v.weights = weights.clone();
+		v.visitedL = visitedL.clone();
+		v.graphID = graphID;
+		v.delayed = delayed;
+		v.running = running;
+		v.sticky = sticky;
+		v.laxityDelayed = laxityDelayed;
+		v.fProb = fProb;
+	}
+	
 	/*
 	 *  Getters & Setters
 	 */
@@ -0,0 +1,394 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Roberto Medina
+ * Written by Roberto Medina (rmedina@telecom-paristech.fr)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package fr.tpt.s3.mcdag.parser;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import fr.tpt.s3.mcdag.model.Edge;
+import fr.tpt.s3.mcdag.model.McDAG;
+import fr.tpt.s3.mcdag.model.Vertex;
+import fr.tpt.s3.mcdag.model.VertexAvailability;
+import fr.tpt.s3.mcdag.model.VertexScheduling;
+
+/**
+ * Binary archive of MC systems, read through a memory mapping of the file.
+ *
+ * An archive starts with the magic number and the version of the format, followed by
+ * systems appended one after the other. Each system is preceded by its size in bytes
+ * and holds (all values are big endian ints unless stated otherwise):
+ * <pre>
+ * nbCores, nbLevels, flags (1: availability fields), nbDAGs
+ * for each DAG:
+ *   id, deadline, nbVertices, nbEdges
+ *   wcets[nbLevels][nbVertices]
+ *   successor offsets[nbVertices + 1], successors[nbEdges]   (CSR adjacency)
+ *   name offsets[nbVertices + 1], UTF-8 bytes of the names
+ *   if availability: double fprob[nbVertices], mechanism[nbVertices],
+ *     voted task[nbVertices] (-1 if none), replicas[nbVertices], m[nbVertices], k[nbVertices]
+ * </pre>
+ * DAGs and vertices are stored by increasing id, vertices get dense ids when they are read.
+ * @author roberto
+ *
+ */
+public class MCBinaryArchive {
+
+	public static final int MAGIC = 0x4D434441;
+	public static final int VERSION = 1;
+
+	private static final int HEADER = 8;
+	private static final int AVAILABILITY = 1;
+
+	// Mechanism field of the vertices
+	private static final int FMECHANISM = 1;
+	private static final int VOTED = 2;
+	private static final int TYPE_SHIFT = 8;
+
+	// Archives are appended by several generator threads
+	private static final Object writeLock = new Object();
+
+	private MappedByteBuffer buffer;
+	private List<Integer> systems;
+
+	/**
+	 * Maps an archive and indexes its systems
+	 * @param file
+	 * @throws IOException
+	 */
+	public MCBinaryArchive (String file) throws IOException {
+		FileChannel channel = FileChannel.open(Paths.get(file), StandardOpenOption.READ);
+
+		try {
+			if (channel.size() > Integer.MAX_VALUE)
+				throw new IOException("Archive "+file+" is larger than 2GB");
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		} finally {
+			channel.close();
+		}
+
+		if (buffer.limit() < HEADER || buffer.getInt(0) != MAGIC)
+			throw new IOException(file+" is not a MC system archive");
+		if (buffer.getInt(4) != VERSION)
+			throw new IOException("Unsupported version "+buffer.getInt(4)+" of the archive "+file);
+
+		systems = new ArrayList<Integer>();
+		int pos = HEADER;
+		while (pos + 4 <= buffer.limit()) {
+			int size = buffer.getInt(pos);
+
+			if (size < 0 || pos + 4 + size > buffer.limit())
+				throw new IOException("Truncated system "+systems.size()+" in the archive "+file);
+			systems.add(pos + 4);
+			pos += 4 + size;
+		}
+	}
+
+	/**
+	 * Tests if a file starts like an archive
+	 * @param file
+	 * @return
+	 */
+	public static boolean isArchive (String file) {
+		File f = new File(file);
+
+		if (!f.isFile() || f.length() < HEADER)
+			return false;
+
+		try {
+			DataInputStream in = new DataInputStream(new FileInputStream(f));
+			try {
+				return in.readInt() == MAGIC;
+			} finally {
+				in.close();
+			}
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Number of cores given for a system
+	 * @param system
+	 * @return
+	 */
+	public int getNbCores (int system) {
+		return buffer.getInt(systems.get(system));
+	}
+
+	/**
+	 * Number of criticality levels of a system
+	 * @param system
+	 * @return
+	 */
+	public int getNbLevels (int system) {
+		return buffer.getInt(systems.get(system) + 4);
+	}
+
+	public int getNbSystems () {
+		return systems.size();
+	}
+
+	private static int[] ints (ByteBuffer b, int length) {
+		int ret[] = new int[length];
+
+		b.asIntBuffer().get(ret);
+		b.position(b.position() + 4 * length);
+		return ret;
+	}
+
+	/**
+	 * Creates the MC-DAGs of a system
+	 * @param system Index of the system in the archive
+	 * @param availability True if the vertices are used for the availability analysis
+	 * @return
+	 */
+	public Set<McDAG> readSystem (int system, boolean availability) {
+		ByteBuffer b = buffer.duplicate();
+		Set<McDAG> dags = new LinkedHashSet<McDAG>();
+
+		b.position(systems.get(system) + 4);
+		int nbLevels = b.getInt();
+		boolean availFields = (b.getInt() & AVAILABILITY) != 0;
+		int nbDAGs = b.getInt();
+
+		for (int d = 0; d < nbDAGs; d++) {
+			McDAG dag = new McDAG();
+			int id = b.getInt();
+			int deadline = b.getInt();
+			int nbVertices = b.getInt();
+			int nbEdges = b.getInt();
+			int wcets[][] = new int[nbLevels][];
+
+			dag.setId(id);
+			dag.setDeadline(deadline);
+			dag.setLevels(nbLevels);
+
+			for (int l = 0; l < nbLevels; l++)
+				wcets[l] = ints(b, nbVertices);
+			int succOffsets[] = ints(b, nbVertices + 1);
+			int succ[] = ints(b, nbEdges);
+			int nameOffsets[] = ints(b, nbVertices + 1);
+			byte names[] = new byte[nameOffsets[nbVertices]];
+			b.get(names);
+
+			Vertex vertices[] = new Vertex[nbVertices];
+			for (int i = 0; i < nbVertices; i++) {
+				String name = new String(names, nameOffsets[i], nameOffsets[i + 1] - nameOffsets[i], StandardCharsets.UTF_8);
+				int c[] = new int[nbLevels];
+
+				for (int l = 0; l < nbLevels; l++)
+					c[l] = wcets[l][i];
+
+				if (availability) {
+					vertices[i] = new VertexAvailability(i, name, c);
+				} else {
+					vertices[i] = new VertexScheduling(i, name, nbLevels);
+					vertices[i].setWcets(c);
+				}
+				((VertexScheduling) vertices[i]).setGraphID(id);
+				((VertexScheduling) vertices[i]).setGraphDead(deadline);
+			}
+
+			if (availFields) {
+				double fprob[] = new double[nbVertices];
+				b.asDoubleBuffer().get(fprob);
+				b.position(b.position() + 8 * nbVertices);
+				int mech[] = ints(b, nbVertices);
+				int votTask[] = ints(b, nbVertices);
+				int replicas[] = ints(b, nbVertices);
+				int m[] = ints(b, nbVertices);
+				int k[] = ints(b, nbVertices);
+
+				for (int i = 0; availability && i < nbVertices; i++) {
+					VertexAvailability a = (VertexAvailability) vertices[i];
+
+					a.setfProb(fprob[i]);
+					a.setfMechanism((mech[i] & FMECHANISM) != 0);
+					a.setVoted((mech[i] & VOTED) != 0);
+					a.setfMechType((short) (mech[i] >> TYPE_SHIFT));
+					if (votTask[i] != -1)
+						a.setVotTask(vertices[votTask[i]].getName());
+					a.setNbReplicas(replicas[i]);
+					a.setM(m[i]);
+					a.setK(k[i]);
+				}
+			}
+
+			for (int i = 0; i < nbVertices; i++) {
+				for (int e = succOffsets[i]; e < succOffsets[i + 1]; e++) {
+					// Creating the edge adds it to the corresponding nodes
+					@SuppressWarnings("unused")
+					Edge ed = new Edge(vertices[i], vertices[succ[e]]);
+				}
+				dag.getVertices().add(vertices[i]);
+			}
+			dag.freeze();
+			dags.add(dag);
+		}
+		return dags;
+	}
+
+	/**
+	 * Appends a system to an archive, the archive is created if needed
+	 * @param file
+	 * @param dags
+	 * @param nbCores
+	 * @param nbLevels
+	 * @throws IOException
+	 */
+	public static void append (String file, Set<McDAG> dags, int nbCores, int nbLevels) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		boolean availFields = false;
+
+		for (McDAG d : dags) {
+			for (Vertex a : d.getVertices())
+				availFields |= a instanceof VertexAvailability;
+		}
+
+		out.writeInt(nbCores);
+		out.writeInt(nbLevels);
+		out.writeInt(availFields ? AVAILABILITY : 0);
+		out.writeInt(dags.size());
+
+		McDAG sorted[] = dags.toArray(new McDAG[0]);
+		Arrays.sort(sorted, new Comparator<McDAG>() {
+			@Override
+			public int compare(McDAG o1, McDAG o2) {
+				return Integer.compare(o1.getId(), o2.getId());
+			}
+		});
+		for (McDAG d : sorted)
+			writeDAG(out, d, nbLevels, availFields);
+		out.flush();
+
+		synchronized (writeLock) {
+			File f = new File(file);
+			boolean header = !f.exists() || f.length() == 0;
+			DataOutputStream fout = new DataOutputStream(new FileOutputStream(f, true));
+
+			try {
+				if (header) {
+					fout.writeInt(MAGIC);
+					fout.writeInt(VERSION);
+				}
+				fout.writeInt(bytes.size());
+				bytes.writeTo(fout);
+			} finally {
+				fout.close();
+			}
+		}
+	}
+
+	private static void writeDAG (DataOutputStream out, McDAG d, int nbLevels, boolean availFields) throws IOException {
+		Vertex vertices[] = d.getVertices().toArray(new Vertex[0]);
+		Map<Vertex, Integer> index = new HashMap<Vertex, Integer>();
+		int nbEdges = 0;
+
+		Arrays.sort(vertices, new Comparator<Vertex>() {
+			@Override
+			public int compare(Vertex o1, Vertex o2) {
+				return Integer.compare(o1.getId(), o2.getId());
+			}
+		});
+		for (int i = 0; i < vertices.length; i++) {
+			index.put(vertices[i], i);
+			nbEdges += vertices[i].getSndEdges().size();
+		}
+
+		out.writeInt(d.getId());
+		out.writeInt(d.getDeadline());
+		out.writeInt(vertices.length);
+		out.writeInt(nbEdges);
+
+		for (int l = 0; l < nbLevels; l++) {
+			for (Vertex a : vertices)
+				out.writeInt(a.getWcet(l));
+		}
+
+		// Successors keep the order of the edges, it is the order they are created when read
+		int offset = 0;
+		int succ[] = new int[nbEdges];
+		out.writeInt(0);
+		for (Vertex a : vertices) {
+			for (Edge e : a.getSndEdges())
+				succ[offset++] = index.get(e.getDest());
+			out.writeInt(offset);
+		}
+		for (int s : succ)
+			out.writeInt(s);
+
+		byte names[][] = new byte[vertices.length][];
+		offset = 0;
+		out.writeInt(0);
+		for (int i = 0; i < vertices.length; i++) {
+			names[i] = vertices[i].getName().getBytes(StandardCharsets.UTF_8);
+			offset += names[i].length;
+			out.writeInt(offset);
+		}
+		for (byte name[] : names)
+			out.write(name);
+
+		if (availFields) {
+			Map<String, Integer> byName = new HashMap<String, Integer>();
+			for (int i = 0; i < vertices.length; i++)
+				byName.put(vertices[i].getName(), i);
+
+			for (Vertex a : vertices)
+				out.writeDouble(((VertexScheduling) a).getfProb());
+			for (Vertex a : vertices) {
+				int mech = 0;
+				if (a instanceof VertexAvailability) {
+					VertexAvailability av = (VertexAvailability) a;
+					mech = (av.isfMechanism() ? FMECHANISM : 0) | (av.isVoted() ? VOTED : 0) | (av.getfMechType() << TYPE_SHIFT);
+				}
+				out.writeInt(mech);
+			}
+			for (Vertex a : vertices) {
+				Integer vot = null;
+				if (a instanceof VertexAvailability && ((VertexAvailability) a).getVotTask() != null)
+					vot = byName.get(((VertexAvailability) a).getVotTask());
+				out.writeInt(vot == null ? -1 : vot);
+			}
+			for (Vertex a : vertices)
+				out.writeInt(a instanceof VertexAvailability ? ((VertexAvailability) a).getNbReplicas() : 0);
+			for (Vertex a : vertices)
+				out.writeInt(a instanceof VertexAvailability ? ((VertexAvailability) a).getM() : 0);
+			for (Vertex a : vertices)
+				out.writeInt(a instanceof VertexAvailability ? ((VertexAvailability) a).getK() : 0);
+		}
+	}
+}
@@ -25,6 +25,8 @@ import java.util.Set;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.stream.FactoryConfigurationError;
+import javax.xml.stream.XMLStreamException;
 import javax.xml.transform.OutputKeys;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerFactory;
@@ -48,7 +50,9 @@ import fr.tpt.s3.mcdag.model.Vertex;
 import fr.tpt.s3.mcdag.model.VertexAvailability;
 import fr.tpt.s3.mcdag.model.VertexScheduling;
 import fr.tpt.s3.mcdag.model.McDAG;
+import fr.tpt.s3.mcdag.model.SchedulingTable;
 import fr.tpt.s3.mcdag.model.Edge;
+import fr.tpt.s3.mcdag.util.MathMCDAG;
 
 public class MCParser {
 
@@ -58,6 +62,10 @@ public class MCParser {
 	private String outGenFile;
 	private String outDotFile;
 	private boolean bOutPrism;
+	private int systemIndex;
+	
+	// Archive mapped once and shared by the parsers of its systems
+	private MCBinaryArchive archive;
 
 	// Only references do not have to be instantiated
 	private Set<McDAG> dags;
@@ -66,10 +74,15 @@ public class MCParser {
 	
 	// Writing scheduling tables
 	private String[][][] sched;
+	private SchedulingTable table;
 	private int hPeriod;
 	private int nbCores;
 	private int nbLevels;
 	
+	// Times are divided by the quantum after reading if normalize is set
+	private boolean normalize;
+	private int quantum = 1;
+	
 	public MCParser (String iFile, String oSFile,Set<McDAG> dags, boolean bop) {
 		setInputFile(iFile);
 		setOutSchedFile(oSFile);
@@ -84,9 +97,79 @@ public class MCParser {
 	}
 	
 	/**
-	 * Reads the XML file for a N level MC System
+	 * Reads the input file, binary archives are recognized by their header
+	 */
+	public void read() {
+		if (archive != null || MCBinaryArchive.isArchive(inputFile))
+			readBinary();
+		else
+			readXML();
+		
+		if (isNormalize())
+			normalize();
+	}
+	
+	/**
+	 * Divides the deadlines and the WCETs by their greatest common divisor.
+	 * The system is scheduled with the scaled times, the tables are scaled back
+	 * when they are written. Availability models keep unit slots.
+	 */
+	public void normalize() {
+		if (isbOutPrism())
+			return;
+		
+		quantum = MathMCDAG.quantum(dags);
+		if (quantum > 1) {
+			for (McDAG d : dags)
+				d.scaleTime(quantum);
+		}
+	}
+	
+	/**
+	 * Reads a system of a binary archive, the system is given by the system index.
+	 * The input file is only mapped when no archive was given.
+	 */
+	public void readBinary() {
+		try {
+			MCBinaryArchive archive = this.archive != null ? this.archive : new MCBinaryArchive(inputFile);
+			
+			if (systemIndex < 0 || systemIndex >= archive.getNbSystems()) {
+				System.err.println("[WARNING] "+inputFile+" has no system "+systemIndex);
+				return;
+			}
+			setNbCores(archive.getNbCores(systemIndex));
+			setNbLevels(archive.getNbLevels(systemIndex));
+			dags.addAll(archive.readSystem(systemIndex, isbOutPrism()));
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+	
+	/**
+	 * Reads the XML file for a N level MC System.
+	 * The file is streamed, the DOM parser is used if the streaming reader
+	 * cannot handle it
 	 */
 	public void readXML() {
+		try {
+			MCStreamReader reader = new MCStreamReader(dags, isbOutPrism(), getNbLevels());
+			
+			reader.read(inputFile);
+			if (reader.getNbCores() != -1)
+				setNbCores(reader.getNbCores());
+			setNbLevels(reader.getNbLevels());
+		} catch (XMLStreamException | FactoryConfigurationError xe) {
+			System.err.println("[WARNING] Streaming of "+inputFile+" failed, using the DOM parser: "+xe.getMessage());
+			readXMLDOM();
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
+	}
+	
+	/**
+	 * Reads the XML file for a N level MC System with a DOM
+	 */
+	public void readXMLDOM() {
 		try {
 			File iFile = new File(inputFile);
 			DocumentBuilderFactory dbFactory = DocumentBuilderFactory.newInstance();
@@ -207,6 +290,7 @@ public class MCParser {
 					}
 				}
 				// dag.sanityChecks();
+				dag.freeze();
 				dags.add(dag);
 				count++;
 			}
@@ -217,49 +301,16 @@ public class MCParser {
 	}
 	
 	/**
-	 * Writes the scheduling tables
+	 * Writes the scheduling tables, slots are streamed from the table
+	 * as segments of consecutive slots
 	 */
 	public void writeSched () throws IOException {
+		SchedulingTable t = getTable() != null ? getTable() : SchedulingTable.fromStrings(getSched());
+		
 		try {
-			DocumentBuilderFactory dbFactory = DocumentBuilderFactory.newInstance();
-			DocumentBuilder dBuilder = dbFactory.newDocumentBuilder();
-			Document doc = dBuilder.newDocument();
-			
-			// Root element
-			Element rootElement = doc.createElement("sched");
-			doc.appendChild(rootElement);
-			
-			
-			for (int i = 0; i < this.getNbLevels(); i++) {
-				Element table = doc.createElement("Mode-"+i);
-				rootElement.appendChild(table);
-				for (int c = 0; c < this.getNbCores(); c++) {
-					Element core = doc.createElement("core");
-					Attr attrCoreNb = doc.createAttribute("number");
-					attrCoreNb.setNodeValue(String.valueOf(i));
-					core.setAttributeNode(attrCoreNb);
-					for (int s = 0; s < this.gethPeriod(); s++) {
-						Element slot = doc.createElement("slot");
-						Attr slotNb = doc.createAttribute("slot");
-						slotNb.setNodeValue(String.valueOf(s));
-						slot.setAttributeNodeNS(slotNb);
-						slot.appendChild(doc.createTextNode(this.getSched()[i][s][c]));
-						core.appendChild(slot);
-					}
-					table.appendChild(core);
-				}
-			}
-			
-			// Write the content
-			TransformerFactory tFactory = TransformerFactory.newInstance();
-			Transformer trans = tFactory.newTransformer();
-			DOMSource dSource = new DOMSource(doc);
-			StreamResult sResult = new StreamResult(new File(outSchedFile));
-			trans.setOutputProperty(OutputKeys.INDENT, "yes");
-			trans.setOutputProperty("{http://xml.apache.org/xslt}indent-amount", "4");
-			trans.transform(dSource, sResult);
-		} catch (Exception ie) {
-			ie.printStackTrace();
+			new MCSchedWriter(t, getQuantum()).write(outSchedFile);
+		} catch (XMLStreamException xe) {
+			throw new IOException("Unable to write the scheduling tables to "+outSchedFile, xe);
 		}
 	}
 	
@@ -644,6 +695,21 @@ public class MCParser {
 		}
 	}
 	
+	/**
+	 * Appends the generated DAGs to a binary archive, vertices are named
+	 * like in the XML files
+	 * @throws IOException
+	 */
+	public void writeGennedBinary () throws IOException {
+		Set<McDAG> genned = McDAG.copyAll(ug.getGennedDAGs());
+		
+		for (McDAG d : genned) {
+			for (Vertex a : d.getVertices())
+				a.setName("D"+d.getId()+"N"+a.getId());
+		}
+		MCBinaryArchive.append(outGenFile, genned, minCoresNlevels(ug.getGennedDAGs(), nbLevels), nbLevels);
+	}
+	
 	/**
 	 * Private function to calculate the minimum number of cores needed to schedule a multi-DAG
 	 * multi-level system
@@ -652,26 +718,7 @@ public class MCParser {
 	 * @return
 	 */
 	private int minCoresNlevels (Set<McDAG> setDAGs, int lvl) {
-		double[] sums = new double[lvl];
-		double max = 0;
-		int cores = 0;
-		
-		for (McDAG d : setDAGs) {
-			for (int i = 0; i < lvl; i++) {
-				sums[i] += d.getUi(i);
-			}
-		}
-		
-		// Look for the max
-		for (int i = 0; i < lvl; i++) {
-			if (max < sums[i])
-				max = sums[i];
-		}
-		
-		// Ceil for number of cores
-		cores = (int) Math.ceil(max);
-		
-		return cores;
+		return MathMCDAG.minCores(setDAGs, lvl);
 	}
 	
 	/**
@@ -814,6 +861,26 @@ public class MCParser {
 		this.nbLevels = nbLevels;
 	}
 	
+	public int getSystemIndex() {
+		return systemIndex;
+	}
+
+	public void setSystemIndex(int systemIndex) {
+		this.systemIndex = systemIndex;
+	}
+
+	public MCBinaryArchive getArchive() {
+		return archive;
+	}
+
+	/**
+	 * Reads the systems from an archive that is already mapped
+	 * @param archive
+	 */
+	public void setArchive(MCBinaryArchive archive) {
+		this.archive = archive;
+	}
+
 	public boolean isbOutPrism() {
 		return bOutPrism;
 	}
@@ -829,4 +896,24 @@ public class MCParser {
 	public void setSched(String[][][] sched) {
 		this.sched = sched;
 	}
+
+	public boolean isNormalize() {
+		return normalize;
+	}
+
+	public void setNormalize(boolean normalize) {
+		this.normalize = normalize;
+	}
+
+	public int getQuantum() {
+		return quantum;
+	}
+
+	public SchedulingTable getTable() {
+		return table;
+	}
+
+	public void setTable(SchedulingTable table) {
+		this.table = table;
+	}
 }
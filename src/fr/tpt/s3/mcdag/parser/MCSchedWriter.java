@@ -0,0 +1,170 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Roberto Medina
+ * Written by Roberto Medina (rmedina@telecom-paristech.fr)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package fr.tpt.s3.mcdag.parser;
+
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import fr.tpt.s3.mcdag.model.SchedulingTable;
+
+/**
+ * Streaming writer for the scheduling tables.
+ * The cells are read directly from the table and consecutive slots of a core
+ * allocated to the same task are written as one segment:
+ * <pre>
+ * &lt;sched levels="2" cores="4" hperiod="20"&gt;
+ *   &lt;Mode-0&gt;
+ *     &lt;core number="0"&gt;
+ *       &lt;segment start="0" length="3"&gt;D0A1&lt;/segment&gt;
+ * </pre>
+ * Slots that are not covered by a segment are idle. Tables built with a
+ * time quantum are written in unit slots.
+ * @author roberto
+ *
+ */
+public class MCSchedWriter {
+
+	private SchedulingTable table;
+	
+	// Length of a slot of the table in time units
+	private int quantum;
+
+	public MCSchedWriter (SchedulingTable table) {
+		this(table, 1);
+	}
+	
+	public MCSchedWriter (SchedulingTable table, int quantum) {
+		this.table = table;
+		this.quantum = quantum;
+	}
+
+	/**
+	 * Writes the tables in a file
+	 * @param outputFile
+	 * @throws IOException
+	 * @throws XMLStreamException
+	 */
+	public void write (String outputFile) throws IOException, XMLStreamException {
+		OutputStream out = new BufferedOutputStream(new FileOutputStream(outputFile));
+
+		try {
+			write(out);
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Writes the tables in a stream, the stream is not closed
+	 * @param out
+	 * @throws XMLStreamException
+	 */
+	public void write (OutputStream out) throws XMLStreamException {
+		XMLStreamWriter writer = XMLOutputFactory.newInstance().createXMLStreamWriter(out, "UTF-8");
+
+		writer.writeStartDocument("UTF-8", "1.0");
+		newLine(writer, 0);
+		writer.writeStartElement("sched");
+		writer.writeAttribute("levels", String.valueOf(table.getLevels()));
+		writer.writeAttribute("cores", String.valueOf(table.getNbCores()));
+		writer.writeAttribute("hperiod", String.valueOf((long) table.gethPeriod() * quantum));
+
+		for (int l = 0; l < table.getLevels(); l++) {
+			newLine(writer, 1);
+			writer.writeStartElement("Mode-"+l);
+			for (int c = 0; c < table.getNbCores(); c++) {
+				newLine(writer, 2);
+				writer.writeStartElement("core");
+				writer.writeAttribute("number", String.valueOf(c));
+				writeSegments(writer, l, c);
+				newLine(writer, 2);
+				writer.writeEndElement();
+			}
+			newLine(writer, 1);
+			writer.writeEndElement();
+		}
+		newLine(writer, 0);
+		writer.writeEndElement();
+		newLine(writer, 0);
+		writer.writeEndDocument();
+		writer.flush();
+		writer.close();
+	}
+
+	/**
+	 * Writes the runs of a core, idle slots are skipped
+	 * @param writer
+	 * @param level
+	 * @param core
+	 * @throws XMLStreamException
+	 */
+	private void writeSegments (XMLStreamWriter writer, int level, int core) throws XMLStreamException {
+		int hPeriod = table.gethPeriod();
+		int s = 0;
+
+		while (s < hPeriod) {
+			int index = table.get(level, s, core);
+			int end = s + 1;
+
+			while (end < hPeriod && table.get(level, end, core) == index)
+				end++;
+
+			if (index != SchedulingTable.IDLE) {
+				newLine(writer, 3);
+				writer.writeStartElement("segment");
+				writer.writeAttribute("start", String.valueOf((long) s * quantum));
+				writer.writeAttribute("length", String.valueOf((long) (end - s) * quantum));
+				writer.writeCharacters(table.getName(index));
+				writer.writeEndElement();
+			}
+			s = end;
+		}
+	}
+
+	private static void newLine (XMLStreamWriter writer, int depth) throws XMLStreamException {
+		StringBuilder sb = new StringBuilder("\n");
+
+		for (int i = 0; i < depth; i++)
+			sb.append('\t');
+		writer.writeCharacters(sb.toString());
+	}
+
+	/*
+	 * Getters & Setters
+	 */
+	public SchedulingTable getTable() {
+		return table;
+	}
+
+	public void setTable(SchedulingTable table) {
+		this.table = table;
+	}
+
+	public int getQuantum() {
+		return quantum;
+	}
+
+	public void setQuantum(int quantum) {
+		this.quantum = quantum;
+	}
+}
@@ -0,0 +1,279 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Roberto Medina
+ * Written by Roberto Medina (rmedina@telecom-paristech.fr)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package fr.tpt.s3.mcdag.parser;
+
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import fr.tpt.s3.mcdag.model.Edge;
+import fr.tpt.s3.mcdag.model.McDAG;
+import fr.tpt.s3.mcdag.model.Vertex;
+import fr.tpt.s3.mcdag.model.VertexAvailability;
+import fr.tpt.s3.mcdag.model.VertexScheduling;
+
+/**
+ * Streaming reader for the XML files of MC systems.
+ * The file is read in one pass with StAX. The number of levels is written after the
+ * DAGs, so the description of the DAGs is kept until the end of the file and the
+ * vertices are then created the same way the DOM parser does. Edges find their
+ * vertices through a table indexed by name.
+ * @author roberto
+ *
+ */
+public class MCStreamReader {
+
+	private Set<McDAG> dags;
+	private boolean availability;
+	private int nbCores;
+	private int nbLevels;
+
+	// Description of the elements read so far
+	private List<DagDesc> dagDescs;
+
+	private static class DagDesc {
+		private String deadline;
+		private List<ActorDesc> actors = new ArrayList<ActorDesc>();
+		private List<ActorDesc> ftms = new ArrayList<ActorDesc>();
+		private List<String[]> ports = new ArrayList<String[]>();
+		private boolean portsRead;
+	}
+
+	// Actors and fault tolerance mechanisms
+	private static class ActorDesc {
+		private String name;
+		private String type;
+		private List<String[]> wcets = new ArrayList<String[]>();
+		private Map<String, String> texts = new HashMap<String, String>();
+	}
+
+	/**
+	 * Constructor
+	 * @param dags Set where the DAGs are added once the whole file is read
+	 * @param availability True if the vertices are used for the availability analysis
+	 * @param nbLevels Number of levels used when the file does not give it
+	 */
+	public MCStreamReader (Set<McDAG> dags, boolean availability, int nbLevels) {
+		this.dags = dags;
+		this.availability = availability;
+		this.nbLevels = nbLevels;
+		this.nbCores = -1;
+	}
+
+	/**
+	 * Reads the XML file for a N level MC System
+	 * @param inputFile
+	 * @throws IOException
+	 * @throws XMLStreamException
+	 */
+	public void read (String inputFile) throws IOException, XMLStreamException {
+		InputStream in = new BufferedInputStream(new FileInputStream(inputFile));
+
+		try {
+			XMLStreamReader reader = XMLInputFactory.newInstance().createXMLStreamReader(in);
+
+			try {
+				readElements(reader);
+			} finally {
+				reader.close();
+			}
+		} finally {
+			in.close();
+		}
+		buildDAGs();
+	}
+
+	private void readElements (XMLStreamReader reader) throws XMLStreamException {
+		boolean levelsRead = false;
+		int depth = 0;
+		int portsDepth = -1;
+		DagDesc dag = null;
+		ActorDesc actor = null;
+
+		dagDescs = new ArrayList<DagDesc>();
+
+		while (reader.hasNext()) {
+			int event = reader.next();
+
+			if (event == XMLStreamConstants.START_ELEMENT) {
+				String tag = reader.getLocalName();
+				depth++;
+
+				if (dag != null && depth == portsDepth + 1) {
+					// Every child of the ports is a connection
+					dag.ports.add(new String[] {attribute(reader, "srcActor"), attribute(reader, "dstActor")});
+				} else if (tag.equals("mcdag")) {
+					dag = new DagDesc();
+					dag.deadline = reader.getAttributeValue(null, "deadline");
+				} else if (tag.equals("cores") && nbCores == -1) {
+					nbCores = Integer.parseInt(reader.getAttributeValue(null, "number"));
+				} else if (tag.equals("levels") && !levelsRead) {
+					nbLevels = Integer.parseInt(reader.getAttributeValue(null, "number"));
+					levelsRead = true;
+				} else if (dag != null && actor == null && (tag.equals("actor") || tag.equals("ftm"))) {
+					actor = new ActorDesc();
+					actor.name = attribute(reader, "name");
+					actor.type = attribute(reader, "type");
+					if (tag.equals("actor"))
+						dag.actors.add(actor);
+					else
+						dag.ftms.add(actor);
+				} else if (actor != null && tag.equals("wcet")) {
+					String number = reader.getAttributeValue(null, "number");
+
+					actor.wcets.add(new String[] {number, reader.getElementText()});
+					depth--;
+				} else if (actor != null && !actor.texts.containsKey(tag)) {
+					actor.texts.put(tag, reader.getElementText());
+					depth--;
+				} else if (dag != null && tag.equals("ports") && !dag.portsRead) {
+					dag.portsRead = true;
+					portsDepth = depth;
+				}
+			} else if (event == XMLStreamConstants.END_ELEMENT) {
+				String tag = reader.getLocalName();
+
+				if (depth == portsDepth) {
+					portsDepth = -1;
+				} else if (actor != null && (tag.equals("actor") || tag.equals("ftm"))) {
+					actor = null;
+				} else if (dag != null && tag.equals("mcdag")) {
+					dagDescs.add(dag);
+					dag = null;
+				}
+				depth--;
+			}
+		}
+	}
+
+	/**
+	 * Returns the value of an attribute, an empty string if it is missing
+	 * @param reader
+	 * @param name
+	 * @return
+	 */
+	private static String attribute (XMLStreamReader reader, String name) {
+		String value = reader.getAttributeValue(null, name);
+		
+		return value == null ? "" : value;
+	}
+
+	private int[] wcets (ActorDesc desc) {
+		int wcets[] = new int[nbLevels];
+
+		for (int j = 0; j < nbLevels && j < desc.wcets.size(); j++)
+			wcets[Integer.parseInt(desc.wcets.get(j)[0])] = Integer.parseInt(desc.wcets.get(j)[1]);
+		return wcets;
+	}
+
+	private static String key (String name) {
+		return name.toLowerCase(Locale.ROOT);
+	}
+
+	/**
+	 * Creates the DAGs in the order of the file: actors, fault tolerance
+	 * mechanisms and then the edges
+	 */
+	private void buildDAGs () {
+		List<McDAG> read = new ArrayList<McDAG>();
+		int count = 0;
+
+		for (DagDesc desc : dagDescs) {
+			McDAG dag = new McDAG();
+			Map<String, Vertex> byName = new HashMap<String, Vertex>();
+			int nb_actors = 0;
+
+			dag.setId(count);
+			dag.setDeadline(Integer.parseInt(desc.deadline));
+			dag.setLevels(nbLevels);
+
+			for (ActorDesc ad : desc.actors) {
+				Vertex a;
+
+				if (!availability) {
+					a = new VertexScheduling(nb_actors++, ad.name, nbLevels);
+					a.setWcets(wcets(ad));
+				} else {
+					a = new VertexAvailability(nb_actors++, ad.name, wcets(ad));
+					((VertexScheduling) a).setfProb(Double.parseDouble(ad.texts.get("fprob")));
+				}
+
+				((VertexScheduling) a).setGraphID(count);
+				((VertexScheduling) a).setGraphDead(dag.getDeadline());
+				dag.getVertices().add(a);
+				if (!byName.containsKey(key(ad.name)))
+					byName.put(key(ad.name), a);
+			}
+
+			for (ActorDesc fd : desc.ftms) {
+				if (fd.type.contains("voter")) {
+					VertexAvailability a = new VertexAvailability(nb_actors++, fd.name, wcets(fd));
+					a.setfMechanism(true);
+					a.setfMechType(VertexAvailability.VOTER);
+					a.setVotTask(fd.texts.get("vtask"));
+					((VertexAvailability) byName.get(key(fd.texts.get("vtask")))).setVoted(true);
+					a.setNbReplicas(Integer.parseInt(fd.texts.get("replicas")));
+					dag.getVertices().add(a);
+					if (!byName.containsKey(key(fd.name)))
+						byName.put(key(fd.name), a);
+				} else if (fd.type.contains("mkfirm")) {
+					VertexAvailability a = (VertexAvailability) byName.get(key(fd.name));
+					a.setfMechanism(true);
+					a.setfMechType(VertexAvailability.MKFIRM);
+					a.setM(Integer.parseInt(fd.texts.get("m")));
+					a.setK(Integer.parseInt(fd.texts.get("k")));
+					a.setVoted(true);
+				} else {
+					System.err.println("[WARNING] Uknown fault tolerant mechanism.");
+				}
+			}
+
+			for (String port[] : desc.ports) {
+				// Creating the edge adds it to the corresponding nodes
+				@SuppressWarnings("unused")
+				Edge ed = new Edge(byName.get(key(port[0])), byName.get(key(port[1])));
+			}
+			dag.freeze();
+			read.add(dag);
+			count++;
+		}
+		dags.addAll(read);
+	}
+
+	/*
+	 * Getters & Setters
+	 */
+	public int getNbCores() {
+		return nbCores;
+	}
+
+	public int getNbLevels() {
+		return nbLevels;
+	}
+}
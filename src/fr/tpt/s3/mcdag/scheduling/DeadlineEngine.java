@@ -0,0 +1,131 @@
+/*******************************************************************************
+ * Copyright (c) 2017, 2018 Roberto Medina
+ * Written by Roberto Medina (rmedina@telecom-paristech.fr)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package fr.tpt.s3.mcdag.scheduling;
+
+import java.util.Arrays;
+
+import fr.tpt.s3.mcdag.model.McDAG;
+import fr.tpt.s3.mcdag.model.McDAGView;
+
+/**
+ * Computes the latest finish times (deadlines) of the vertices of a DAG in
+ * every criticality level in O(V + E) for each level.
+ * The LO level is computed from the sinks, each vertex is visited once all its
+ * successors executing in LO mode are done. HI levels are computed on the dual,
+ * from the sources. A counter of the neighbours left to visit replaces the test
+ * on all the neighbours and the vertices wait in an array used as a FIFO queue,
+ * so they are visited in the same order than the former traversal.
+ * The times are stored by level and view index. They only depend on the DAG, so
+ * they are kept in the DAG and shared with its copies: the schedulers built on
+ * copies of the same system compute them once.
+ * @author roberto
+ *
+ */
+public class DeadlineEngine {
+
+	/**
+	 * Returns the latest finish times of a DAG, they are computed if the DAG
+	 * and its copies do not have them yet
+	 * @param d
+	 * @param levels
+	 * @return Level, view index -> latest finish time, Integer.MAX_VALUE if the
+	 * vertex is not visited in the level
+	 */
+	public static int[][] get (McDAG d, int levels) {
+		int lfts[][] = d.getLatestFinishTimes();
+		
+		if (lfts == null || lfts.length != levels) {
+			lfts = compute(d.getView(), d.getDeadline(), levels);
+			d.setLatestFinishTimes(lfts);
+		}
+		return lfts;
+	}
+	
+	/**
+	 * Computes the latest finish times of a DAG
+	 * @param view
+	 * @param deadline
+	 * @param levels
+	 * @return Level, view index -> latest finish time
+	 */
+	public static int[][] compute (McDAGView view, int deadline, int levels) {
+		int n = view.size();
+		int lfts[][] = new int[levels][n];
+		int left[] = new int[n];
+		int queue[] = new int[n];
+		boolean queued[] = new boolean[n];
+		
+		for (int l = 0; l < levels; l++) {
+			// LO mode goes backwards from the sinks, HI modes forward on the dual
+			boolean dual = l != 0;
+			int inOffsets[] = dual ? view.getPredOffsets() : view.getSuccOffsets();
+			int in[] = dual ? view.getPreds() : view.getSuccs();
+			int outOffsets[] = dual ? view.getSuccOffsets() : view.getPredOffsets();
+			int out[] = dual ? view.getSuccs() : view.getPreds();
+			int lft[] = lfts[l];
+			int head = 0;
+			int tail = 0;
+			
+			Arrays.fill(lft, Integer.MAX_VALUE);
+			Arrays.fill(queued, false);
+			
+			// Neighbours that have to be visited first
+			for (int i = 0; i < n; i++) {
+				left[i] = 0;
+				for (int k = inOffsets[i]; k < inOffsets[i + 1]; k++) {
+					if (view.getWcet(in[k], l) != 0)
+						left[i]++;
+				}
+				if (view.getWcet(i, l) != 0 && left[i] == 0) {
+					queue[tail++] = i;
+					queued[i] = true;
+				}
+			}
+			
+			while (head < tail) {
+				int i = queue[head++];
+				
+				if (dual ? view.isSourceinL(i, l) : view.isSinkinL(i, l)) {
+					lft[i] = deadline;
+				} else {
+					int ret = Integer.MAX_VALUE;
+					
+					for (int k = inOffsets[i]; k < inOffsets[i + 1]; k++) {
+						int test = lft[in[k]] - view.getWcet(in[k], l);
+						
+						if (test < ret)
+							ret = test;
+					}
+					lft[i] = ret;
+				}
+				
+				for (int k = outOffsets[i]; k < outOffsets[i + 1]; k++) {
+					int j = out[k];
+					
+					if (view.getWcet(i, l) != 0)
+						left[j]--;
+					// Only vertices executing in the level are visited in HI modes
+					if (!queued[j] && left[j] == 0 && (!dual || view.getWcet(j, l) != 0)) {
+						queue[tail++] = j;
+						queued[j] = true;
+					}
+				}
+			}
+		}
+		return lfts;
+	}
+}
@@ -16,10 +16,7 @@
  *******************************************************************************/
 package fr.tpt.s3.mcdag.scheduling;
 
-import java.util.Collections;
-import java.util.Comparator;
 import java.util.Hashtable;
-import java.util.List;
 import java.util.Set;
 
 import fr.tpt.s3.mcdag.model.McDAG;
@@ -49,7 +46,7 @@ public class EartliestDeadlineFirstMCSched extends GlobalGenericMCScheduler {
 	}
 
 	@Override
-	protected boolean verifyConstraints(List<VertexScheduling> ready, int slot, int level) {
+	protected boolean verifyConstraints(ReadyQueue ready, int slot, int level) {
 		int sumSlotsLeft = 0;
 		
 		for (VertexScheduling v : ready) {
@@ -59,7 +56,7 @@ public class EartliestDeadlineFirstMCSched extends GlobalGenericMCScheduler {
 				relatSlot =  (gethPeriod() - slot - 1) % v.getGraphDead();
 			
 			if (relatSlot > v.getDeadlines()[level]) {
-				if (isDebug()) System.out.println("[DEBUG "+Thread.currentThread().getName()+"] verifyConstraints(): deadline not respected for "+v.getName());
+				if (getTrace().isOn(SchedulingTrace.DECISIONS)) getTrace().record(SchedulingTrace.MISSED_DEADLINE, level, slot, v, 0, 0);
 				return false;
 			}
 		}
@@ -73,7 +70,7 @@ public class EartliestDeadlineFirstMCSched extends GlobalGenericMCScheduler {
 		
 		sumSlotsLeft = (gethPeriod() - relatSlot) * getNbCores();
 		if (sumSlotsLeft < getSumRemainTimes()[level]) {
-			if (isDebug()) System.out.println("[DEBUG "+Thread.currentThread().getName()+"] verifyConstraints(): Not enough slots left "+sumSlotsLeft+" for "+getSumRemainTimes()[level]);
+			if (getTrace().isOn(SchedulingTrace.DECISIONS)) getTrace().record(SchedulingTrace.SLOTS_LEFT, level, slot, null, sumSlotsLeft, getSumRemainTimes()[level]);
 			return false;
 		}
 		
@@ -81,40 +78,32 @@ public class EartliestDeadlineFirstMCSched extends GlobalGenericMCScheduler {
 	}
 
 	@Override
-	protected void sortHI(List<VertexScheduling> ready, int slot, final int level) {
+	protected void sortHI(ReadyQueue ready, int slot, final int level) {
 		// Check if tasks need to be delayed first
 		for (VertexScheduling v : ready) {
 			if (level != getLevels() - 1) {
 				int delta = v.getWcet(level + 1) - v.getWcet(level);
 				
 				if (scheduledUntilTinLreverse(v, slot, level + 1) <= delta) {
-					if (isDebug()) System.out.println("[DEBUG "+Thread.currentThread().getName()+"] sortHI(): Task "+v.getName()+" needs to be delayed at slot @t = "+slot);
+					if (getTrace().isOn(SchedulingTrace.DETAILED)) getTrace().record(SchedulingTrace.DELAY, level, slot, v, 0, 0);
 					v.setWeightInL(Integer.MAX_VALUE, level);
-					v.setDelayed(true);
+					setDelayed(v, true);
 				} else {
 					v.setWeightInL(v.getDeadlines()[level], level);
-					v.setDelayed(false);
+					setDelayed(v, false);
 				}
 			} else {
 				v.setWeightInL(v.getDeadlines()[level], level);
-				v.setDelayed(false);
+				setDelayed(v, false);
 			}
 		}
 		
 		// Order the list accordingly
-		Collections.sort(ready, new Comparator<VertexScheduling>() {
-			@Override
-			public int compare(VertexScheduling o1, VertexScheduling o2) {
-				if (o1.getWeights()[level] - o2.getWeights()[level] != 0)
-					return o1.getWeights()[level] - o2.getWeights()[level];
-				else
-					return o1.getId() - o2.getId();
-			}
-		});
+		ready.updateKeys();
 	}
 
 	@Override
-	protected void sortLO(List<VertexScheduling> ready, int slot, int level) {
+	protected void sortLO(ReadyQueue ready, int slot, int level) {
 		// If it's a HI task verify that mode transition is respected
 		for (VertexScheduling v : ready) {
 			int dagId = v.getGraphId();
@@ -122,7 +111,7 @@ public class EartliestDeadlineFirstMCSched extends GlobalGenericMCScheduler {
 			if (v.getWcet(level + 1) > 0) {
 				// Promotion needed for the task
 				if ((v.getWcet(level) - getRemainingTime()[level][dagId][v.getId()]) - scheduledUntilTinL(v, slot, level + 1) < 0) {
-					if (isDebug()) System.out.println("[DEBUG "+Thread.currentThread().getName()+"] sortLO(): Promotion of task "+v.getName()+" at slot @t = "+slot);
+					if (getTrace().isOn(SchedulingTrace.DETAILED)) getTrace().record(SchedulingTrace.PROMOTION, level, slot, v, 0, 0);
 					v.setWeightInL(0, level);
 				} else {
 					v.setWeightInL(v.getDeadlines()[level], level);
@@ -132,15 +121,38 @@ public class EartliestDeadlineFirstMCSched extends GlobalGenericMCScheduler {
 			}
 		}
 		// Sort the ready list
-		Collections.sort(ready, new Comparator<VertexScheduling>() {
-			@Override
-			public int compare(VertexScheduling arg0, VertexScheduling arg1) {
-				if (arg0.getWeights()[0] - arg1.getWeights()[0] != 0)
-					return arg0.getWeights()[0] - arg1.getWeights()[0];
-				else
-					return arg0.getId() - arg1.getId();
+		ready.updateKeys();
+	}
+
+	/**
+	 * Priorities are deadlines: the ordering holds until a promotion/delay happens
+	 */
+	@Override
+	protected int stableSlots(ReadyQueue ready, VertexScheduling head[], int allocated, int slot, int level, int bound) {
+		VertexScheduling last = allocated > 0 ? head[allocated - 1] : null;
+		int executed = 0;
+		
+		for (VertexScheduling v : ready) {
+			boolean running = last != null && !ready.before(last, v) && !isDelayed(v);
+			
+			if (running)
+				executed++;
+			
+			if (level >= 1) {
+				if (level != getLevels() - 1)
+					bound = delayHorizon(v, slot, level, bound);
+			} else if (v.getWcet(level + 1) > 0) {
+				bound = promotionHorizon(v, running, slot, level, bound);
 			}
-		});
+			
+			// Deadline of the vertex is reached
+			bound = (int) Math.max(1, Math.min(bound, (long) v.getDeadlines()[level] - slot % v.getGraphDead() + 1));
+			
+			if (bound == 1)
+				return 1;
+		}
+		
+		return slotsLeftHorizon(slot, level, executed, bound);
 	}
 
 }
@@ -19,18 +19,21 @@ package fr.tpt.s3.mcdag.scheduling;
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Hashtable;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.ListIterator;
+import java.util.Map;
 import java.util.Set;
 
 import fr.tpt.s3.mcdag.model.Vertex;
 import fr.tpt.s3.mcdag.model.VertexScheduling;
 import fr.tpt.s3.mcdag.scheduling.old.AbstractMixedCriticalityScheduler;
 import fr.tpt.s3.mcdag.model.McDAG;
-import fr.tpt.s3.mcdag.model.Edge;
+import fr.tpt.s3.mcdag.model.McDAGView;
+import fr.tpt.s3.mcdag.model.SchedulingTable;
 import fr.tpt.s3.mcdag.util.Counters;
 import fr.tpt.s3.mcdag.util.MathMCDAG;
 
@@ -54,6 +57,11 @@ public class FederatedMCSched extends AbstractMixedCriticalityScheduler{
 	private int activations;
 	private Hashtable<VertexScheduling, Integer> preempts;
 	
+	// Priority orderings of the heavy DAGs by DAG id, they do not depend
+	// on the number of cores
+	private Map<Integer, List<VertexScheduling>> hiOrders;
+	private Map<Integer, List<VertexScheduling>> loOrders;
+	
 	private boolean debug;
 	
 	/**
@@ -95,6 +103,8 @@ public class FederatedMCSched extends AbstractMixedCriticalityScheduler{
 		sethPeriod(MathMCDAG.lcm(input));
 		
 		preempts = new Hashtable<VertexScheduling, Integer>();
+		hiOrders = new HashMap<Integer, List<VertexScheduling>>();
+		loOrders = new HashMap<Integer, List<VertexScheduling>>();
 	}
 	
 	private void initRemainingTimes (McDAG d, int remainingTime[], int level) {
@@ -114,36 +124,29 @@ public class FederatedMCSched extends AbstractMixedCriticalityScheduler{
 	private void calcHLFETs (McDAG d, final int level, List<VertexScheduling> prioOrder) {
 		
 		ArrayList<VertexScheduling> toVisit = new ArrayList<VertexScheduling>();
+		McDAGView view = d.getView();
+		int succOffsets[] = view.getSuccOffsets();
+		int succs[] = view.getSuccs();
+		int predOffsets[] = view.getPredOffsets();
+		int preds[] = view.getPreds();
 		
 		// Look for sinks first
-		for (Vertex a : d.getVertices()) {
-			if (a.getWcet(level) != 0) {
-				if (a.getSndEdges().size() == 0 && a.getWcet(level) != 0) {
-					toVisit.add((VertexScheduling)a);
-				} else {
-					boolean add = true;
-					
-					for (Edge e : a.getSndEdges()) {
-						if (e.getDest().getWcet(level) != 0)
-							add = false;
-					}
-					if (add) {
-						toVisit.add((VertexScheduling)a);
-					}
-				}
-			}
+		for (int i = 0; i < view.size(); i++) {
+			if (view.isSinkinL(i, level))
+				toVisit.add((VertexScheduling) view.getVertex(i));
 		}
 		
 		// Iterate through nodes and compute their HLFET
 		while (toVisit.size() != 0) {
 			VertexScheduling a = toVisit.get(0);
+			int i = view.indexOf(a);
 			
-			// Look for the max on the SndEdges
+			// Look for the max on the successors
 			int max = 0;
 				
-			for (Edge e : a.getSndEdges()) {
-				VertexScheduling dest = (VertexScheduling) e.getDest();
-				if (dest.getWcet(level) != 0 &&
+			for (int k = succOffsets[i]; k < succOffsets[i + 1]; k++) {
+				VertexScheduling dest = (VertexScheduling) view.getVertex(succs[k]);
+				if (view.getWcet(succs[k], level) != 0 &&
 						dest.getHlfet()[level] > max) {
 					max = dest.getHlfet()[level];
 				}
@@ -151,20 +154,20 @@ public class FederatedMCSched extends AbstractMixedCriticalityScheduler{
 			a.getHlfet()[level] = max + a.getWcet(level);
 			a.getVisitedL()[level] = true;
 
-			for (Edge e : a.getRcvEdges()) {
+			for (int k = predOffsets[i]; k < predOffsets[i + 1]; k++) {
 				boolean allSuccVisited = true;
-				Vertex test = e.getSrc();
+				int test = preds[k];
 				
-				for (Edge e2 : test.getSndEdges()) {
-					VertexScheduling dest = (VertexScheduling) e2.getDest();
-					if (!dest.getVisitedL()[level] && dest.getWcet(level) != 0) {
+				for (int k2 = succOffsets[test]; k2 < succOffsets[test + 1]; k2++) {
+					VertexScheduling dest = (VertexScheduling) view.getVertex(succs[k2]);
+					if (!dest.getVisitedL()[level] && view.getWcet(succs[k2], level) != 0) {
 						allSuccVisited = false;
 						break;
 					}
 				}
 				
-				if (allSuccVisited && test.getWcet(level) != 0 && !toVisit.contains((VertexScheduling)test))
-					toVisit.add((VertexScheduling)test);
+				if (allSuccVisited && view.getWcet(test, level) != 0 && !toVisit.contains(view.getVertex(test)))
+					toVisit.add((VertexScheduling) view.getVertex(test));
 			}
 			toVisit.remove(0);
 		}
@@ -198,20 +201,27 @@ public class FederatedMCSched extends AbstractMixedCriticalityScheduler{
 		return true;
 	}
 	
-	private void checkNewActivations (List<VertexScheduling> scheduled, List<VertexScheduling> ready, int remainingTime[]) {
+	private void checkNewActivations (McDAGView view, List<VertexScheduling> scheduled, List<VertexScheduling> ready, int remainingTime[]) {
+		int succOffsets[] = view.getSuccOffsets();
+		int succs[] = view.getSuccs();
+		int predOffsets[] = view.getPredOffsets();
+		int preds[] = view.getPreds();
+		
 		// Check from the scheduled tasks the new activations
 		ListIterator<VertexScheduling> lit = scheduled.listIterator();
 		while (lit.hasNext()) {
 			VertexScheduling sched = lit.next();
+			int i = view.indexOf(sched);
+			
 			// Check destination nodes
-			for (Edge eDest : sched.getSndEdges()) {
-				VertexScheduling dest = (VertexScheduling) eDest.getDest();
+			for (int k = succOffsets[i]; k < succOffsets[i + 1]; k++) {
+				VertexScheduling dest = (VertexScheduling) view.getVertex(succs[k]);
 				
 				// Check all the predecessors of the destination
 				boolean add = true;
 				
-				for (Edge ePred : dest.getRcvEdges()) {
-					if (remainingTime[ePred.getSrc().getId()] != 0) {
+				for (int k2 = predOffsets[succs[k]]; k2 < predOffsets[succs[k] + 1]; k2++) {
+					if (remainingTime[view.getVertex(preds[k2]).getId()] != 0) {
 						add = false;
 						break;
 					}
@@ -226,7 +236,7 @@ public class FederatedMCSched extends AbstractMixedCriticalityScheduler{
 		}
 	}
 	
-	private void buildHITable (McDAG d, String sched[][][], List<VertexScheduling> prioOrder) throws SchedulingException {
+	private void buildHITable (McDAG d, SchedulingTable sched, List<VertexScheduling> prioOrder) throws SchedulingException {
 		
 		List<VertexScheduling> ready = new LinkedList<VertexScheduling>();
 		List<VertexScheduling> scheduled = new LinkedList<VertexScheduling>();
@@ -294,7 +304,7 @@ public class FederatedMCSched extends AbstractMixedCriticalityScheduler{
 			// Allocate
 			int c = 0;
 			for (VertexScheduling a : toSched) {
-				sched[1][s][c] = a.getName();	
+				sched.set(1, s, c, a.getName());
 				remainingTime[a.getId()] = remainingTime[a.getId()] - 1;
 
 				if (remainingTime[a.getId()] == 0) {
@@ -306,7 +316,7 @@ public class FederatedMCSched extends AbstractMixedCriticalityScheduler{
 			
 			// Check if we have new activations
 			if (taskFinished) {
-				checkNewActivations(scheduled, ready, remainingTime);
+				checkNewActivations(d.getView(), scheduled, ready, remainingTime);
 				Collections.sort(ready, hiComp);
 				taskFinished = false;
 			}
@@ -318,7 +328,7 @@ public class FederatedMCSched extends AbstractMixedCriticalityScheduler{
 		}
 	}
 	
-	private void buildLOTable (McDAG d, String sched[][][], List<VertexScheduling> loPrioOrder, List<VertexScheduling> hiPrioOrder) throws SchedulingException {
+	private void buildLOTable (McDAG d, SchedulingTable sched, List<VertexScheduling> loPrioOrder, List<VertexScheduling> hiPrioOrder) throws SchedulingException {
 		List<VertexScheduling> ready = new LinkedList<VertexScheduling>();
 		List<VertexScheduling> scheduled = new LinkedList<VertexScheduling>();
 		int[] remainingTime = new int[d.getVertices().size()];
@@ -413,7 +423,7 @@ public class FederatedMCSched extends AbstractMixedCriticalityScheduler{
 			// Allocate
 			int c = 0;
 			for (VertexScheduling a : toSched) {
-				sched[0][s][c] = a.getName();
+				sched.set(0, s, c, a.getName());
 				remainingTime[a.getId()] = remainingTime[a.getId()] - 1;
 
 				if (remainingTime[a.getId()] == 0) {
@@ -425,7 +435,7 @@ public class FederatedMCSched extends AbstractMixedCriticalityScheduler{
 			
 			// Check if we have new activations
 			if (taskFinished) {
-				checkNewActivations(scheduled, ready, remainingTime);
+				checkNewActivations(d.getView(), scheduled, ready, remainingTime);
 				Collections.sort(ready, loComp);
 				taskFinished = false;
 			}
@@ -453,7 +463,7 @@ public class FederatedMCSched extends AbstractMixedCriticalityScheduler{
 		
 	}
 	
-	private void buildLight (Set<VertexScheduling> lightTasks, String sched[][][], final int level, int hPeriod, int cores)
+	private void buildLight (Set<VertexScheduling> lightTasks, SchedulingTable sched, final int level, int hPeriod, int cores)
 	throws SchedulingException {
 		List<VertexScheduling> ready = new LinkedList<>();
 		Hashtable<VertexScheduling, Integer> remainingTime = new Hashtable<VertexScheduling, Integer>();
@@ -480,7 +490,7 @@ public class FederatedMCSched extends AbstractMixedCriticalityScheduler{
 					VertexScheduling a = lit.next();
 					int val = remainingTime.get(a);
 					
-					sched[level][s][c] = a.getName();
+					sched.set(level, s, c, a.getName());
 					val--;
 					
 					remainingTime.put(a, val);
@@ -503,12 +513,44 @@ public class FederatedMCSched extends AbstractMixedCriticalityScheduler{
 		}
 	}
 	
+	/**
+	 * Computes the HLFET priority orderings of a heavy DAG once
+	 * @param d
+	 */
+	private void calcPrioOrders (McDAG d) {
+		List<VertexScheduling> hiPrioOrder = new LinkedList<>();
+		List<VertexScheduling> loPrioOrder = new LinkedList<>();
+		
+		calcHLFETs(d, 1, hiPrioOrder);
+		calcHLFETs(d, 0, loPrioOrder);
+		
+		ListIterator<VertexScheduling> lit = loPrioOrder.listIterator();
+		while (lit.hasNext()) {
+			VertexScheduling a = lit.next();
+			if (a.getWcet(1) > 0)
+				lit.remove();
+		}
+		Collections.sort(loPrioOrder, loComp);
+		Collections.sort(hiPrioOrder, hiComp);
+		
+		hiOrders.put(d.getId(), hiPrioOrder);
+		loOrders.put(d.getId(), loPrioOrder);
+	}
+	
 	public void buildAllTables () throws SchedulingException {
 		
 		int coresQuota = getNbCores();
 		double uLightDAGs = 0.0;
 		Set<McDAG> heavyDAGs = new HashSet<McDAG>();
 		Set<McDAG> lightDAGs = new HashSet<McDAG>();
+		
+		// Counters and running jobs of a previous attempt
+		activations = 0;
+		preempts.clear();
+		for (McDAG d : getMcDags()) {
+			for (Vertex a : d.getVertices())
+				((VertexScheduling) a).setRunning(false);
+		}
 			
 		// Separate heavy and light DAGs
 		// Check if we have enough cores in the architecture
@@ -537,47 +579,35 @@ public class FederatedMCSched extends AbstractMixedCriticalityScheduler{
 		
 		// Check for scheduling of heavy DAGs
 		for (McDAG d : heavyDAGs) {			
-			List<VertexScheduling> hiPrioOrder = new LinkedList<>();
-			List<VertexScheduling> loPrioOrder = new LinkedList<>();
 			// Init sched table
-			String sched[][][] = new String[2][d.getDeadline()][getNbCores()];
-			
-			for (int i = 0; i < 2; i++) {
-				for (int j = 0; j < d.getDeadline(); j++) {
-					for (int k = 0; k < d.getMinCores(); k++) {
-						sched[i][j][k] = "-";
-					}
-				}
-			}
+			SchedulingTable sched = new SchedulingTable(2, d.getDeadline(), getNbCores(), d.getVertices().size());
 			if (isDebug()) printDAG(d);
 			
-			calcHLFETs(d, 1, hiPrioOrder);
-			calcHLFETs(d, 0, loPrioOrder);
-			
-			ListIterator<VertexScheduling> lit = loPrioOrder.listIterator();
-			while (lit.hasNext()) {
-				VertexScheduling a = lit.next();
-				if (a.getWcet(1) > 0)
-					lit.remove();
-			}
-			Collections.sort(loPrioOrder, loComp);
-			Collections.sort(hiPrioOrder, hiComp);
+			if (!hiOrders.containsKey(d.getId()))
+				calcPrioOrders(d);
+			List<VertexScheduling> hiPrioOrder = new LinkedList<>(hiOrders.get(d.getId()));
+			List<VertexScheduling> loPrioOrder = new LinkedList<>(loOrders.get(d.getId()));
 			
 			if (isDebug()) printHLFETLevels(d);
 			
-			buildHITable(d, sched, hiPrioOrder);
-			buildLOTable(d, sched, loPrioOrder, hiPrioOrder);
-			
-			for (Vertex a : d.getVertices()) {
-				VertexScheduling task = (VertexScheduling) a;
-				preempts.put(task, 0);
+			// The table is only used to count the preemptions
+			try {
+				buildHITable(d, sched, hiPrioOrder);
+				buildLOTable(d, sched, loPrioOrder, hiPrioOrder);
+				
+				for (Vertex a : d.getVertices()) {
+					VertexScheduling task = (VertexScheduling) a;
+					preempts.put(task, 0);
+				}
+				Counters.countPreemptions(sched, preempts, 2, gethPeriod(), d.getDeadline(), d.getMinCores());
+			} finally {
+				sched.close();
 			}
-			Counters.countPreemptions(sched, preempts, 2, gethPeriod(), d.getDeadline(), d.getMinCores());
 		}
 
 		// Build tables for light DAGs
 		int coresLight = (int) Math.ceil(uLightDAGs);
-		String sched[][][] = new String[2][gethPeriod()][coresLight];
+		SchedulingTable sched = new SchedulingTable(2, gethPeriod(), coresLight, lightDAGs.size());
 		Set<VertexScheduling> lightTasks = new HashSet<VertexScheduling>();
 
 		// Transform DAGs to independent tasks and add them to set
@@ -603,14 +633,48 @@ public class FederatedMCSched extends AbstractMixedCriticalityScheduler{
 		// Calculate the hyperperiod of the light DAGs ?????
 		
 		// Build table in LO & HI
-		buildLight(lightTasks, sched, 0, gethPeriod(), coresLight);
-		buildLight(lightTasks, sched, 1, gethPeriod(), coresLight);
-		Counters.countPreemptions(sched, preempts, 2, gethPeriod(), gethPeriod(), coresLight);
+		try {
+			buildLight(lightTasks, sched, 0, gethPeriod(), coresLight);
+			buildLight(lightTasks, sched, 1, gethPeriod(), coresLight);
+			Counters.countPreemptions(sched, preempts, 2, gethPeriod(), gethPeriod(), coresLight);
+		} finally {
+			sched.close();
+		}
 
 		
 		if (debug) printPreempts();
 	}
 	
+	/**
+	 * Looks for the smallest number of cores that schedules the system, starting
+	 * from the utilization bound. Heavy DAGs can miss their deadline with more cores,
+	 * so every number of cores is tried in increasing order: most attempts stop at
+	 * the core quota check. The priority orderings are computed by the first
+	 * attempt only. The tables of the returned number of cores are kept.
+	 * @param maxCores Highest number of cores that can be used
+	 * @return The number of cores
+	 * @throws SchedulingException If the system is not schedulable with maxCores
+	 */
+	public int findMinCores (int maxCores) throws SchedulingException {
+		MinCoresSearch search = new MinCoresSearch() {
+			@Override
+			protected boolean schedulable (int cores) {
+				setNbCores(cores);
+				try {
+					buildAllTables();
+				} catch (SchedulingException e) {
+					if (isDebug()) System.out.println("[DEBUG "+Thread.currentThread().getName()+"] findMinCores(): not schedulable with "+cores+" cores");
+					return false;
+				}
+				return true;
+			}
+		};
+		int cores = search.scan(MathMCDAG.minCores(getMcDags(), 2), maxCores);
+		
+		if (isDebug()) System.out.println("[DEBUG "+Thread.currentThread().getName()+"] findMinCores(): "+cores+" cores found after "+search.getAttempts()+" attempts");
+		return cores;
+	}
+	
 	/*
 	 * DEBUG FUNCTIONS
 	 */
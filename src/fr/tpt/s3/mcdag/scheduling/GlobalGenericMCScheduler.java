@@ -16,20 +16,21 @@
  *******************************************************************************/
 package fr.tpt.s3.mcdag.scheduling;
 
-import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Comparator;
 import java.util.Hashtable;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.ListIterator;
 import java.util.Set;
 
-import fr.tpt.s3.mcdag.model.Edge;
 import fr.tpt.s3.mcdag.model.McDAG;
+import fr.tpt.s3.mcdag.model.McDAGView;
+import fr.tpt.s3.mcdag.model.SchedulingTable;
 import fr.tpt.s3.mcdag.model.Vertex;
 import fr.tpt.s3.mcdag.model.VertexScheduling;
 import fr.tpt.s3.mcdag.util.Counters;
 import fr.tpt.s3.mcdag.util.MathMCDAG;
+import fr.tpt.s3.mcdag.util.TableStats;
 
 /**
  * Generic implementation of the scheduling algorithms
@@ -42,13 +43,50 @@ public abstract class GlobalGenericMCScheduler {
 	// Set of MC-DAGs to schedule
 	private Set<McDAG> mcDAGs;
 	
+	// DAG id -> array view used in the traversals
+	private McDAGView views[];
+	
 	// Architecture + hyper-period + nb of levels
 	private int nbCores;
 	private int hPeriod;
 	private int levels;
 	
 	// Scheduling tables
-	private String sched[][][];
+	// DAG id, Vertex id -> index in the tables
+	private SchedulingTable table;
+	private int tableIndexes[][];
+	
+	// DAG id -> first key of its vertices in the ready queues
+	private int vertexOffsets[];
+	
+	// Vertices whose current job is completed
+	private BitSet scheduledSet;
+	
+	// Job activations, by vertex key: neighbours of the current job left to complete
+	// (predecessors in LO mode, successors executing in the level on the dual)
+	// and their number at each DAG activation
+	private int jobsLeft[];
+	private int jobsNeeded[];
+	// First completion among the neighbours of the current job and its edge index
+	private long firstCompletion[];
+	private int firstEdge[];
+	private long completions;
+	// Vertices whose neighbours are all completed, not added to the ready list yet
+	private VertexScheduling pending[];
+	private int nbPending;
+	
+	// Next activations of the DAGs in the level being built
+	private ReleaseCalendar calendar;
+	
+	// Delayed jobs, by vertex key: a job is delayed in the current step when
+	// its stamp is the current epoch
+	private int delayStamps[];
+	private int delayEpoch;
+	
+	// Slots allocated to each table index, in the order they were written
+	// Level, table index -> slots
+	private int allocSlots[][][];
+	private int allocCounts[][];
 	
 	// Remaining time to be allocated for each node
 	// Level, DAG id, Vertex Id
@@ -62,6 +100,22 @@ public abstract class GlobalGenericMCScheduler {
 	private boolean countPreempt;
 	private int activations;
 	private Hashtable<VertexScheduling, Integer> preemptions;
+	// Context switches, migrations and activations of the tables
+	private TableStats stats;
+	
+	// Event-driven construction of the tables
+	private boolean eventDriven;
+	
+	// Necessary conditions checked before building the tables
+	private List<PreCheck> preChecks = PreCheck.defaults();
+	
+	// Measures of the phases, set before the constructors compute the deadlines
+	private static Instrumentation defaultInstrumentation = Instrumentation.NONE;
+	private Instrumentation instrumentation = defaultInstrumentation;
+	
+	// Last events of the table construction, given with the scheduling exceptions
+	private static int defaultTraceLevel = SchedulingTrace.OFF;
+	private SchedulingTrace trace = new SchedulingTrace(defaultTraceLevel, SchedulingTrace.DEFAULT_CAPACITY);
 	
 	// Debugging boolean
 	private boolean debug;
@@ -75,7 +129,7 @@ public abstract class GlobalGenericMCScheduler {
 	 * Function that verifies if the scheduling should continue
 	 * @return
 	 */
-	protected abstract boolean verifyConstraints (List<VertexScheduling> ready, int slot, int level);
+	protected abstract boolean verifyConstraints (ReadyQueue ready, int slot, int level);
 	
 	/**
 	 * Function to sort the ready list in HI modes (uses the dual graph)
@@ -83,7 +137,7 @@ public abstract class GlobalGenericMCScheduler {
 	 * @param slot
 	 * @param level
 	 */
-	protected abstract void sortHI (List<VertexScheduling> ready, int slot, int level);
+	protected abstract void sortHI (ReadyQueue ready, int slot, int level);
 	
 	/**
 	 * Function to sort the ready list in the lower criticality mode
@@ -91,117 +145,61 @@ public abstract class GlobalGenericMCScheduler {
 	 * @param slot
 	 * @param level
 	 */
-	protected abstract void sortLO (List<VertexScheduling> ready, int slot, int level);
-	
-	/*
-	 * Generic scheduling functions
-	 */
+	protected abstract void sortLO (ReadyQueue ready, int slot, int level);
 	
 	/**
-	 * Calculates deadline of an actor by considering the dual of the graph
-	 * @param a
+	 * Function that returns for how many slots the ordering of the ready list and the
+	 * verdict of verifyConstraints remain the same if the allocation is kept.
+	 * Used by the event-driven construction of the tables, the default value makes
+	 * the construction advance slot by slot.
+	 * @param ready Sorted ready list
+	 * @param head First vertices of the ready list, the ones that were given a core
+	 * @param allocated Number of vertices in head
+	 * @param slot Slot used to sort the ready list
 	 * @param level
-	 * @param deadline
+	 * @param bound Upper bound given by job completions and DAG activations
+	 * @return
 	 */
-	protected void calcDeadlineReverse (VertexScheduling a, int level, int deadline) {
-		int ret = Integer.MAX_VALUE;
-		
-		if (a.isSourceinL(level)) {
-			ret = deadline;
-		} else {
-			int test = Integer.MAX_VALUE;
-			
-			for (Edge e : a.getRcvEdges()) {
-				test = ((VertexScheduling) e.getSrc()).getDeadlines()[level] - e.getSrc().getWcet(level);
-				if (test < ret)
-					ret = test;
-			}
-		}
-		a.setDeadlineInL(ret, level);
+	protected int stableSlots (ReadyQueue ready, VertexScheduling head[], int allocated, int slot, int level, int bound) {
+		return 1;
 	}
 	
 	/**
-	 * Calculates the deadline of an actor, successors should be have their value assigned
-	 * first
-	 * @param a
+	 * Function that tells how vertices with the same weight are ordered in the ready list
 	 * @param level
-	 * @param deadline
+	 * @return True if the vertex with the smallest id comes first
 	 */
-	protected void calcDeadline (VertexScheduling a, int level, int deadline) {
-		int ret = Integer.MAX_VALUE;
-		
-		if (a.isSinkinL(level)) {
-			ret = deadline;
-		} else {
-			int test = Integer.MAX_VALUE;
-			
-			for (Edge e : a.getSndEdges()) {
-				test = ((VertexScheduling) e.getDest()).getDeadlines()[level] - e.getDest().getWcet(level);
-				if (test < ret)
-					ret = test;
-			}
-		}
-		a.setDeadlineInL(ret, level);
+	protected boolean ascendingIds (int level) {
+		return true;
 	}
 	
+	/*
+	 * Generic scheduling functions
+	 */
+	
 	/**
-	 * Function that calculates deadlines in all criticality modes for DAG
+	 * Function that calculates deadlines in all criticality modes for DAG.
+	 * The deadlines are computed once for a DAG and its copies
 	 * @param d
 	 */
 	protected void calcDedlines (McDAG d) {
-		// Start by calculating deadlines in HI modes
-		for (int i = 1; i < getLevels(); i++) {
-			ArrayList<VertexScheduling> toVisit = new ArrayList<VertexScheduling>();
-			
-			// Calculate sources in i mode
-			for (Vertex v : d.getVertices()) {
-				if (v.isSourceinL(i)) {
-					toVisit.add((VertexScheduling) v);
-				}
-			}
+		long start = instrumentation.isEnabled() ? System.nanoTime() : 0;
+		McDAGView view = d.getView();
+		int lfts[][] = DeadlineEngine.get(d, getLevels());
+		
+		for (int i = 0; i < view.size(); i++) {
+			VertexScheduling a = (VertexScheduling) view.getVertex(i);
 			
-			// Visit all nodes iteratively
-			while (!toVisit.isEmpty()) {
-				VertexScheduling a = toVisit.get(0);
-				
-				calcDeadlineReverse(a, i, d.getDeadline());
-				a.getVisitedL()[i] = true;
-				
-				for (Edge e: a.getSndEdges()) {
-					if (e.getDest().getWcet(i) != 0 && !((VertexScheduling) e.getDest()).getVisitedL()[i]
-							&& predVisitedInLevel((VertexScheduling) e.getDest(), i)
-							&& !toVisit.contains((VertexScheduling) e.getDest())) {
-						toVisit.add((VertexScheduling) e.getDest());
-					}
+			for (int l = 0; l < getLevels(); l++) {
+				if (lfts[l][i] != Integer.MAX_VALUE) {
+					a.setDeadlineInL(lfts[l][i], l);
+					a.getVisitedL()[l] = true;
 				}
-				toVisit.remove(0);
 			}
 		}
 		
-		// Calculate deadlines in LO mode
-		ArrayList<VertexScheduling> toVisit = new ArrayList<VertexScheduling>();
-		// Calculate sources in i mode
-		for (Vertex a : d.getVertices()) {
-			if (a.isSinkinL(0))
-				toVisit.add((VertexScheduling) a);
-		}
-					
-		// Visit all nodes iteratively
-		while (!toVisit.isEmpty()) {
-			VertexScheduling a = toVisit.get(0);
-						
-			calcDeadline(a, 0, d.getDeadline());
-			a.getVisitedL()[0] = true;
-						
-			for (Edge e: a.getRcvEdges()) {
-				if (!((VertexScheduling) e.getSrc()).getVisitedL()[0]
-						&& succVisitedInLevel((VertexScheduling) e.getSrc(), 0)
-						&& !toVisit.contains((VertexScheduling) e.getSrc())) {
-					toVisit.add((VertexScheduling) e.getSrc());
-				}
-			}
-			toVisit.remove(0);
-		}
+		if (instrumentation.isEnabled())
+			instrumentation.phase(Instrumentation.DEADLINES, Instrumentation.ALL_LEVELS, System.nanoTime() - start);
 	}
 	
 	/**
@@ -212,19 +210,9 @@ public abstract class GlobalGenericMCScheduler {
 	 * @return
 	 */
 	protected int scheduledUntilTinL (VertexScheduling a, int t, int l) {
-		int ret = 0;
 		int start = (int)(t / a.getGraphDead()) * a.getGraphDead();
 		
-		for (int i = start; i <= t; i++) {
-			for (int c = 0; c < getNbCores(); c++) {
-				if (getSched()[l][i][c] !=  null) {
-					if (getSched()[l][i][c].contentEquals(a.getName()))
-						ret++;
-				}
-			}
-		}
-		
-		return ret;
+		return countAllocations(l, getTableIndex(a), start, t);
 	}
 
 	/**
@@ -236,7 +224,6 @@ public abstract class GlobalGenericMCScheduler {
 	 * @return
 	 */
 	protected int scheduledUntilTinLreverse (VertexScheduling a, int t, int l) {
-		int ret = 0;
 		int end = 0;
 		
 		int realSlot = gethPeriod() - t;
@@ -245,23 +232,256 @@ public abstract class GlobalGenericMCScheduler {
 			return 0;
 
 		end = ((int)(realSlot / a.getGraphDead()) + 1)  * a.getGraphDead() - 1;
-				
-		for (int i = end; i >= realSlot; i--) {
-			for (int c = 0; c < getNbCores(); c++) {
-				if (getSched()[l][i][c] !=  null) {
-					if (getSched()[l][i][c].contentEquals(a.getName()))
-						ret++;
+		
+		return countAllocations(l, getTableIndex(a), realSlot, end);
+	}
+	
+	/**
+	 * Counts the slots between from and to (both included) allocated to a table index
+	 * @param level
+	 * @param index
+	 * @param from
+	 * @param to
+	 * @return
+	 */
+	private int countAllocations (int level, int index, int from, int to) {
+		// The LO table is written forward, HI tables backwards
+		if (level == 0)
+			return slotsBefore(level, index, to + 1, true) - slotsBefore(level, index, from, true);
+		else
+			return slotsBefore(level, index, from - 1, false) - slotsBefore(level, index, to, false);
+	}
+	
+	/**
+	 * Binary search of the number of allocated slots stored before a slot
+	 * @param level
+	 * @param index
+	 * @param slot
+	 * @param ascending True if slots are stored in ascending order
+	 * @return Number of stored slots lower than slot (greater if descending)
+	 */
+	private int slotsBefore (int level, int index, int slot, boolean ascending) {
+		int slots[] = allocSlots[level][index];
+		int low = 0;
+		int high = allocCounts[level][index];
+		
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			
+			if (ascending ? slots[mid] < slot : slots[mid] > slot)
+				low = mid + 1;
+			else
+				high = mid;
+		}
+		return low;
+	}
+	
+	/**
+	 * Allocates a run of slots of a core to a vertex, slots [from, to[ are
+	 * written in the direction the table is built
+	 * @param level
+	 * @param from
+	 * @param to
+	 * @param core
+	 * @param v
+	 */
+	private void allocate (int level, int from, int to, int core, VertexScheduling v) {
+		int index = getTableIndex(v);
+		int count = allocCounts[level][index];
+		boolean grown = count + to - from > allocSlots[level][index].length;
+		
+		table.fill(level, from, to, core, index);
+		
+		if (grown)
+			allocSlots[level][index] = Arrays.copyOf(allocSlots[level][index], Math.max(2 * count, count + to - from));
+		if (instrumentation.isEnabled())
+			instrumentation.allocation(level, to - from, grown);
+		if (trace.isOn(SchedulingTrace.DECISIONS))
+			trace.record(SchedulingTrace.ALLOCATION, level, level == 0 ? from : to - 1, v, core, to - from);
+		
+		int slots[] = allocSlots[level][index];
+		int first = count;
+		
+		if (level == 0) {
+			for (int s = from; s < to; s++)
+				slots[count++] = s;
+		} else {
+			for (int s = to - 1; s >= from; s--)
+				slots[count++] = s;
+		}
+		allocCounts[level][index] = count;
+		
+		// Vertices sharing a name can be given the same run on two cores
+		if (first > 0 && (level == 0 ? slots[first] < slots[first - 1] : slots[first] > slots[first - 1])) {
+			Arrays.sort(slots, 0, count);
+			if (level != 0) {
+				for (int i = 0, j = count - 1; i < j; i++, j--) {
+					int tmp = slots[i];
+					slots[i] = slots[j];
+					slots[j] = tmp;
 				}
 			}
 		}
-		// System.out.println("\t\t\t [DEBUG] scheduledUntilTinLreverse(): task "+a.getName()+" end "+end+" slot "+realSlot+" val = "+ret);
-		return ret;
+	}
+	
+	/**
+	 * Returns the index used for a vertex in the scheduling tables
+	 * @param a
+	 * @return
+	 */
+	protected int getTableIndex (VertexScheduling a) {
+		return tableIndexes[a.getGraphId()][a.getId()];
+	}
+	
+	/**
+	 * Returns for how many slots the promotion test done in LO mode keeps its value
+	 * @param v
+	 * @param running True if the vertex has a core during these slots
+	 * @param slot
+	 * @param level
+	 * @param bound
+	 * @return
+	 */
+	protected int promotionHorizon (VertexScheduling v, boolean running, int slot, int level, int bound) {
+		int rTime = remainingTime[level][v.getGraphId()][v.getId()];
+		boolean promoted = isPromoted(v, rTime, slot, level);
+		
+		// Allocations in the higher table cannot outrun a running vertex
+		// and a promoted vertex that waits stays promoted
+		if (running != promoted)
+			return bound;
+		
+		for (int k = 1; k < bound; k++) {
+			if (isPromoted(v, running ? rTime - k : rTime, slot + k, level) != promoted)
+				return k;
+		}
+		return bound;
+	}
+	
+	/**
+	 * Tests if a HI vertex needs to be promoted in the LO mode
+	 * @param v
+	 * @param rTime
+	 * @param slot
+	 * @param level
+	 * @return
+	 */
+	protected boolean isPromoted (VertexScheduling v, int rTime, int slot, int level) {
+		return (v.getWcet(level) - rTime) - scheduledUntilTinL(v, slot, level + 1) < 0;
+	}
+	
+	/**
+	 * Returns for how many slots the delay test done in HI modes keeps its value
+	 * @param v
+	 * @param slot
+	 * @param level
+	 * @param bound
+	 * @return
+	 */
+	protected int delayHorizon (VertexScheduling v, int slot, int level, int bound) {
+		int delta = v.getWcet(level + 1) - v.getWcet(level);
+		boolean delayed = scheduledUntilTinLreverse(v, slot, level + 1) <= delta;
+		
+		for (int k = 1; k < bound; k++) {
+			if ((scheduledUntilTinLreverse(v, slot + k, level + 1) <= delta) != delayed)
+				return k;
+		}
+		return bound;
+	}
+	
+	/**
+	 * Returns for how many slots a waiting vertex, whose laxity decreases at each slot,
+	 * stays behind the last allocated vertex of the ready list
+	 * @param ready
+	 * @param last Last allocated vertex
+	 * @param v Waiting vertex
+	 * @param ascIds True if ties are broken with ascending ids
+	 * @param bound
+	 * @return
+	 */
+	protected int laxityHorizon (ReadyQueue ready, VertexScheduling last, VertexScheduling v, boolean ascIds, int bound) {
+		long gap = ready.weight(v) - ready.weight(last);
+		
+		if (ascIds ? v.getId() < last.getId() : v.getId() > last.getId())
+			gap--;
+		
+		return (int) Math.max(1, Math.min(bound, gap + 1));
+	}
+	
+	/**
+	 * Returns the first slot after the given one where the laxity of a waiting
+	 * vertex no longer drops by one per slot: the next period of its DAG
+	 * @param v
+	 * @param slot
+	 * @return
+	 */
+	protected int nextPeriod (VertexScheduling v, int slot) {
+		return (slot / v.getGraphDead() + 1) * v.getGraphDead();
+	}
+	
+	/**
+	 * Returns the first slot after the given one where the promotion test of a waiting
+	 * vertex can change: its next allocation in the higher table or its next period
+	 * @param v
+	 * @param slot
+	 * @param level
+	 * @return
+	 */
+	protected int nextPromotionCheck (VertexScheduling v, int slot, int level) {
+		int index = getTableIndex(v);
+		int next = nextPeriod(v, slot);
+		// Higher tables are stored backwards, the last slot after the given one is the closest
+		int after = slotsBefore(level + 1, index, slot, false);
+		
+		if (after > 0)
+			next = Math.min(next, allocSlots[level + 1][index][after - 1]);
+		return next;
+	}
+	
+	/**
+	 * Returns the first slot t after the given one where the delay test done in HI
+	 * modes with scheduledUntilTinLreverse(v, t, level + 1) can change
+	 * @param v
+	 * @param t
+	 * @param level
+	 * @return
+	 */
+	protected int nextDelayCheck (VertexScheduling v, int t, int level) {
+		int index = getTableIndex(v);
+		int realSlot = hPeriod - t;
+		// Counted slots restart in the previous period of the DAG
+		int next = hPeriod - (realSlot / v.getGraphDead()) * v.getGraphDead() + 1;
+		// or the closest allocation before the real slot is counted
+		int atLeast = slotsBefore(level + 1, index, realSlot - 1, false);
+		
+		if (atLeast < allocCounts[level + 1][index])
+			next = Math.min(next, hPeriod - allocSlots[level + 1][index][atLeast]);
+		return next;
+	}
+	
+	/**
+	 * Returns for how many slots there are enough slots left to allocate the remaining
+	 * execution times when only the given number of vertices are executed
+	 * @param slot
+	 * @param level
+	 * @param executed
+	 * @param bound
+	 * @return
+	 */
+	protected int slotsLeftHorizon (int slot, int level, int executed, int bound) {
+		if (executed >= nbCores)
+			return bound;
+		
+		long margin = (long) (hPeriod - slot) * nbCores - sumRemainTimes[level];
+		
+		return (int) Math.max(1, Math.min(bound, margin / (nbCores - executed) + 1));
 	}
 	
 	/**
 	 * Initialize scheduling tables 
 	 */
 	protected void initTables() {
+		long start = instrumentation.isEnabled() ? System.nanoTime() : 0;
 		int[] input = new int[getMcDAGs().size()];
 		int i = 0;
 		
@@ -272,19 +492,58 @@ public abstract class GlobalGenericMCScheduler {
 		
 		sethPeriod(MathMCDAG.lcm(input));
 		
-		// Init scheduling tables
-		sched = new String[getLevels()][gethPeriod()][getNbCores()];
+		// Init scheduling tables, vertices sharing a name share an index
+		int nbVertices = 0;
+		for (McDAG d : getMcDAGs())
+			nbVertices += d.getVertices().size();
+		
+		// The table of a previous attempt is dropped
+		closeTable();
+		table = new SchedulingTable(getLevels(), gethPeriod(), getNbCores(), nbVertices);
+		tableIndexes = new int[getMcDAGs().size()][];
+		
+		for (McDAG d : getMcDAGs()) {
+			tableIndexes[d.getId()] = new int[d.getVertices().size()];
+			for (Vertex a : d.getVertices())
+				tableIndexes[d.getId()][a.getId()] = table.register(a.getName());
+		}
+		
+		// Vertices of the DAG i follow the ones of the DAG i - 1 in the ready queues
+		vertexOffsets = new int[getMcDAGs().size() + 1];
+		for (McDAG d : getMcDAGs())
+			vertexOffsets[d.getId() + 1] = d.getVertices().size();
+		for (i = 1; i < vertexOffsets.length; i++)
+			vertexOffsets[i] += vertexOffsets[i - 1];
+		
+		delayStamps = new int[vertexOffsets[vertexOffsets.length - 1]];
+		delayEpoch = 1;
+		
+		// Allocation counters are sized with the execution times over the hyper-period.
+		// They stay on the heap and are counted against the budget of the table
+		allocSlots = new int[getLevels()][table.getNbNames()][];
+		allocCounts = new int[getLevels()][table.getNbNames()];
+		long allocBytes = 0;
 		
 		for (i = 0; i < getLevels(); i++) {
-			for (int j = 0; j < gethPeriod(); j++) {
-				for (int k = 0; k < getNbCores(); k++)
-					sched[i][j][k] = "-";
+			int capacity[] = new int[table.getNbNames()];
+			
+			for (McDAG d : getMcDAGs()) {
+				for (Vertex a : d.getVertices()) {
+					if (a.getWcet(i) > 0)
+						capacity[tableIndexes[d.getId()][a.getId()]] += a.getWcet(i) * (hPeriod / d.getDeadline());
+				}
+			}
+			for (int n = 0; n < table.getNbNames(); n++) {
+				allocSlots[i][n] = new int[capacity[n]];
+				allocBytes += 4L * capacity[n];
 			}
 		}
+		table.setBudget(Math.max(0, table.getBudget() - allocBytes));
 		
 		if (debug) System.out.println("[DEBUG "+Thread.currentThread().getName()+"] initTables(): Sched tables initialized!");
 		
 		// Calc number of activations
+		activations = 0;
 		if (isCountPreempt()) {
 			for (McDAG d : getMcDAGs()) {
 				for (Vertex a : d.getVertices()) {
@@ -297,6 +556,9 @@ public abstract class GlobalGenericMCScheduler {
 				}
 			}
 		}
+		
+		if (instrumentation.isEnabled())
+			instrumentation.phase(Instrumentation.INIT_TABLES, Instrumentation.ALL_LEVELS, System.nanoTime() - start);
 	}
 	
 	/**
@@ -323,137 +585,269 @@ public abstract class GlobalGenericMCScheduler {
 	}
 	
 	/**
-	 * Internal function that checks if all the predecessors of an actor are visited
-	 * @param a
+	 * Initializes the job activation counters of a level
 	 * @param level
-	 * @return
 	 */
-	protected boolean predVisitedInLevel (VertexScheduling a, int level) {
-		for (Edge e : a.getRcvEdges()) {
-			if (e.getSrc().getWcet(level) != 0 && !((VertexScheduling) e.getSrc()).getVisitedL()[level])
-				return false;
+	private void initJobCounters (int level) {
+		int nbVertices = vertexOffsets[vertexOffsets.length - 1];
+		
+		jobsLeft = new int[nbVertices];
+		jobsNeeded = new int[nbVertices];
+		firstCompletion = new long[nbVertices];
+		firstEdge = new int[nbVertices];
+		pending = new VertexScheduling[nbVertices];
+		nbPending = 0;
+		completions = 0;
+		
+		for (McDAG d : getMcDAGs()) {
+			McDAGView view = getView(d.getId());
+			int backOffsets[] = level == 0 ? view.getPredOffsets() : view.getSuccOffsets();
+			int backAdjacency[] = level == 0 ? view.getPreds() : view.getSuccs();
+			
+			for (int i = 0; i < view.size(); i++) {
+				int key = vertexKey((VertexScheduling) view.getVertex(i));
+				
+				for (int k = backOffsets[i]; k < backOffsets[i + 1]; k++) {
+					if (level == 0 || view.getWcet(backAdjacency[k], level) != 0)
+						jobsNeeded[key]++;
+				}
+				jobsLeft[key] = jobsNeeded[key];
+				firstCompletion[key] = -1;
+			}
 		}
-		return true;
 	}
 	
 	/**
-	 * Internal function that checks if all the sucessors of an actor are visited
-	 * @param a
+	 * Functions that adds new jobs when task have finished their execution.
+	 * The vertices are added in the order of the first completion among their
+	 * neighbours, then of their edge from this neighbour.
+	 * @param ready
 	 * @param level
-	 * @return
 	 */
-	protected boolean succVisitedInLevel (VertexScheduling a, int level) {
-		for (Edge e : a.getSndEdges()) {
-			if (e.getDest().getWcet(level) != 0 && !((VertexScheduling) e.getDest()).getVisitedL()[level])
-				return false;
+	protected void checkJobActivations (ReadyQueue ready, int level) {
+		for (int p = 1; p < nbPending; p++) {
+			VertexScheduling v = pending[p];
+			int key = vertexKey(v);
+			int q = p - 1;
+			
+			while (q >= 0 && (firstCompletion[vertexKey(pending[q])] > firstCompletion[key]
+					|| (firstCompletion[vertexKey(pending[q])] == firstCompletion[key] && firstEdge[vertexKey(pending[q])] > firstEdge[key]))) {
+				pending[q + 1] = pending[q];
+				q--;
+			}
+			pending[q + 1] = v;
 		}
-		return true;
+		
+		for (int p = 0; p < nbPending; p++) {
+			VertexScheduling connectedVertex = pending[p];
+			
+			if (!ready.contains(connectedVertex)
+					&& remainingTime[level][connectedVertex.getGraphId()][connectedVertex.getId()] != 0) {
+				ready.add(connectedVertex);
+			}
+			pending[p] = null;
+		}
+		nbPending = 0;
 	}
 	
-	
 	/**
-	 * Functions that adds new jobs when task have finished their execution
+	 * Function that adds entry vertices when the period of a MC-DAG is reached.
+	 * The DAGs are taken from the release calendar, only the released ones are visited.
 	 * @param ready
+	 * @param slot
 	 * @param level
+	 * @throws SchedulingException A vertex is activated while its previous job is still ready
 	 */
-	protected void checkJobActivations (List<VertexScheduling> ready, List<VertexScheduling> scheduled, int level) {
-		final boolean forward = level == 0;
+	protected void checkDagActivations (ReadyQueue ready, int slot, int level) throws SchedulingException {		
+		long time = level == 0 ? slot : hPeriod - slot;
 		
-		for (VertexScheduling v : scheduled) {
+		while (calendar.next() <= time) {
+			McDAG d = calendar.release();
 			
-			for (Edge e : forward ? v.getSndEdges() : v.getRcvEdges()) {
-				VertexScheduling connectedVertex = (VertexScheduling) (forward ? e.getDest() : e.getSrc());
-				boolean add = true;
-					
-				for (Edge e2 : forward ? connectedVertex.getRcvEdges() : connectedVertex.getSndEdges()) {
-					VertexScheduling checkedVertex = (VertexScheduling) (forward ? e2.getSrc() : e2.getDest());
-						
-					
-					if (forward && !scheduled.contains(checkedVertex)) {
-						add = false;
-						break;
-					} else if (!forward && checkedVertex.getWcet(level) != 0 && !scheduled.contains(checkedVertex)) {
-						add = false;
-						break;
+			if (trace.isOn(SchedulingTrace.DECISIONS))
+				trace.record(SchedulingTrace.DAG_ACTIVATION, level, slot, null, 0, d.getId());
+			
+			McDAGView view = getView(d.getId());
+			
+			for (int i = 0; i < view.size(); i++) {
+				Vertex v = view.getVertex(i);
+				int key = vertexKey((VertexScheduling) v);
+				
+				// New job: no neighbour is completed
+				scheduledSet.clear(key);
+				jobsLeft[key] = jobsNeeded[key];
+				firstCompletion[key] = -1;
+				
+				remainingTime[level][((VertexScheduling)v).getGraphId()][v.getId()] = v.getWcet(level);
+				sumRemainTimes[level] += v.getWcet(level);
+				
+				if ((level >= 1 && view.isSinkinL(i, level)) || (level == 0 && view.isSourceinL(i, level))) {
+					if (!ready.add((VertexScheduling) v)) {
+						SchedulingException se = new SchedulingException("[ERROR "+Thread.currentThread().getName()+"] checkDagActivations("+level+"): Job of "+v.getName()+" still ready at slot "+slot);
+						throw se;
 					}
 				}
-					
-				if (add && !ready.contains(connectedVertex)
-						&& remainingTime[level][connectedVertex.getGraphId()][connectedVertex.getId()] != 0) {
-					ready.add(connectedVertex);
-				}
-			} 
+			}
 		}
 	}
 	
+	private int vertexKey (VertexScheduling v) {
+		return vertexOffsets[v.getGraphId()] + v.getId();
+	}
+	
 	/**
-	 * Function that adds entry vertices when the period of a MC-DAG is reached
-	 * @param ready
-	 * @param slot
+	 * Tests if the current job of a vertex is completed
+	 * @param v
+	 * @return
+	 */
+	protected boolean isScheduled (VertexScheduling v) {
+		return scheduledSet.get(vertexKey(v));
+	}
+	
+	/**
+	 * Marks the current job of a vertex as completed, the neighbours that were
+	 * only waiting for it are activated by the next checkJobActivations
+	 * @param v
 	 * @param level
 	 */
-	protected void checkDagActivations (List<VertexScheduling> ready, List<VertexScheduling> scheduled, int slot, int level) {		
-		for (McDAG d : getMcDAGs()) {
+	private void addScheduled (VertexScheduling v, int level) {
+		McDAGView view = getView(v);
+		int i = view.indexOf(v);
+		// Successors are activated in LO mode, predecessors on the dual
+		int offsets[] = level == 0 ? view.getSuccOffsets() : view.getPredOffsets();
+		int adjacency[] = level == 0 ? view.getSuccs() : view.getPreds();
+		
+		scheduledSet.set(vertexKey(v));
+		completions++;
+		
+		for (int k = offsets[i]; k < offsets[i + 1]; k++) {
+			VertexScheduling c = (VertexScheduling) view.getVertex(adjacency[k]);
+			int key = vertexKey(c);
 			
-			if (slot % d.getDeadline() == 0) {
-				if (isDebug()) System.out.println("[DEBUG "+Thread.currentThread().getName()+"] checkDAGActivation(): DAG (id. "+d.getId()+") activation at slot "+slot);
-				
-				for (Vertex v : d.getVertices()) {
-					// Remove nodes from the scheduled list
-					scheduled.remove(v);
-					
-					remainingTime[level][((VertexScheduling)v).getGraphId()][v.getId()] = v.getWcet(level);
-					sumRemainTimes[level] += v.getWcet(level);
-					
-					if (level >= 1 && v.isSinkinL(level))
-						ready.add((VertexScheduling) v);
-					else if (level == 0 && v.isSourceinL(level))
-						ready.add((VertexScheduling) v);
-				}
+			if (firstCompletion[key] == -1) {
+				firstCompletion[key] = completions;
+				firstEdge[key] = k;
 			}
+			if (--jobsLeft[key] == 0)
+				pending[nbPending++] = c;
 		}
 	}
 	
 	/**
-	 * Utility function that resets delays of tasks' jobs
+	 * Utility function that resets delays of tasks' jobs: starts a new epoch
 	 */
 	private void resetDelays () {
-		for (McDAG d : getMcDAGs()) {
-			for (Vertex v : d.getVertices())
-				((VertexScheduling) v).setDelayed(false);
+		if (delayEpoch == Integer.MAX_VALUE) {
+			Arrays.fill(delayStamps, 0);
+			delayEpoch = 0;
+		}
+		delayEpoch++;
+	}
+	
+	/**
+	 * Tests if the job of a vertex is delayed in the current slot
+	 * @param v
+	 * @return
+	 */
+	protected boolean isDelayed (VertexScheduling v) {
+		return delayStamps[vertexKey(v)] == delayEpoch;
+	}
+	
+	/**
+	 * Delays the job of a vertex until the delays are reset
+	 * @param v
+	 * @param delayed
+	 */
+	protected void setDelayed (VertexScheduling v, boolean delayed) {
+		delayStamps[vertexKey(v)] = delayed ? delayEpoch : 0;
+	}
+	
+	/**
+	 * Records the vertices of the ready list and their weights
+	 * @param ready
+	 * @param slot
+	 * @param level
+	 */
+	private void traceReady (ReadyQueue ready, int slot, int level) {
+		for (VertexScheduling v : ready)
+			trace.record(SchedulingTrace.READY, level, slot, v, 0, ready.weight(v));
+	}
+	
+	/**
+	 * Sorts the ready list with the function of the level
+	 * @param ready
+	 * @param slot
+	 * @param level
+	 */
+	private void sortReady (ReadyQueue ready, int slot, int level) {
+		long start = instrumentation.isEnabled() ? System.nanoTime() : 0;
+		
+		if (level == 0)
+			sortLO(ready, slot, level);
+		else
+			sortHI(ready, slot, level);
+		
+		if (instrumentation.isEnabled()) {
+			instrumentation.phase(Instrumentation.SORT, level, System.nanoTime() - start);
+			instrumentation.sort(level, ready.size());
 		}
 	}
 	
+	/**
+	 * Calls verifyConstraints and measures it
+	 * @param ready
+	 * @param slot
+	 * @param level
+	 * @return
+	 */
+	private boolean verifyReady (ReadyQueue ready, int slot, int level) {
+		if (!instrumentation.isEnabled())
+			return verifyConstraints(ready, slot, level);
+		
+		long start = System.nanoTime();
+		boolean ret = verifyConstraints(ready, slot, level);
+		
+		instrumentation.phase(Instrumentation.VERIFY, level, System.nanoTime() - start);
+		return ret;
+	}
+	
 	/**
 	 * Function that computes the scheduling tables on the dual 
 	 * @param level
 	 * @throws SchedulingException
 	 */
 	protected void buildTable (final int level) throws SchedulingException {
-		List<VertexScheduling> ready = new LinkedList<VertexScheduling>();
-		List<VertexScheduling> scheduled = new LinkedList<VertexScheduling>();
+		ReadyQueue ready = new ReadyQueue(level, ascendingIds(level), vertexOffsets, vertexOffsets[vertexOffsets.length - 1]);
 		final boolean forward = level == 0;
 		
+		scheduledSet = new BitSet(vertexOffsets[vertexOffsets.length - 1]);
+		initJobCounters(level);
+		calendar = new ReleaseCalendar(getMcDAGs());
+		
 		// Add all sink nodes
 		for (McDAG d : getMcDAGs()) {
-			for (Vertex v : d.getVertices()) {
+			McDAGView view = getView(d.getId());
+			
+			for (int i = 0; i < view.size(); i++) {
 				if (forward) {
-					if (v.isSourceinL(level))
-						ready.add((VertexScheduling) v);
+					if (view.isSourceinL(i, level))
+						ready.add((VertexScheduling) view.getVertex(i));
 				} else {
-					if (v.isSinkinL(level)) 
-						ready.add((VertexScheduling) v);
+					if (view.isSinkinL(i, level)) 
+						ready.add((VertexScheduling) view.getVertex(i));
 				}
 			}
 		}
 		
-		if (forward)
-			sortLO(ready, 0, level);
-		else
-			sortHI(ready, 0, level);
+		sortReady(ready, 0, level);
+		
+		if (isEventDriven()) {
+			buildTableByEvents(ready, level);
+			return;
+		}
 		
 		// Allocate slot by slot
-		ListIterator<VertexScheduling> lit = ready.listIterator();
+		VertexScheduling head[] = new VertexScheduling[nbCores];
 		boolean jobFinished = false;
 		
 		final int increment = forward ? 1 : -1;
@@ -461,61 +855,65 @@ public abstract class GlobalGenericMCScheduler {
 		final int startCoreIndex = forward ? 0 : nbCores - 1;
 		
 		for (int timeIndex = startTimeIndex; timeIndex < hPeriod && timeIndex >= 0; timeIndex = timeIndex + increment) {
-			if (isDebug()) {
-				System.out.print("[DEBUG "+Thread.currentThread().getName()+"] buildHiTable("+level+"): @t = "+timeIndex+", tasks activated: ");
-				for (VertexScheduling v : ready)
-					System.out.print("Prio("+v.getName()+") = "+v.getWeights()[level]+"; ");
-				System.out.println("");
-			}
+			if (trace.isOn(SchedulingTrace.DETAILED))
+				traceReady(ready, timeIndex, level);
 			
-			if (!verifyConstraints(ready, timeIndex, level)) {
+			if (!verifyReady(ready, timeIndex, level)) {
 				SchedulingException se = new SchedulingException("[ERROR "+Thread.currentThread().getName()+"] buildTable("+level+"): Ready list not empty.");
 				throw se;
 			}
 			
 			// Allocate to cores
+			int nbHead = ready.head(head, nbCores);
+			int i = 0;
+			
 			for (int coreIndex = startCoreIndex; coreIndex >= 0 && coreIndex < nbCores; coreIndex = coreIndex + increment) {
 				// Find next ready tasks that is not delayed
-				if (lit.hasNext()) {
-					VertexScheduling v = lit.next();
+				if (i < nbHead) {
+					VertexScheduling v = head[i++];
 					
-					if (!v.isDelayed()) {
+					if (!isDelayed(v)) {
 						int val = remainingTime[level][v.getGraphId()][v.getId()];
 						
-						sched[level][timeIndex][coreIndex] = v.getName();
+						allocate(level, timeIndex, timeIndex + 1, coreIndex, v);
 						val--;
 						sumRemainTimes[level]--;
 							
 						// Task has been fully scheduled
 						if (val == 0) {
-							scheduled.add(v);
+							if (trace.isOn(SchedulingTrace.DECISIONS))
+								trace.record(SchedulingTrace.COMPLETION, level, timeIndex, v, 0, 0);
+							addScheduled(v, level);
 							jobFinished = true;
-							lit.remove();
+							ready.remove(v);
+						} else {
+							ready.touch(v);
 						}
 						remainingTime[level][v.getGraphId()][v.getId()] = val;
 					} 
 				}
 			}
 			resetDelays();
+			if (instrumentation.isEnabled())
+				instrumentation.step(level, 1);
 			
 			// A job finished its execution -> new tasks can be activated
 			if (jobFinished)
-				checkJobActivations(ready, scheduled, level);
+				checkJobActivations(ready, level);
 			
 			if (forward) {
 				if (timeIndex != hPeriod - 1) {
-					checkDagActivations(ready, scheduled, timeIndex + 1, level);
-					sortLO(ready, timeIndex + 1, level);
+					checkDagActivations(ready, timeIndex + 1, level);
+					sortReady(ready, timeIndex + 1, level);
 				}
 			} else {
 				if (timeIndex !=  0) {
-					checkDagActivations(ready, scheduled, timeIndex, level);
-					sortHI(ready, gethPeriod() - timeIndex, level);
+					checkDagActivations(ready, timeIndex, level);
+					sortReady(ready, gethPeriod() - timeIndex, level);
 				}
 			}
 			
 			jobFinished = false;
-			lit = ready.listIterator();	
 		}
 		// Ready list is not empty
 		if (!ready.isEmpty()) {
@@ -524,17 +922,203 @@ public abstract class GlobalGenericMCScheduler {
 		}
 	}
 	
+	/**
+	 * Returns the number of slots that can be allocated from timeIndex before
+	 * a DAG is activated
+	 * @param timeIndex
+	 * @param forward
+	 * @return
+	 */
+	private int slotsBeforeActivation (int timeIndex, boolean forward) {
+		int ret = forward ? hPeriod - timeIndex : timeIndex + 1;
+		long slots = forward ? calendar.next() - timeIndex : calendar.next() - (hPeriod - timeIndex) + 1;
+		
+		if (slots < ret)
+			ret = (int) slots;
+		return ret;
+	}
+	
+	/**
+	 * Event-driven version of the table construction: the ready list is only sorted
+	 * at decision points (job completions, DAG activations, promotions, delays and
+	 * laxity crossovers) and the allocation is written as a run of slots.
+	 * Produces the same tables than the slot by slot construction.
+	 * @param ready
+	 * @param level
+	 * @throws SchedulingException
+	 */
+	private void buildTableByEvents (ReadyQueue ready, final int level) throws SchedulingException {
+		final boolean forward = level == 0;
+		final int increment = forward ? 1 : -1;
+		final int startCoreIndex = forward ? 0 : nbCores - 1;
+		
+		VertexScheduling head[] = new VertexScheduling[nbCores];
+		VertexScheduling running[] = new VertexScheduling[nbCores];
+		int cores[] = new int[nbCores];
+		int timeIndex = forward ? 0 : hPeriod - 1;
+		
+		while (timeIndex < hPeriod && timeIndex >= 0) {
+			boolean jobFinished = false;
+			int nbRunning = 0;
+			int allocated = 0;
+			
+			if (trace.isOn(SchedulingTrace.DETAILED))
+				traceReady(ready, timeIndex, level);
+			
+			if (!verifyReady(ready, timeIndex, level)) {
+				SchedulingException se = new SchedulingException("[ERROR "+Thread.currentThread().getName()+"] buildTable("+level+"): Ready list not empty.");
+				throw se;
+			}
+			
+			// Allocate to cores and look for the next job completion
+			int length = slotsBeforeActivation(timeIndex, forward);
+			int nbHead = ready.head(head, nbCores);
+			
+			for (int coreIndex = startCoreIndex; coreIndex >= 0 && coreIndex < nbCores; coreIndex = coreIndex + increment) {
+				if (allocated < nbHead) {
+					VertexScheduling v = head[allocated];
+					
+					allocated++;
+					if (!isDelayed(v)) {
+						running[nbRunning] = v;
+						cores[nbRunning] = coreIndex;
+						nbRunning++;
+						
+						int val = remainingTime[level][v.getGraphId()][v.getId()];
+						
+						// Only a remaining time reaching zero completes the job
+						if (val > 0 && val < length)
+							length = val;
+					}
+				}
+			}
+			
+			// Ask the policy until when the ordering holds
+			if (length > 1)
+				length = stableSlots(ready, head, allocated, forward ? timeIndex : hPeriod - timeIndex - 1, level, length);
+			
+			// Write the run of slots
+			for (int r = 0; r < nbRunning; r++) {
+				VertexScheduling v = running[r];
+				int val = remainingTime[level][v.getGraphId()][v.getId()];
+				
+				if (forward)
+					allocate(level, timeIndex, timeIndex + length, cores[r], v);
+				else
+					allocate(level, timeIndex - length + 1, timeIndex + 1, cores[r], v);
+				val -= length;
+				sumRemainTimes[level] -= length;
+				
+				// Task has been fully scheduled
+				if (val == 0) {
+					if (trace.isOn(SchedulingTrace.DECISIONS))
+						trace.record(SchedulingTrace.COMPLETION, level, timeIndex + (length - 1) * increment, v, 0, 0);
+					addScheduled(v, level);
+					jobFinished = true;
+					ready.remove(v);
+				} else {
+					ready.touch(v);
+				}
+				remainingTime[level][v.getGraphId()][v.getId()] = val;
+			}
+			timeIndex = timeIndex + (length - 1) * increment;
+			resetDelays();
+			if (instrumentation.isEnabled())
+				instrumentation.step(level, length);
+			
+			// A job finished its execution -> new tasks can be activated
+			if (jobFinished)
+				checkJobActivations(ready, level);
+			
+			if (forward) {
+				if (timeIndex != hPeriod - 1) {
+					checkDagActivations(ready, timeIndex + 1, level);
+					sortReady(ready, timeIndex + 1, level);
+				}
+			} else {
+				if (timeIndex !=  0) {
+					checkDagActivations(ready, timeIndex, level);
+					sortReady(ready, gethPeriod() - timeIndex, level);
+				}
+			}
+			timeIndex = timeIndex + increment;
+		}
+		// Ready list is not empty
+		if (!ready.isEmpty()) {
+			SchedulingException se = new SchedulingException("[ERROR "+Thread.currentThread().getName()+"] buildTable("+level+"): Ready list not empty.");
+			throw se;
+		}
+	}
+	
+	/**
+	 * Runs the pre-checks on every level, the system is rejected before
+	 * the tables are allocated if one of them fails or if the hyper-period
+	 * overflows
+	 * @throws SchedulingException
+	 */
+	protected void runPreChecks () throws SchedulingException {
+		int[] input = new int[getMcDAGs().size()];
+		int i = 0;
+		
+		for (McDAG d : getMcDAGs()) {
+			input[i] = d.getDeadline();
+			i++;
+		}
+		
+		// The slots of the tables are indexed with an int
+		long hyperPeriod;
+		try {
+			hyperPeriod = MathMCDAG.hyperPeriod(input);
+		} catch (ArithmeticException e) {
+			hyperPeriod = Long.MAX_VALUE;
+		}
+		if (hyperPeriod > Integer.MAX_VALUE)
+			throw new SchedulingException("[ERROR "+Thread.currentThread().getName()+"] preCheck: the hyper-period does not fit in the tables");
+		
+		for (int l = getLevels() - 1; l >= 0; l--) {
+			for (PreCheck check : preChecks) {
+				check.checkLevel(getMcDAGs(), l, getNbCores(), (int) hyperPeriod);
+				for (McDAG d : getMcDAGs())
+					check.checkDAG(d, l, getNbCores());
+			}
+		}
+	}
+	
+	/**
+	 * Releases the scheduling tables, their spill file is deleted. The tables
+	 * can no longer be read afterwards when they were spilled.
+	 */
+	public void closeTable () {
+		if (table != null)
+			table.close();
+	}
+	
 	/**
 	 * Function that schedules the system in all the criticality modes
 	 * @throws SchedulingException
 	 */
 	public void scheduleSystem () throws SchedulingException {
+		runPreChecks();
 		initTables();
 		initRemainingTimes();
 		
+		trace.clear();
+		
 		// Start by the highest tables first
-		for (int i = getLevels() - 1; i >= 0; i--)
-			buildTable(i);
+		for (int i = getLevels() - 1; i >= 0; i--) {
+			long start = instrumentation.isEnabled() ? System.nanoTime() : 0;
+			
+			try {
+				buildTable(i);
+			} catch (SchedulingException e) {
+				if (e.getTrace() == null)
+					e.setTrace(trace.dump());
+				throw e;
+			} finally {
+				if (instrumentation.isEnabled())
+					instrumentation.phase(Instrumentation.BUILD_TABLE, i, System.nanoTime() - start);
+			}
+		}
 		
 		if (isDebug()) printTables();
 		
@@ -544,12 +1128,47 @@ public abstract class GlobalGenericMCScheduler {
 				for (Vertex v : d.getVertices())
 					preemptions.put((VertexScheduling) v, 0);
 			}
-			Counters.countPreemptions(sched, preemptions, getLevels(), hPeriod, nbCores);
+			long start = instrumentation.isEnabled() ? System.nanoTime() : 0;
+			stats = Counters.countPreemptions(table, preemptions, getLevels(), hPeriod, nbCores);
+			if (instrumentation.isEnabled())
+				instrumentation.phase(Instrumentation.PREEMPTIONS, Instrumentation.ALL_LEVELS, System.nanoTime() - start);
 			
 			if (isDebug()) printPreempts();
 		}
 	}
 	
+	/**
+	 * Looks for the smallest number of cores that schedules the system, starting
+	 * from the utilization bound. Global list scheduling has anomalies: a system
+	 * can be schedulable with m cores and not with m + 1, so every number of cores
+	 * is tried in increasing order. Deadlines do not depend on the number of cores,
+	 * they are reused by every attempt, and an attempt stops at the first slot
+	 * where the constraints are not verified. The tables of the returned number
+	 * of cores are kept.
+	 * @param maxCores Highest number of cores that can be used
+	 * @return The number of cores
+	 * @throws SchedulingException If the system is not schedulable with maxCores
+	 */
+	public int findMinCores (int maxCores) throws SchedulingException {
+		MinCoresSearch search = new MinCoresSearch() {
+			@Override
+			protected boolean schedulable (int cores) {
+				setNbCores(cores);
+				try {
+					scheduleSystem();
+				} catch (SchedulingException e) {
+					if (isDebug()) System.out.println("[DEBUG "+Thread.currentThread().getName()+"] findMinCores(): not schedulable with "+cores+" cores");
+					return false;
+				}
+				return true;
+			}
+		};
+		int cores = search.scan(MathMCDAG.minCores(getMcDAGs(), getLevels()), maxCores);
+		
+		if (isDebug()) System.out.println("[DEBUG "+Thread.currentThread().getName()+"] findMinCores(): "+cores+" cores found after "+search.getAttempts()+" attempts");
+		return cores;
+	}
+	
 	/*
 	 * DEBUG FUNCTIONS
 	 */
@@ -579,12 +1198,8 @@ public abstract class GlobalGenericMCScheduler {
 		for (int i = getLevels() - 1; i >= 0; i--) {
 			System.out.println("Scheduling table in mode "+ i+":");
 			for (int c = 0; c < getNbCores(); c++) {
-				for (int s = 0; s < gethPeriod(); s++) {
-					if (sched[i][s][c] != null)
-						System.out.print(sched[i][s][c]+" | ");
-					else
-						System.out.print("-- | ");
-				}
+				for (int s = 0; s < gethPeriod(); s++)
+					System.out.print(table.getCell(i, s, c)+" | ");
 				System.out.print("\n");
 			}
 		}
@@ -603,6 +1218,7 @@ public abstract class GlobalGenericMCScheduler {
 			total += preemptions.get(a);
 		}
 		System.out.println("[DEBUG "+Thread.currentThread().getName()+"] Total number of preemptions = "+total+" for "+getActivations()+" activations");
+		System.out.println("[DEBUG "+Thread.currentThread().getName()+"] Total number of context switches = "+stats.getTotalContextSwitches()+", migrations = "+stats.getTotalMigrations());
 	}
 
 	/*
@@ -613,7 +1229,32 @@ public abstract class GlobalGenericMCScheduler {
 	}
 
 	public void setMcDAGs(Set<McDAG> mcDAGs) {
+		int maxId = -1;
+		
 		this.mcDAGs = mcDAGs;
+		for (McDAG d : mcDAGs)
+			maxId = Math.max(maxId, d.getId());
+		views = new McDAGView[maxId + 1];
+		for (McDAG d : mcDAGs)
+			views[d.getId()] = d.getView();
+	}
+	
+	/**
+	 * Returns the array view of a DAG
+	 * @param dagId
+	 * @return
+	 */
+	protected McDAGView getView (int dagId) {
+		return views[dagId];
+	}
+	
+	/**
+	 * Returns the array view of the DAG of a vertex
+	 * @param a
+	 * @return
+	 */
+	protected McDAGView getView (VertexScheduling a) {
+		return views[a.getGraphId()];
 	}
 
 	public int getNbCores() {
@@ -640,12 +1281,27 @@ public abstract class GlobalGenericMCScheduler {
 		this.levels = levels;
 	}
 
+	/**
+	 * Builds the String version of the scheduling tables
+	 * @return
+	 */
 	public String[][][] getSched() {
-		return sched;
+		return table.toStrings();
 	}
 
 	public void setSched(String[][][] sched) {
-		this.sched = sched;
+		closeTable();
+		this.table = SchedulingTable.fromStrings(sched);
+	}
+
+	public SchedulingTable getTable() {
+		return table;
+	}
+
+	public void setTable(SchedulingTable table) {
+		if (table != this.table)
+			closeTable();
+		this.table = table;
 	}
 
 	public int[][][] getRemainingTime() {
@@ -680,12 +1336,83 @@ public abstract class GlobalGenericMCScheduler {
 		this.preemptions = preemptions;
 	}
 
+	public TableStats getStats() {
+		return stats;
+	}
+
+	public void setStats(TableStats stats) {
+		this.stats = stats;
+	}
+
 	public boolean isDebug() {
 		return debug;
 	}
 
+	/**
+	 * Debug mode prints the events of the trace, at the detailed level
+	 * @param debug
+	 */
 	public void setDebug(boolean debug) {
 		this.debug = debug;
+		if (debug && !trace.isOn(SchedulingTrace.DETAILED))
+			trace.setLevel(SchedulingTrace.DETAILED);
+		trace.setEcho(debug);
+	}
+
+	public SchedulingTrace getTrace() {
+		return trace;
+	}
+
+	public void setTrace(SchedulingTrace trace) {
+		this.trace = trace;
+	}
+
+	public static int getDefaultTraceLevel() {
+		return defaultTraceLevel;
+	}
+
+	/**
+	 * Trace level of the schedulers created afterwards
+	 * @param defaultTraceLevel
+	 */
+	public static void setDefaultTraceLevel(int defaultTraceLevel) {
+		GlobalGenericMCScheduler.defaultTraceLevel = defaultTraceLevel;
+	}
+
+	public List<PreCheck> getPreChecks() {
+		return preChecks;
+	}
+
+	public void setPreChecks(List<PreCheck> preChecks) {
+		this.preChecks = preChecks;
+	}
+
+	public Instrumentation getInstrumentation() {
+		return instrumentation;
+	}
+
+	public void setInstrumentation(Instrumentation instrumentation) {
+		this.instrumentation = instrumentation;
+	}
+
+	public static Instrumentation getDefaultInstrumentation() {
+		return defaultInstrumentation;
+	}
+
+	/**
+	 * Instrumentation given to the schedulers created afterwards
+	 * @param defaultInstrumentation
+	 */
+	public static void setDefaultInstrumentation(Instrumentation defaultInstrumentation) {
+		GlobalGenericMCScheduler.defaultInstrumentation = defaultInstrumentation;
+	}
+
+	public boolean isEventDriven() {
+		return eventDriven;
+	}
+
+	public void setEventDriven(boolean eventDriven) {
+		this.eventDriven = eventDriven;
 	}
 
 	public boolean isCountPreempt() {
@@ -0,0 +1,171 @@
+/*******************************************************************************
+ * Copyright (c) 2017, 2018 Roberto Medina
+ * Written by Roberto Medina (rmedina@telecom-paristech.fr)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package fr.tpt.s3.mcdag.scheduling;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+import fr.tpt.s3.mcdag.util.Histogram;
+
+/**
+ * Instrumentation that keeps the measures in histograms, by phase and by level.
+ * It can be shared by the schedulers of several threads, the summary is
+ * printed once the batch is done. The measures of a level are created the
+ * first time the level is measured.
+ * @author roberto
+ *
+ */
+public class HistogramInstrumentation extends Instrumentation {
+
+	/**
+	 * Measures of one level
+	 */
+	private static class Measures {
+		private Histogram phases[] = new Histogram[NB_PHASES];
+		private Histogram readySizes = new Histogram();
+		private Histogram stepSlots = new Histogram();
+		private Histogram allocSlots = new Histogram();
+		private LongAdder grown = new LongAdder();
+		
+		private Measures () {
+			for (int p = 0; p < NB_PHASES; p++)
+				phases[p] = new Histogram();
+		}
+	}
+	
+	// Measures by level, grown when a system has more levels
+	private volatile Measures byLevel[] = new Measures[0];
+	private Measures allLevels = new Measures();
+	
+	private Measures measures (int level) {
+		Measures m[] = byLevel;
+		
+		if (level == ALL_LEVELS)
+			return allLevels;
+		if (level < m.length)
+			return m[level];
+		return grow(level);
+	}
+	
+	private synchronized Measures grow (int level) {
+		if (level >= byLevel.length) {
+			Measures m[] = Arrays.copyOf(byLevel, level + 1);
+			
+			for (int l = byLevel.length; l <= level; l++)
+				m[l] = new Measures();
+			byLevel = m;
+		}
+		return byLevel[level];
+	}
+	
+	@Override
+	public boolean isEnabled () {
+		return true;
+	}
+	
+	@Override
+	public void phase (int phase, int level, long nanos) {
+		measures(level).phases[phase].record(nanos);
+	}
+	
+	@Override
+	public void sort (int level, int readySize) {
+		measures(level).readySizes.record(readySize);
+	}
+	
+	@Override
+	public void step (int level, int slots) {
+		measures(level).stepSlots.record(slots);
+	}
+	
+	@Override
+	public void allocation (int level, int slots, boolean grown) {
+		Measures m = measures(level);
+		
+		m.allocSlots.record(slots);
+		if (grown)
+			m.grown.increment();
+	}
+	
+	/**
+	 * Prints the measures, times are given in microseconds
+	 * @param out
+	 */
+	public void print (PrintStream out) {
+		Measures levels[] = byLevel;
+		
+		out.println("Phase; Level; Count; Total (us); Mean (us); Median (us); 99th (us); Max (us)");
+		for (int p = 0; p < NB_PHASES; p++) {
+			for (int l = 0; l <= levels.length; l++) {
+				Histogram h = l == levels.length ? allLevels.phases[p] : levels[l].phases[p];
+				
+				if (h.getCount() == 0)
+					continue;
+				out.println(getPhaseName(p)+"; "+(l == levels.length ? "-" : String.valueOf(l))+"; "+h.getCount()+"; "
+						+micros(h.getSum())+"; "+micros(h.getMean())+"; "+micros(h.getValueAtPercentile(50))+"; "
+						+micros(h.getValueAtPercentile(99))+"; "+micros(h.getMax()));
+			}
+		}
+		
+		out.println("Level; Sorts; Mean ready; Max ready; Steps; Slots; Mean slots/step; Allocations; Allocated slots; Grown lists");
+		for (int l = 0; l < levels.length; l++) {
+			Measures m = levels[l];
+			
+			if (m.stepSlots.getCount() == 0 && m.readySizes.getCount() == 0)
+				continue;
+			out.println(l+"; "+m.readySizes.getCount()+"; "+String.format("%.2f", m.readySizes.getMean())+"; "+m.readySizes.getMax()+"; "
+					+m.stepSlots.getCount()+"; "+m.stepSlots.getSum()+"; "+String.format("%.2f", m.stepSlots.getMean())+"; "
+					+m.allocSlots.getCount()+"; "+m.allocSlots.getSum()+"; "+m.grown.sum());
+		}
+	}
+	
+	private static String micros (double nanos) {
+		return String.format("%.1f", nanos / 1000.0);
+	}
+	
+	/*
+	 * Getters
+	 */
+	/**
+	 * Returns the number of levels measured so far
+	 * @return
+	 */
+	public int getLevels() {
+		return byLevel.length;
+	}
+	
+	public Histogram getPhase(int phase, int level) {
+		return measures(level).phases[phase];
+	}
+	
+	public Histogram getReadySizes(int level) {
+		return measures(level).readySizes;
+	}
+	
+	public Histogram getStepSlots(int level) {
+		return measures(level).stepSlots;
+	}
+	
+	public Histogram getAllocSlots(int level) {
+		return measures(level).allocSlots;
+	}
+	
+	public long getGrown(int level) {
+		return measures(level).grown.sum();
+	}
+}
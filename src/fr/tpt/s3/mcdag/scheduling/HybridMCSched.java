@@ -16,10 +16,7 @@
  *******************************************************************************/
 package fr.tpt.s3.mcdag.scheduling;
 
-import java.util.Collections;
-import java.util.Comparator;
 import java.util.Hashtable;
-import java.util.List;
 import java.util.Set;
 
 import fr.tpt.s3.mcdag.model.McDAG;
@@ -32,6 +29,9 @@ import fr.tpt.s3.mcdag.model.VertexScheduling;
  */
 public class HybridMCSched extends GlobalGenericMCScheduler {
 	
+	// Buffer for the head of the LO ready list
+	private VertexScheduling first[];
+	
 	/**
 	 * Constructor of the Hybrid scheduler
 	 * @param DAGs
@@ -60,31 +60,39 @@ public class HybridMCSched extends GlobalGenericMCScheduler {
 	 * Function that verifies if the scheduling tables can still be obtained 
 	 */
 	@Override
-	protected boolean verifyConstraints(List<VertexScheduling> ready, int slot, int level) {
+	protected boolean verifyConstraints(ReadyQueue ready, int slot, int level) {
 		int sumSlotsLeft = 0;
 		int sumZeroLax = 0;
 		
-		for (VertexScheduling v : ready) {
-			if (level >= 1 ) {
+		if (level >= 1) {
+			for (VertexScheduling v : ready) {
 				int relatSlot =  (gethPeriod() - slot - 1) % v.getGraphDead();
 				if (relatSlot > v.getWeights()[level]) {
-					if (isDebug()) System.out.println("[DEBUG "+Thread.currentThread().getName()+"] verifyConstraints(): deadline not respected for "+v.getName());
+					if (getTrace().isOn(SchedulingTrace.DECISIONS)) getTrace().record(SchedulingTrace.MISSED_DEADLINE, level, slot, v, 0, 0);
 					return false;
 				}
-			} else {
-				// 	Task has negative laxity -> non schedulable system
-				if (v.getWeights()[level] < 0) {
-					if (isDebug()) System.out.println("[DEBUG "+Thread.currentThread().getName()+"] verifyConstraints(): negative laxity on task "+v.getName());
-					return false;
-				} else if (v.getWeights()[level] == 0) {
-					sumZeroLax += 1;
+			}
+		} else {
+			// The least laxities are at the head of the ready list
+			if (first == null || first.length < getNbCores() + 1)
+				first = new VertexScheduling[getNbCores() + 1];
+			int nbFirst = ready.head(first, getNbCores() + 1);
+			
+			// 	Task has negative laxity -> non schedulable system
+			if (nbFirst > 0 && ready.weight(first[0]) < 0) {
+				if (getTrace().isOn(SchedulingTrace.DECISIONS)) getTrace().record(SchedulingTrace.NEGATIVE_LAXITY, level, slot, first[0], 0, ready.weight(first[0]));
+				return false;
+			} else if (nbFirst > getNbCores() && ready.weight(first[getNbCores()]) == 0) {
+				for (VertexScheduling v : ready) {
+					if (ready.weight(v) == 0)
+						sumZeroLax += 1;
 				}
 			}
 		}
 		
 		// More than m zero laxity tasks
 		if (sumZeroLax > getNbCores()) {
-			if (isDebug()) System.out.println("[DEBUG "+Thread.currentThread().getName()+"] verifyConstraints(): more than m zero laxity tasks");
+			if (getTrace().isOn(SchedulingTrace.DECISIONS)) getTrace().record(SchedulingTrace.ZERO_LAXITY, level, slot, null, 0, sumZeroLax);
 			return false;
 		}
 		
@@ -97,7 +105,7 @@ public class HybridMCSched extends GlobalGenericMCScheduler {
 		
 		sumSlotsLeft = (gethPeriod() - relatSlot) * getNbCores();
 		if (sumSlotsLeft < getSumRemainTimes()[level]) {
-			if (isDebug()) System.out.println("[DEBUG "+Thread.currentThread().getName()+"] verifyConstraints(): Not enough slots left "+sumSlotsLeft+" for "+getSumRemainTimes()[level]);
+			if (getTrace().isOn(SchedulingTrace.DECISIONS)) getTrace().record(SchedulingTrace.SLOTS_LEFT, level, slot, null, sumSlotsLeft, getSumRemainTimes()[level]);
 			return false;
 		}
 		
@@ -109,36 +117,28 @@ public class HybridMCSched extends GlobalGenericMCScheduler {
 	 * the priority ordering used is the deadline
 	 */
 	@Override
-	protected void sortHI(List<VertexScheduling> ready, int slot, final int level) {
+	protected void sortHI(ReadyQueue ready, int slot, final int level) {
 		// Check if tasks need to be delayed first
 		for (VertexScheduling v : ready) {
 			if (level != getLevels() - 1) {
 				int delta = v.getWcet(level + 1) - v.getWcet(level);
 				
 				if (scheduledUntilTinLreverse(v, slot, level + 1) <= delta) {
-					if (isDebug()) System.out.println("[DEBUG "+Thread.currentThread().getName()+"] sortHI(): Task "+v.getName()+" needs to be delayed at slot @t = "+slot);
+					if (getTrace().isOn(SchedulingTrace.DETAILED)) getTrace().record(SchedulingTrace.DELAY, level, slot, v, 0, 0);
 					v.setWeightInL(Integer.MAX_VALUE, level);
-					v.setDelayed(true);
+					setDelayed(v, true);
 				} else {
 					v.setWeightInL(v.getDeadlines()[level], level);
-					v.setDelayed(false);
+					setDelayed(v, false);
 				}
 			} else {
 				v.setWeightInL(v.getDeadlines()[level], level);
-				v.setDelayed(false);
+				setDelayed(v, false);
 			}
 		}
 		
 		// Order the list accordingly
-		Collections.sort(ready, new Comparator<VertexScheduling>() {
-			@Override
-			public int compare(VertexScheduling o1, VertexScheduling o2) {
-				if (o1.getWeights()[level] - o2.getWeights()[level] != 0)
-					return o1.getWeights()[level] - o2.getWeights()[level];
-				else
-					return o1.getId() - o2.getId();
-			}
-		});
+		ready.updateKeys();
 	}
 
 	/**
@@ -146,35 +146,76 @@ public class HybridMCSched extends GlobalGenericMCScheduler {
 	 * it uses LLF
 	 */
 	@Override
-	protected void sortLO(List<VertexScheduling> ready, int slot, int level) {
-		for (VertexScheduling v : ready) {
+	protected void sortLO(ReadyQueue ready, int slot, int level) {
+		// Only the pending vertices: the laxities of the other ones drop by one per slot
+		for (VertexScheduling v : ready.pending(slot)) {
 			int dId = v.getGraphId();
 			int relatSlot = slot % v.getGraphDead();
+			int wake = nextPeriod(v, slot);
 			
 			// If it's a HI task
 			if (v.getWcet(level + 1) > 0) {
 				// Promotion needed for the task
 				if ((v.getWcet(level) - getRemainingTime()[level][dId][v.getId()]) - scheduledUntilTinL(v, slot, level + 1) < 0) {
-					if (isDebug()) System.out.println("[DEBUG "+Thread.currentThread().getName()+"] calcLaxity(): Promotion of task "+v.getName()+" at slot @t = "+slot);
+					if (getTrace().isOn(SchedulingTrace.DETAILED)) getTrace().record(SchedulingTrace.PROMOTION, level, slot, v, 0, 0);
 					v.setWeightInL(0, level);
+					wake = slot + 1;
 				} else {
 					v.setWeightInL(v.getDeadlines()[level] - relatSlot - getRemainingTime()[level][dId][v.getId()], level);
+					wake = nextPromotionCheck(v, slot, level);
 				}
 			} else {
 				v.setWeightInL(v.getDeadlines()[level] - relatSlot - getRemainingTime()[level][dId][v.getId()], level);
 			}
+			ready.wakeAt(v, wake);
 		}
-		// Order the list
-		Collections.sort(ready, new Comparator<VertexScheduling>() {
-			@Override
-			public int compare (VertexScheduling o1, VertexScheduling o2) {
-				if (o1.getWeights()[0] - o2.getWeights()[0] != 0)
-					return o1.getWeights()[0] - o2.getWeights()[0];
-				else
-					return o1.getId() - o2.getId();
-			}
-		});
+		// Order the list, the laxities of the waiting vertices drop by one per slot
+		ready.updatePending();
 	
 	}
 
+	/**
+	 * Deadlines are used in HI modes and laxities in the LO mode, the ordering holds until
+	 * a waiting vertex overtakes the last allocated one or a promotion/delay happens
+	 */
+	@Override
+	protected int stableSlots(ReadyQueue ready, VertexScheduling head[], int allocated, int slot, int level, int bound) {
+		VertexScheduling last = allocated > 0 ? head[allocated - 1] : null;
+		int executed = 0;
+		
+		for (VertexScheduling v : ready) {
+			boolean allocatedV = last != null && !ready.before(last, v);
+			boolean running = allocatedV && !isDelayed(v);
+			
+			if (running)
+				executed++;
+			
+			if (level >= 1) {
+				if (level != getLevels() - 1)
+					bound = delayHorizon(v, slot, level, bound);
+				// Deadline of the vertex is reached
+				bound = (int) Math.max(1, Math.min(bound, (long) v.getWeights()[level] - slot % v.getGraphDead() + 1));
+			} else {
+				boolean waiting = !allocatedV;
+				
+				if (v.getWcet(level + 1) > 0) {
+					bound = promotionHorizon(v, running, slot, level, bound);
+					if (waiting && isPromoted(v, getRemainingTime()[level][v.getGraphId()][v.getId()], slot, level))
+						waiting = false;
+				}
+				
+				// Laxity of the waiting vertex decreases
+				if (waiting) {
+					bound = (int) Math.max(1, Math.min(bound, ready.weight(v)));
+					bound = laxityHorizon(ready, last, v, true, bound);
+				}
+			}
+			
+			if (bound == 1)
+				return 1;
+		}
+		
+		return slotsLeftHorizon(slot, level, executed, bound);
+	}
+
 }
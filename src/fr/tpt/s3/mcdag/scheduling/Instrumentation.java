@@ -0,0 +1,112 @@
+/*******************************************************************************
+ * Copyright (c) 2017, 2018 Roberto Medina
+ * Written by Roberto Medina (rmedina@telecom-paristech.fr)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package fr.tpt.s3.mcdag.scheduling;
+
+/**
+ * Receives the measures of the schedulers: the wall time of each phase,
+ * the slots processed while building the tables, the sort invocations with
+ * the size of the ready list and the allocations written in the tables.
+ * The default methods do nothing, the schedulers only read the clock when
+ * isEnabled returns true.
+ * @author roberto
+ *
+ */
+public abstract class Instrumentation {
+
+	// Phases of the schedulers
+	public static final int DEADLINES = 0;
+	public static final int INIT_TABLES = 1;
+	public static final int BUILD_TABLE = 2;
+	public static final int SORT = 3;
+	public static final int VERIFY = 4;
+	public static final int PREEMPTIONS = 5;
+	public static final int NB_PHASES = 6;
+	
+	// Level given for the phases that cover all the levels
+	public static final int ALL_LEVELS = -1;
+	
+	/**
+	 * Instrumentation that does not record anything
+	 */
+	public static final Instrumentation NONE = new Instrumentation() {};
+	
+	/**
+	 * Returns the name of a phase
+	 * @param phase
+	 * @return
+	 */
+	public static String getPhaseName (int phase) {
+		switch (phase) {
+		case DEADLINES:
+			return "calcDedlines";
+		case INIT_TABLES:
+			return "initTables";
+		case BUILD_TABLE:
+			return "buildTable";
+		case SORT:
+			return "sort";
+		case VERIFY:
+			return "verifyConstraints";
+		case PREEMPTIONS:
+			return "countPreemptions";
+		default:
+			return "phase "+phase;
+		}
+	}
+	
+	/**
+	 * Tells if the schedulers have to take the measures
+	 * @return
+	 */
+	public boolean isEnabled () {
+		return false;
+	}
+	
+	/**
+	 * A phase has been executed
+	 * @param phase
+	 * @param level ALL_LEVELS if the phase is not done for one level
+	 * @param nanos Wall time of the phase
+	 */
+	public void phase (int phase, int level, long nanos) {
+	}
+	
+	/**
+	 * The ready list has been sorted
+	 * @param level
+	 * @param readySize Number of vertices in the ready list
+	 */
+	public void sort (int level, int readySize) {
+	}
+	
+	/**
+	 * A decision of the table construction covered a number of slots
+	 * @param level
+	 * @param slots
+	 */
+	public void step (int level, int slots) {
+	}
+	
+	/**
+	 * A run of slots has been allocated to a vertex
+	 * @param level
+	 * @param slots
+	 * @param grown True if the allocation list of the vertex had to be reallocated
+	 */
+	public void allocation (int level, int slots, boolean grown) {
+	}
+}
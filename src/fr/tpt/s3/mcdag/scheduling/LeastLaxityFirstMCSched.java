@@ -18,7 +18,6 @@ package fr.tpt.s3.mcdag.scheduling;
 
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Hashtable;
 import java.util.Iterator;
@@ -40,6 +39,9 @@ public class LeastLaxityFirstMCSched extends GlobalGenericMCScheduler{
 	private Map<Integer, List<VertexScheduling>> equalityMap;
 	private int lastEqLax = -1;
 	
+	// Buffer for the head of the ready list
+	private VertexScheduling first[];
+	
 	@SuppressWarnings({ "rawtypes", "unchecked" })
 	public LeastLaxityFirstMCSched (Set<McDAG> DAGs, int cores, int levels, boolean debug, boolean preemption) {
 		setMcDAGs(DAGs);
@@ -62,23 +64,23 @@ public class LeastLaxityFirstMCSched extends GlobalGenericMCScheduler{
 	 * Function that verifies if the scheduling tables can still be obtained 
 	 */
 	@Override
-	protected boolean verifyConstraints(List<VertexScheduling> ready, int slot, int level) {
+	protected boolean verifyConstraints(ReadyQueue ready, int slot, int level) {
 		int sumSlotsLeft = 0;
-		int sumZeroLax = 0;
 		
-		for (VertexScheduling v : ready) {
-			// Task has negative laxity -> non schedulable system
-			if (v.getWeights()[level] < 0) {
-				if (isDebug()) System.out.println("[DEBUG "+Thread.currentThread().getName()+"] verifyConstraints(): negative laxity on task "+v.getName());
-				return false;
-			} else if (v.getWeights()[level] == 0) {
-				sumZeroLax += 1;
-			}
+		// The least laxities are at the head of the ready list
+		if (first == null || first.length < getNbCores() + 1)
+			first = new VertexScheduling[getNbCores() + 1];
+		int nbFirst = ready.head(first, getNbCores() + 1);
+		
+		// Task has negative laxity -> non schedulable system
+		if (nbFirst > 0 && ready.weight(first[0]) < 0) {
+			if (getTrace().isOn(SchedulingTrace.DECISIONS)) getTrace().record(SchedulingTrace.NEGATIVE_LAXITY, level, slot, first[0], 0, ready.weight(first[0]));
+			return false;
 		}
 		
 		// More than m zero laxity tasks
-		if (sumZeroLax > getNbCores()) {
-			if (isDebug()) System.out.println("[DEBUG "+Thread.currentThread().getName()+"] verifyConstraints(): more than m zero laxity tasks");
+		if (nbFirst > getNbCores() && ready.weight(first[getNbCores()]) == 0) {
+			if (getTrace().isOn(SchedulingTrace.DECISIONS)) getTrace().record(SchedulingTrace.ZERO_LAXITY, level, slot, null, 0, countZeroLaxities(ready));
 			return false;
 		}
 		
@@ -91,79 +93,139 @@ public class LeastLaxityFirstMCSched extends GlobalGenericMCScheduler{
 		
 		sumSlotsLeft = (gethPeriod() - relatSlot) * getNbCores();
 		if (sumSlotsLeft < getSumRemainTimes()[level]) {
-			if (isDebug()) System.out.println("[DEBUG "+Thread.currentThread().getName()+"] verifyConstraints(): Not enough slots left "+sumSlotsLeft+" for "+getSumRemainTimes());
+			if (getTrace().isOn(SchedulingTrace.DECISIONS)) getTrace().record(SchedulingTrace.SLOTS_LEFT, level, slot, null, sumSlotsLeft, getSumRemainTimes()[level]);
 			return false;
 		}
 		
 		return true;
 	}
+	
+	private int countZeroLaxities (ReadyQueue ready) {
+		int sumZeroLax = 0;
+		
+		for (VertexScheduling v : ready) {
+			if (ready.weight(v) == 0)
+				sumZeroLax++;
+		}
+		return sumZeroLax;
+	}
 
+	/**
+	 * Only the pending vertices of the ready list are visited: the laxities of the
+	 * other ones drop by one per slot until their wake-up slot
+	 */
 	@Override
-	protected void sortHI(List<VertexScheduling> ready, int slot, final int level) {
-		for (VertexScheduling v : ready) {
+	protected void sortHI(ReadyQueue ready, int slot, final int level) {
+		for (VertexScheduling v : ready.pending(slot)) {
 			int relatSlot = slot % v.getGraphDead();
 			int dId = v.getGraphId();
+			int wake = nextPeriod(v, slot);
 			
 			// It's not the highest criticality level -> perform checks
 			if (level != getLevels() - 1 && v.getWcet(level + 1) != 0) {
 				int deltaI = v.getWcet(level + 1) - v.getWcet(level);
 				//Check if in the higher table the Ci(L+1) - Ci(L) has been allocated
 				if (scheduledUntilTinLreverse(v, slot + 1, level + 1) <= deltaI) {
-					if (isDebug()) System.out.println("[DEBUG "+Thread.currentThread().getName()+"] calcLaxity(): Task "+v.getName()+" needs to be delayed at slot @t = "+slot);
-					v.setDelayed(true);
+					if (getTrace().isOn(SchedulingTrace.DETAILED)) getTrace().record(SchedulingTrace.DELAY, level, slot, v, 0, 0);
+					setDelayed(v, true);
 					v.setWeightInL(Integer.MAX_VALUE, level);
+					// Delays only hold for one slot
+					wake = slot + 1;
 				} else {
 					v.setWeightInL(v.getDeadlines()[level] - relatSlot - getRemainingTime()[level][dId][v.getId()], level);
+					wake = Math.min(wake, nextDelayCheck(v, slot + 1, level) - 1);
 				}
 			} else {
 				v.setWeightInL(v.getDeadlines()[level] - relatSlot - getRemainingTime()[level][dId][v.getId()], level);
 			}
+			ready.wakeAt(v, wake);
 		}
-		// Sort the ready list
-		Collections.sort(ready, new Comparator<VertexScheduling>() {
-			@Override
-			public int compare(VertexScheduling o1, VertexScheduling o2) {
-				if (o1.getWeights()[level] - o2.getWeights()[level] != 0)
-					return o1.getWeights()[level] - o2.getWeights()[level];
-				else
-					return o2.getId() - o1.getId();
-			}
-		});
+		// Sort the ready list, the laxities of the waiting vertices drop by one per slot
+		ready.updatePending();
 		//checkForEqualities(ready, level);
 	}
 
+	/**
+	 * Only the pending vertices of the ready list are visited: the laxities of the
+	 * other ones drop by one per slot until their wake-up slot
+	 */
 	@Override
-	protected void sortLO(List<VertexScheduling> ready, int slot, int level) {
-		for (VertexScheduling v : ready) {
+	protected void sortLO(ReadyQueue ready, int slot, int level) {
+		for (VertexScheduling v : ready.pending(slot)) {
 			int relatSlot = slot % v.getGraphDead();
 			int dId = v.getGraphId();
+			int wake = nextPeriod(v, slot);
 			
 			// If it's a HI task
 			if (v.getWcet(level + 1) > 0) {
 				// Promotion needed for the task
 				if ((v.getWcet(level) - getRemainingTime()[level][dId][v.getId()]) - scheduledUntilTinL(v, slot, level + 1) < 0) {
-					if (isDebug()) System.out.println("[DEBUG "+Thread.currentThread().getName()+"] calcLaxity(): Promotion of task "+v.getName()+" at slot @t = "+slot);
+					if (getTrace().isOn(SchedulingTrace.DETAILED)) getTrace().record(SchedulingTrace.PROMOTION, level, slot, v, 0, 0);
 					v.setWeightInL(0, level);
+					// The zero weight does not age with the offset
+					wake = slot + 1;
 				} else {
 					v.setWeightInL(v.getDeadlines()[level] - relatSlot - getRemainingTime()[level][dId][v.getId()], level);
+					wake = nextPromotionCheck(v, slot, level);
 				}
 			} else {
 				v.setWeightInL(v.getDeadlines()[level] - relatSlot - getRemainingTime()[level][dId][v.getId()], level);
 			}
+			ready.wakeAt(v, wake);
 		}
-		// Sort the list
-		Collections.sort(ready, new Comparator<VertexScheduling>() {
-			@Override
-			public int compare (VertexScheduling o1, VertexScheduling o2) {
-				if (o1.getWeights()[0] - o2.getWeights()[0] != 0)
-					return o1.getWeights()[0] - o2.getWeights()[0];
-				else
-					return o1.getId() - o2.getId();
-			}
-		});
+		// Sort the list, the laxities of the waiting vertices drop by one per slot
+		ready.updatePending();
 		//checkForEqualities(ready, level);
 	}
 	
+	/**
+	 * Equal laxities are broken with descending ids in HI modes
+	 */
+	@Override
+	protected boolean ascendingIds(int level) {
+		return level == 0;
+	}
+	
+	/**
+	 * Laxities of waiting vertices decrease at each slot while the ones of running
+	 * vertices stay the same: the ordering holds until a waiting vertex overtakes the
+	 * last allocated one or a promotion/delay happens
+	 */
+	@Override
+	protected int stableSlots(ReadyQueue ready, VertexScheduling head[], int allocated, int slot, int level, int bound) {
+		VertexScheduling last = allocated > 0 ? head[allocated - 1] : null;
+		int executed = 0;
+		
+		for (VertexScheduling v : ready) {
+			boolean allocatedV = last != null && !ready.before(last, v);
+			boolean running = allocatedV && !isDelayed(v);
+			boolean waiting = !allocatedV && !isDelayed(v);
+			
+			if (running)
+				executed++;
+			
+			if (level >= 1) {
+				if (level != getLevels() - 1 && v.getWcet(level + 1) != 0)
+					bound = delayHorizon(v, slot + 1, level, bound);
+			} else if (v.getWcet(level + 1) > 0) {
+				bound = promotionHorizon(v, running, slot, level, bound);
+				if (waiting && isPromoted(v, getRemainingTime()[level][v.getGraphId()][v.getId()], slot, level))
+					waiting = false;
+			}
+			
+			// Laxity of the waiting vertex decreases
+			if (waiting) {
+				bound = (int) Math.max(1, Math.min(bound, ready.weight(v)));
+				bound = laxityHorizon(ready, last, v, level == 0, bound);
+			}
+			
+			if (bound == 1)
+				return 1;
+		}
+		
+		return slotsLeftHorizon(slot, level, executed, bound);
+	}
+	
 	/**
 	 * Method to prevent preemptions when tasks have the same laxity
 	 * the equality is only interesting on the last element m of the list
@@ -29,6 +29,8 @@ import org.apache.commons.cli.Option;
 import org.apache.commons.cli.Options;
 import org.apache.commons.cli.ParseException;
 
+import fr.tpt.s3.mcdag.model.SchedulingTable;
+
 /**
  * Main class to create the MC-DAG Framework. All functionalities should be included
  * @author roberto
@@ -66,6 +68,30 @@ public class Main {
 		preemptOpt.setRequired(false);
 		options.addOption(preemptOpt);
 		
+		Option eventOpt = new Option("e", "event-driven", false, "Build the tables between scheduling events instead of slot by slot.");
+		eventOpt.setRequired(false);
+		options.addOption(eventOpt);
+		
+		Option minCoresOpt = new Option("mc", "min-cores", true, "Search the smallest number of cores, up to the given number, that schedules the system.");
+		minCoresOpt.setRequired(false);
+		options.addOption(minCoresOpt);
+		
+		Option budgetOpt = new Option("tb", "table-budget", true, "Heap in MB used by each scheduling table and its allocation lists, the cells past it are spilled to a file.");
+		budgetOpt.setRequired(false);
+		options.addOption(budgetOpt);
+		
+		Option profileOpt = new Option("pr", "profile", false, "Measure the phases of the schedulers and print them at the end.");
+		profileOpt.setRequired(false);
+		options.addOption(profileOpt);
+		
+		Option traceOpt = new Option("tr", "trace", false, "Keep the last scheduling decisions and print them when a system is not schedulable.");
+		traceOpt.setRequired(false);
+		options.addOption(traceOpt);
+		
+		Option quantumOpt = new Option("q", "quantum", false, "Schedule with the greatest common divisor of the WCETs and deadlines as slot length.");
+		quantumOpt.setRequired(false);
+		options.addOption(quantumOpt);
+		
 		CommandLineParser parser = new DefaultParser();
 		HelpFormatter formatter = new HelpFormatter();
 		CommandLine cmd;
@@ -86,7 +112,21 @@ public class Main {
 		boolean debug = cmd.hasOption("debug");
 		boolean preempt = cmd.hasOption("preempt");
 		boolean levels = cmd.hasOption("n-levels");
+		boolean eventDriven = cmd.hasOption("event-driven");
+		boolean quantum = cmd.hasOption("quantum");
 		int nbFiles = inputFilePath.length;
+		int maxCores = 0;
+		if (cmd.hasOption("min-cores"))
+			maxCores = Integer.parseInt(cmd.getOptionValue("min-cores"));
+		if (cmd.hasOption("table-budget"))
+			SchedulingTable.setDefaultBudget(Long.parseLong(cmd.getOptionValue("table-budget")) * 1024L * 1024L);
+		if (cmd.hasOption("trace"))
+			GlobalGenericMCScheduler.setDefaultTraceLevel(SchedulingTrace.DECISIONS);
+		HistogramInstrumentation profile = null;
+		if (cmd.hasOption("profile")) {
+			profile = new HistogramInstrumentation();
+			GlobalGenericMCScheduler.setDefaultInstrumentation(profile);
+		}
 		
 		int nbJobs = 1;
 		if (cmd.hasOption("jobs"))
@@ -103,12 +143,17 @@ public class Main {
 			SchedulingThread ft = new SchedulingThread(inputFilePath[i_files], bOutSched, bOutPrism, debug, preempt);
 			
 			ft.setLevels(levels);
+			ft.setEventDriven(eventDriven);
+			ft.setMaxCores(maxCores);
+			ft.getMcp().setNormalize(quantum);
 			executor.execute(ft);
 			i_files++;
 		}
 		
 		executor.shutdown();
 		executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+		if (profile != null)
+			profile.print(System.out);
 		System.out.println("[FRAMEWORK Main] DONE");
 	}
 }
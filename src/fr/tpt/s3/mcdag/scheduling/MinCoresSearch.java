@@ -0,0 +1,65 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Roberto Medina
+ * Written by Roberto Medina (rmedina@telecom-paristech.fr)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package fr.tpt.s3.mcdag.scheduling;
+
+/**
+ * Search of the smallest number of cores that schedules a system: every number
+ * of cores is tried in increasing order from the lower bound. The schedulability
+ * of the global and federated list schedulers is not monotonic in the number of
+ * cores (scheduling anomalies), so a system that fails with m cores can still be
+ * schedulable with fewer ones and a bisection could miss the minimum.
+ * @author roberto
+ *
+ */
+public abstract class MinCoresSearch {
+
+	private int attempts;
+
+	/**
+	 * Tries to schedule the system on a number of cores
+	 * @param cores
+	 * @return true if the system is schedulable
+	 */
+	protected abstract boolean schedulable (int cores);
+
+	private boolean attempt (int cores) {
+		attempts++;
+		return schedulable(cores);
+	}
+
+	/**
+	 * Tries the number of cores in [lower, upper] in increasing order
+	 * @param lower
+	 * @param upper
+	 * @return The first number of cores that schedules the system
+	 * @throws SchedulingException If no number of cores schedules the system
+	 */
+	public int scan (int lower, int upper) throws SchedulingException {
+		for (int cores = Math.max(lower, 1); cores <= upper; cores++) {
+			if (attempt(cores))
+				return cores;
+		}
+		throw new SchedulingException("Not schedulable with "+Math.max(lower, 1)+" to "+upper+" cores");
+	}
+
+	/*
+	 * Getters
+	 */
+	public int getAttempts() {
+		return attempts;
+	}
+}
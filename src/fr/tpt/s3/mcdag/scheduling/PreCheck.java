@@ -0,0 +1,127 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Roberto Medina
+ * Written by Roberto Medina (rmedina@telecom-paristech.fr)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package fr.tpt.s3.mcdag.scheduling;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import fr.tpt.s3.mcdag.model.McDAG;
+import fr.tpt.s3.mcdag.model.Vertex;
+import fr.tpt.s3.mcdag.model.VertexScheduling;
+
+/**
+ * Necessary schedulability condition checked before the scheduling tables
+ * are built. A system that does not verify it is rejected without allocating
+ * the tables. Checks are run for each level, on the whole system and then on
+ * each DAG, and throw a SchedulingException when the condition is violated.
+ * @author roberto
+ *
+ */
+public abstract class PreCheck {
+
+	/**
+	 * Condition on all the DAGs of the system in a level
+	 * @param dags
+	 * @param level
+	 * @param nbCores
+	 * @param hPeriod
+	 * @throws SchedulingException
+	 */
+	public void checkLevel (Set<McDAG> dags, int level, int nbCores, int hPeriod) throws SchedulingException {
+	}
+
+	/**
+	 * Condition on one DAG in a level
+	 * @param d
+	 * @param level
+	 * @param nbCores
+	 * @throws SchedulingException
+	 */
+	public void checkDAG (McDAG d, int level, int nbCores) throws SchedulingException {
+	}
+
+	/**
+	 * Checks used by default by the schedulers
+	 * @return
+	 */
+	public static List<PreCheck> defaults () {
+		List<PreCheck> checks = new ArrayList<PreCheck>();
+
+		checks.add(new Utilization());
+		checks.add(new CriticalPathLength());
+		checks.add(new Laxity());
+		return checks;
+	}
+
+	private static SchedulingException reject (String message) {
+		return new SchedulingException("[ERROR "+Thread.currentThread().getName()+"] preCheck: "+message);
+	}
+
+	/**
+	 * The execution times of a level over the hyper-period fit in the cores
+	 */
+	public static class Utilization extends PreCheck {
+
+		@Override
+		public void checkLevel (Set<McDAG> dags, int level, int nbCores, int hPeriod) throws SchedulingException {
+			long slots = 0;
+
+			for (McDAG d : dags) {
+				long sum = 0;
+
+				for (Vertex a : d.getVertices())
+					sum += a.getWcet(level);
+				slots += sum * (hPeriod / d.getDeadline());
+			}
+
+			if (slots > (long) nbCores * hPeriod)
+				throw reject("utilization of level "+level+" needs "+slots+" slots, "+((long) nbCores * hPeriod)+" available");
+		}
+	}
+
+	/**
+	 * The longest path of a DAG in a level is not longer than its deadline.
+	 * The paths of all the levels are computed once with the view of the DAG.
+	 */
+	public static class CriticalPathLength extends PreCheck {
+
+		@Override
+		public void checkDAG (McDAG d, int level, int nbCores) throws SchedulingException {
+			int cp[] = d.getView().getCriticalPaths();
+
+			if (level < cp.length && cp[level] > d.getDeadline())
+				throw reject("critical path of DAG "+d.getId()+" in level "+level+" is "+cp[level]+", deadline "+d.getDeadline());
+		}
+	}
+
+	/**
+	 * Every vertex can finish before its deadline when it starts at its activation
+	 */
+	public static class Laxity extends PreCheck {
+
+		@Override
+		public void checkDAG (McDAG d, int level, int nbCores) throws SchedulingException {
+			for (Vertex a : d.getVertices()) {
+				VertexScheduling v = (VertexScheduling) a;
+
+				if (v.getWcet(level) != 0 && v.getDeadlines()[level] - v.getWcet(level) < 0)
+					throw reject("negative laxity of "+v.getName()+" in level "+level);
+			}
+		}
+	}
+}
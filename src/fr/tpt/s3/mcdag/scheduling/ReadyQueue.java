@@ -0,0 +1,512 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Roberto Medina
+ * Written by Roberto Medina (rmedina@telecom-paristech.fr)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package fr.tpt.s3.mcdag.scheduling;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import fr.tpt.s3.mcdag.model.VertexScheduling;
+
+/**
+ * Ready list of the global schedulers: an indexed binary heap ordered by the weights
+ * of a criticality level, then by the ids of the vertices.
+ * Vertices are identified by their DAG id and vertex id, membership is a bitset and
+ * a weight change only moves the vertex in the heap.
+ *
+ * Vertices of different DAGs can share an id: among the ones with the same weight
+ * and id, the order is the one a stable sort of the ready list would give.
+ *
+ * The heap keys are the weights plus a global offset. When the weights of the waiting
+ * vertices all drop by the same amount at each step (laxities), passing the elapsed
+ * time as the offset leaves their keys unchanged: the policy only computes again the
+ * weights of the pending vertices, i.e. the ones added or touched since the last
+ * update and the ones whose wake-up step is reached.
+ * @author roberto
+ *
+ */
+public class ReadyQueue implements Iterable<VertexScheduling> {
+
+	private static final long NO_WAKE = Long.MAX_VALUE;
+
+	private int level;
+	private boolean ascIds;
+
+	// DAG id -> first key of its vertices
+	private int offsets[];
+
+	// Heap of the ready vertices
+	private VertexScheduling heap[];
+	private int size;
+
+	// Key -> position in the heap, weight plus offset used to order the heap and
+	// rank among the vertices sharing the same id
+	private int positions[];
+	private long weights[];
+	private long offset;
+	private int ranks[];
+	private BitSet members;
+
+	// Vertices whose weight has to be computed again, wake-up steps of the
+	// others (heap of step << 32 | key, stale entries are skipped)
+	private List<VertexScheduling> pending;
+	private BitSet pendingKeys;
+	private long wakes[];
+	private long calendar[];
+	private int calendarSize;
+
+	// Vertex id -> ready vertices with this id, in their relative order
+	private List<List<VertexScheduling>> groups;
+	private BitSet dirtyGroups;
+
+	// Buffers reused between two sorts
+	private VertexScheduling snapshot[];
+	private int candidates[];
+
+	/**
+	 * Constructor
+	 * @param level Criticality level giving the weights
+	 * @param ascIds True if vertices with the same weight are ordered by ascending ids
+	 * @param offsets First key of the vertices of each DAG (indexed by DAG id)
+	 * @param nbVertices Number of vertices of all the DAGs
+	 */
+	public ReadyQueue (int level, boolean ascIds, int offsets[], int nbVertices) {
+		this.level = level;
+		this.ascIds = ascIds;
+		this.offsets = offsets;
+		heap = new VertexScheduling[Math.max(nbVertices, 1)];
+		positions = new int[nbVertices];
+		weights = new long[nbVertices];
+		ranks = new int[nbVertices];
+		members = new BitSet(nbVertices);
+		pending = new ArrayList<VertexScheduling>();
+		pendingKeys = new BitSet(nbVertices);
+		wakes = new long[nbVertices];
+		Arrays.fill(wakes, NO_WAKE);
+		calendar = new long[Math.max(nbVertices, 1)];
+		groups = new ArrayList<List<VertexScheduling>>();
+		dirtyGroups = new BitSet();
+		snapshot = new VertexScheduling[heap.length];
+		candidates = new int[0];
+	}
+
+	private int key (VertexScheduling v) {
+		return offsets[v.getGraphId()] + v.getId();
+	}
+
+	/**
+	 * Tests if a is placed before b in the queue
+	 * @param a
+	 * @param b
+	 * @return
+	 */
+	public boolean before (VertexScheduling a, VertexScheduling b) {
+		int ka = key(a);
+		int kb = key(b);
+
+		if (weights[ka] != weights[kb])
+			return weights[ka] < weights[kb];
+		if (a.getId() != b.getId())
+			return ascIds ? a.getId() < b.getId() : a.getId() > b.getId();
+		return ranks[ka] < ranks[kb];
+	}
+
+	private List<VertexScheduling> group (int id) {
+		while (groups.size() <= id)
+			groups.add(new ArrayList<VertexScheduling>(2));
+		return groups.get(id);
+	}
+
+	/**
+	 * Adds a vertex at the end of the vertices with the same weight and id
+	 * @param v
+	 * @return false if the vertex was already in the queue
+	 */
+	public boolean add (VertexScheduling v) {
+		int k = key(v);
+
+		if (members.get(k))
+			return false;
+
+		List<VertexScheduling> g = group(v.getId());
+
+		ranks[k] = g.isEmpty() ? 0 : ranks[key(g.get(g.size() - 1))] + 1;
+		g.add(v);
+		if (g.size() > 1)
+			dirtyGroups.set(v.getId());
+
+		weights[k] = v.getWeights()[level] + offset;
+		members.set(k);
+		heap[size] = v;
+		positions[k] = size;
+		size++;
+		siftUp(size - 1);
+		touch(v);
+		return true;
+	}
+
+	/**
+	 * Removes a vertex from the queue
+	 * @param v
+	 * @return false if the vertex was not in the queue
+	 */
+	public boolean remove (VertexScheduling v) {
+		int k = key(v);
+
+		if (!members.get(k))
+			return false;
+
+		group(v.getId()).remove(v);
+		members.clear(k);
+		wakes[k] = NO_WAKE;
+
+		int pos = positions[k];
+		size--;
+		if (pos != size) {
+			heap[pos] = heap[size];
+			positions[key(heap[pos])] = pos;
+			heap[size] = null;
+			sift(pos);
+		} else {
+			heap[size] = null;
+		}
+		return true;
+	}
+
+	/**
+	 * Membership test
+	 * @param v
+	 * @return
+	 */
+	public boolean contains (VertexScheduling v) {
+		return members.get(key(v));
+	}
+
+	public int size () {
+		return size;
+	}
+
+	public boolean isEmpty () {
+		return size == 0;
+	}
+
+	/**
+	 * Reads the weights of all the vertices after a sort of the policy: only the
+	 * vertices whose weight changed are moved in the heap
+	 */
+	public void updateKeys () {
+		int n = size;
+
+		System.arraycopy(heap, 0, snapshot, 0, n);
+		for (int i = 0; i < n; i++) {
+			rekey(snapshot[i]);
+			snapshot[i] = null;
+		}
+		fixGroups();
+		clearPending();
+	}
+
+	/**
+	 * Marks a vertex whose weight has to be computed again at the next update
+	 * @param v
+	 */
+	public void touch (VertexScheduling v) {
+		int k = key(v);
+
+		if (members.get(k) && !pendingKeys.get(k)) {
+			pendingKeys.set(k);
+			pending.add(v);
+		}
+	}
+
+	/**
+	 * Marks a vertex as pending once the offset reaches a step, a previous
+	 * wake-up step of the vertex is replaced
+	 * @param v
+	 * @param step
+	 */
+	public void wakeAt (VertexScheduling v, long step) {
+		int k = key(v);
+
+		if (wakes[k] == step)
+			return;
+		wakes[k] = step;
+		if (calendarSize == calendar.length)
+			calendar = Arrays.copyOf(calendar, 2 * calendarSize);
+
+		// Sift up the new entry
+		long entry = step << 32 | k;
+		int pos = calendarSize++;
+
+		while (pos > 0 && calendar[(pos - 1) / 2] > entry) {
+			calendar[pos] = calendar[(pos - 1) / 2];
+			pos = (pos - 1) / 2;
+		}
+		calendar[pos] = entry;
+	}
+
+	/**
+	 * Moves the offset and returns the vertices whose weight has to be computed again:
+	 * the ones added or touched since the last update and the ones whose wake-up step
+	 * is reached. The other vertices keep their key.
+	 * @param offset
+	 * @return The pending vertices, read by updatePending
+	 */
+	public List<VertexScheduling> pending (long offset) {
+		this.offset = offset;
+
+		while (calendarSize > 0 && (calendar[0] >>> 32) <= offset) {
+			long entry = calendar[0];
+			int k = (int) entry;
+
+			popCalendar();
+			// A stale entry was replaced by a later wake-up step or the vertex left
+			if (wakes[k] == entry >>> 32) {
+				wakes[k] = NO_WAKE;
+				touch(heap[positions[k]]);
+			}
+		}
+
+		// Vertices that left the queue since they were touched
+		int n = 0;
+		for (int i = 0; i < pending.size(); i++) {
+			VertexScheduling v = pending.get(i);
+
+			if (members.get(key(v)))
+				pending.set(n++, v);
+			else
+				pendingKeys.clear(key(v));
+		}
+		pending.subList(n, pending.size()).clear();
+		return pending;
+	}
+
+	/**
+	 * Reads the weights of the pending vertices after a sort of the policy
+	 */
+	public void updatePending () {
+		for (int i = 0; i < pending.size(); i++)
+			rekey(pending.get(i));
+		fixGroups();
+		clearPending();
+	}
+
+	private void rekey (VertexScheduling v) {
+		int k = key(v);
+		long w = v.getWeights()[level] + offset;
+
+		if (w != weights[k]) {
+			weights[k] = w;
+			sift(positions[k]);
+			if (groups.get(v.getId()).size() > 1)
+				dirtyGroups.set(v.getId());
+		}
+	}
+
+	private void clearPending () {
+		for (int i = 0; i < pending.size(); i++)
+			pendingKeys.clear(key(pending.get(i)));
+		pending.clear();
+	}
+
+	private void popCalendar () {
+		long last = calendar[--calendarSize];
+		int pos = 0;
+
+		while (2 * pos + 1 < calendarSize) {
+			int child = 2 * pos + 1;
+
+			if (child + 1 < calendarSize && calendar[child + 1] < calendar[child])
+				child++;
+			if (calendar[child] >= last)
+				break;
+			calendar[pos] = calendar[child];
+			pos = child;
+		}
+		calendar[pos] = last;
+	}
+
+	/**
+	 * Vertices sharing an id keep their previous relative order for equal weights
+	 */
+	private void fixGroups () {
+		for (int id = dirtyGroups.nextSetBit(0); id >= 0; id = dirtyGroups.nextSetBit(id + 1)) {
+			List<VertexScheduling> g = groups.get(id);
+
+			for (int i = 1; i < g.size(); i++) {
+				VertexScheduling v = g.get(i);
+				int j = i - 1;
+
+				while (j >= 0 && weights[key(g.get(j))] > weights[key(v)]) {
+					g.set(j + 1, g.get(j));
+					j--;
+				}
+				g.set(j + 1, v);
+			}
+			for (int i = 0; i < g.size(); i++) {
+				int k = key(g.get(i));
+
+				if (ranks[k] != i) {
+					ranks[k] = i;
+					sift(positions[k]);
+				}
+			}
+		}
+		dirtyGroups.clear();
+	}
+
+	/**
+	 * Returns the weight of a vertex for the current offset: the weight read at its
+	 * last update, aged by the offset moves since then
+	 * @param v
+	 * @return
+	 */
+	public long weight (VertexScheduling v) {
+		return weights[key(v)] - offset;
+	}
+
+	/**
+	 * Writes the first vertices of the queue in order
+	 * @param out
+	 * @param k Number of vertices wanted
+	 * @return The number of vertices written
+	 */
+	public int head (VertexScheduling out[], int k) {
+		int n = 0;
+		int nbCand = 0;
+
+		if (candidates.length < k + 2)
+			candidates = new int[k + 2];
+
+		// Candidates are heap positions kept sorted, children of an extracted
+		// position become candidates
+		if (size > 0)
+			candidates[nbCand++] = 0;
+
+		while (n < k && nbCand > 0) {
+			int pos = candidates[0];
+
+			nbCand--;
+			System.arraycopy(candidates, 1, candidates, 0, nbCand);
+			out[n++] = heap[pos];
+
+			for (int c = 2 * pos + 1; c <= 2 * pos + 2 && c < size; c++) {
+				int i = nbCand;
+
+				while (i > 0 && before(heap[c], heap[candidates[i - 1]])) {
+					candidates[i] = candidates[i - 1];
+					i--;
+				}
+				candidates[i] = c;
+				nbCand++;
+			}
+		}
+		return n;
+	}
+
+	/**
+	 * Returns all the vertices in order
+	 * @return
+	 */
+	public List<VertexScheduling> toList () {
+		VertexScheduling out[] = new VertexScheduling[size];
+
+		return Arrays.asList(out).subList(0, head(out, size));
+	}
+
+	private void sift (int pos) {
+		if (pos > 0 && before(heap[pos], heap[(pos - 1) / 2]))
+			siftUp(pos);
+		else
+			siftDown(pos);
+	}
+
+	private void siftUp (int pos) {
+		VertexScheduling v = heap[pos];
+
+		while (pos > 0) {
+			int parent = (pos - 1) / 2;
+
+			if (!before(v, heap[parent]))
+				break;
+			heap[pos] = heap[parent];
+			positions[key(heap[pos])] = pos;
+			pos = parent;
+		}
+		heap[pos] = v;
+		positions[key(v)] = pos;
+	}
+
+	private void siftDown (int pos) {
+		VertexScheduling v = heap[pos];
+
+		while (2 * pos + 1 < size) {
+			int child = 2 * pos + 1;
+
+			if (child + 1 < size && before(heap[child + 1], heap[child]))
+				child++;
+			if (!before(heap[child], v))
+				break;
+			heap[pos] = heap[child];
+			positions[key(heap[pos])] = pos;
+			pos = child;
+		}
+		heap[pos] = v;
+		positions[key(v)] = pos;
+	}
+
+	/**
+	 * Iterates over the vertices in no particular order, the queue
+	 * must not be modified during the iteration
+	 */
+	@Override
+	public Iterator<VertexScheduling> iterator () {
+		return new Iterator<VertexScheduling>() {
+			private int i = 0;
+
+			@Override
+			public boolean hasNext() {
+				return i < size;
+			}
+
+			@Override
+			public VertexScheduling next() {
+				if (i >= size)
+					throw new NoSuchElementException();
+				return heap[i++];
+			}
+		};
+	}
+
+	/*
+	 * Getters & Setters
+	 */
+	public int getLevel() {
+		return level;
+	}
+
+	public boolean isAscIds() {
+		return ascIds;
+	}
+
+	public long getOffset() {
+		return offset;
+	}
+}
@@ -0,0 +1,114 @@
+/*******************************************************************************
+ * Copyright (c) 2017, 2018 Roberto Medina
+ * Written by Roberto Medina (rmedina@telecom-paristech.fr)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package fr.tpt.s3.mcdag.scheduling;
+
+import java.util.Collection;
+
+import fr.tpt.s3.mcdag.model.McDAG;
+
+/**
+ * Release calendar of the DAGs of a system: a binary min-heap of their next
+ * activation times. Times are counted from the start of the table construction,
+ * in the direction the table is built, and a DAG is released every period.
+ * DAGs released at the same time come out in the order of the collection
+ * given to the constructor.
+ * @author roberto
+ *
+ */
+public class ReleaseCalendar {
+
+	// DAGs in the order of the collection, their next release
+	private McDAG dags[];
+	private long releases[];
+	
+	// Heap of the positions of the DAGs
+	private int heap[];
+	
+	/**
+	 * Constructor, the first release of a DAG is after one period
+	 * @param dags
+	 */
+	public ReleaseCalendar (Collection<McDAG> dags) {
+		int p = 0;
+		
+		this.dags = new McDAG[dags.size()];
+		releases = new long[dags.size()];
+		heap = new int[dags.size()];
+		
+		for (McDAG d : dags) {
+			this.dags[p] = d;
+			releases[p] = d.getDeadline();
+			heap[p] = p;
+			siftUp(p);
+			p++;
+		}
+	}
+	
+	private boolean before (int a, int b) {
+		return releases[a] < releases[b] || (releases[a] == releases[b] && a < b);
+	}
+	
+	private void siftUp (int pos) {
+		int p = heap[pos];
+		
+		while (pos > 0) {
+			int parent = (pos - 1) / 2;
+			
+			if (!before(p, heap[parent]))
+				break;
+			heap[pos] = heap[parent];
+			pos = parent;
+		}
+		heap[pos] = p;
+	}
+	
+	private void siftDown (int pos) {
+		int p = heap[pos];
+		
+		while (2 * pos + 1 < heap.length) {
+			int child = 2 * pos + 1;
+			
+			if (child + 1 < heap.length && before(heap[child + 1], heap[child]))
+				child++;
+			if (!before(heap[child], p))
+				break;
+			heap[pos] = heap[child];
+			pos = child;
+		}
+		heap[pos] = p;
+	}
+	
+	/**
+	 * Returns the time of the next release, Long.MAX_VALUE without DAGs
+	 * @return
+	 */
+	public long next () {
+		return heap.length == 0 ? Long.MAX_VALUE : releases[heap[0]];
+	}
+	
+	/**
+	 * Removes the next release and schedules the following one of the same DAG
+	 * @return The released DAG
+	 */
+	public McDAG release () {
+		int p = heap[0];
+		
+		releases[p] += dags[p].getDeadline();
+		siftDown(0);
+		return dags[p];
+	}
+}
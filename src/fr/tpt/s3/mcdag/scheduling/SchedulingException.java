@@ -28,8 +28,19 @@ public class SchedulingException extends Exception{
 	 */
 	private static final long serialVersionUID = 1L;
 	
+	// Last scheduling events before the failure, null if the trace was off
+	private String trace;
+	
 	public SchedulingException (String message) {
 		super(message);
 	}
 
+	public String getTrace() {
+		return trace;
+	}
+
+	public void setTrace(String trace) {
+		this.trace = trace;
+	}
+
 }
@@ -43,6 +43,10 @@ public class SchedulingThread implements Runnable{
 	private Automata auto;
 	private boolean debug;
 	private boolean preempt;
+	private boolean eventDriven;
+	
+	// Search the smallest number of cores up to maxCores, 0 to use the cores of the file
+	private int maxCores;
 	
 	public SchedulingThread(String iFile, boolean oSF, boolean oPF, boolean debug, boolean preempt) {
 		dags = new HashSet<McDAG>();
@@ -58,7 +62,9 @@ public class SchedulingThread implements Runnable{
 
 	@Override
 	public void run() {
-		mcp.readXML();
+		mcp.read();
+		if (mcp.getQuantum() > 1)
+			System.out.println("["+Thread.currentThread().getName()+"] Scheduling with a time quantum of "+mcp.getQuantum());
 		
 		if (!isOutSchedFile())
 			System.err.println("[WARNING] No output file has been specified for the scheduling tables.");
@@ -98,12 +104,24 @@ public class SchedulingThread implements Runnable{
 			//setScheduler(new HybridMCSched(mcp.getDags(), mcp.getNbCores(), mcp.getNbLevels(), debug, isPreempt()));
 			setScheduler(new LeastLaxityFirstMCSched(mcp.getDags(), mcp.getNbCores(), mcp.getNbLevels(), debug, isPreempt()));
 			//setScheduler(new EartliestDeadlineFirstMCSched(mcp.getDags(), mcp.getNbCores(), mcp.getNbLevels(), debug, isPreempt()));
+			scheduler.setEventDriven(isEventDriven());
 			
 			try {
-				scheduler.scheduleSystem();
+				if (getMaxCores() > 0) {
+					int cores = scheduler.findMinCores(getMaxCores());
+					
+					System.out.println("["+Thread.currentThread().getName()+"] Minimum number of cores: "+cores);
+					mcp.setNbCores(cores);
+				} else {
+					scheduler.scheduleSystem();
+				}
+				mcp.sethPeriod(scheduler.gethPeriod());
+				mcp.setTable(scheduler.getTable());
 			} catch (SchedulingException e) {
 				System.err.println("[ERROR] Unable to schedule the system");
 				e.printStackTrace();
+				if (e.getTrace() != null)
+					System.err.print(e.getTrace());
 			} 
 		}
 		
@@ -116,6 +134,12 @@ public class SchedulingThread implements Runnable{
 				e.printStackTrace();
 			}
 		}
+		
+		// Tables are no longer needed once written
+		if (ls != null)
+			ls.closeTable();
+		if (scheduler != null)
+			scheduler.closeTable();
 	}
 
 	/*
@@ -208,4 +232,20 @@ public class SchedulingThread implements Runnable{
 	public void setPreempt(boolean preempt) {
 		this.preempt = preempt;
 	}
+
+	public boolean isEventDriven() {
+		return eventDriven;
+	}
+
+	public void setEventDriven(boolean eventDriven) {
+		this.eventDriven = eventDriven;
+	}
+
+	public int getMaxCores() {
+		return maxCores;
+	}
+
+	public void setMaxCores(int maxCores) {
+		this.maxCores = maxCores;
+	}
 }
@@ -0,0 +1,243 @@
+/*******************************************************************************
+ * Copyright (c) 2017, 2018 Roberto Medina
+ * Written by Roberto Medina (rmedina@telecom-paristech.fr)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package fr.tpt.s3.mcdag.scheduling;
+
+import fr.tpt.s3.mcdag.model.VertexScheduling;
+
+/**
+ * Ring buffer of the last scheduling events. Events are stored in arrays
+ * allocated once, recording does not build any String. The buffer is given
+ * with the SchedulingException when the construction of a table fails.
+ * Events are kept if the level of the trace is at least the level of the event,
+ * the schedulers check isOn before recording so a trace that is OFF costs a
+ * comparison. In debug mode the events are also printed when they are recorded.
+ * @author roberto
+ *
+ */
+public class SchedulingTrace {
+
+	// Levels of the trace
+	public static final int OFF = 0;
+	public static final int DECISIONS = 1;
+	public static final int DETAILED = 2;
+	
+	// Events
+	// DECISIONS: value is the length of the run, arg the core
+	public static final int ALLOCATION = 0;
+	public static final int COMPLETION = 1;
+	// DECISIONS: value is the DAG id
+	public static final int DAG_ACTIVATION = 2;
+	// DECISIONS: the constraints are not verified
+	public static final int NEGATIVE_LAXITY = 3;
+	public static final int MISSED_DEADLINE = 4;
+	// DECISIONS: value is the number of zero laxity vertices
+	public static final int ZERO_LAXITY = 5;
+	// DECISIONS: value is the remaining time, arg the slots left
+	public static final int SLOTS_LEFT = 6;
+	// DETAILED: value is the weight of the vertex
+	public static final int READY = 7;
+	public static final int PROMOTION = 8;
+	public static final int DELAY = 9;
+	
+	public static final int DEFAULT_CAPACITY = 256;
+	
+	private int level;
+	private boolean echo;
+	
+	// Ring buffer, next is the number of recorded events
+	private int capacity;
+	private long next;
+	private byte types[];
+	private int modes[];
+	private int slots[];
+	private int args[];
+	private long values[];
+	private VertexScheduling vertices[];
+	
+	/**
+	 * Constructor, the buffer is only allocated if the trace is on
+	 * @param level
+	 * @param capacity Number of events kept
+	 */
+	public SchedulingTrace (int level, int capacity) {
+		this.capacity = capacity;
+		setLevel(level);
+	}
+	
+	/**
+	 * Tests if the events of a level are recorded
+	 * @param eventLevel
+	 * @return
+	 */
+	public boolean isOn (int eventLevel) {
+		return level >= eventLevel;
+	}
+	
+	/**
+	 * Records an event, the oldest one is overwritten when the buffer is full
+	 * @param type
+	 * @param mode Criticality level of the table
+	 * @param slot
+	 * @param v Vertex of the event, can be null
+	 * @param arg
+	 * @param value
+	 */
+	public void record (int type, int mode, int slot, VertexScheduling v, int arg, long value) {
+		int i = (int) (next % capacity);
+		
+		types[i] = (byte) type;
+		modes[i] = mode;
+		slots[i] = slot;
+		vertices[i] = v;
+		args[i] = arg;
+		values[i] = value;
+		next++;
+		
+		if (echo)
+			System.out.println("[DEBUG "+Thread.currentThread().getName()+"] "+format(i));
+	}
+	
+	/**
+	 * Removes the recorded events
+	 */
+	public void clear () {
+		next = 0;
+		if (vertices != null) {
+			for (int i = 0; i < capacity; i++)
+				vertices[i] = null;
+		}
+	}
+	
+	/**
+	 * Returns the name of an event
+	 * @param type
+	 * @return
+	 */
+	public static String getEventName (int type) {
+		switch (type) {
+		case ALLOCATION:
+			return "allocation";
+		case COMPLETION:
+			return "completion";
+		case DAG_ACTIVATION:
+			return "DAG activation";
+		case NEGATIVE_LAXITY:
+			return "negative laxity";
+		case MISSED_DEADLINE:
+			return "deadline not respected";
+		case ZERO_LAXITY:
+			return "more than m zero laxity tasks";
+		case SLOTS_LEFT:
+			return "not enough slots left";
+		case READY:
+			return "ready";
+		case PROMOTION:
+			return "promotion";
+		case DELAY:
+			return "delay";
+		default:
+			return "event "+type;
+		}
+	}
+	
+	private String format (int i) {
+		StringBuilder sb = new StringBuilder();
+		
+		sb.append("buildTable(").append(modes[i]).append(") @t = ").append(slots[i]).append(": ").append(getEventName(types[i]));
+		if (vertices[i] != null)
+			sb.append(" ").append(vertices[i].getName());
+		
+		switch (types[i]) {
+		case ALLOCATION:
+			sb.append(" on core ").append(args[i]).append(" for ").append(values[i]).append(" slot(s)");
+			break;
+		case DAG_ACTIVATION:
+			sb.append(" ").append(values[i]);
+			break;
+		case ZERO_LAXITY:
+			sb.append(" (").append(values[i]).append(")");
+			break;
+		case SLOTS_LEFT:
+			sb.append(" ").append(args[i]).append(" for ").append(values[i]);
+			break;
+		case READY:
+		case NEGATIVE_LAXITY:
+			sb.append(", prio = ").append(values[i]);
+			break;
+		default:
+			break;
+		}
+		return sb.toString();
+	}
+	
+	/**
+	 * Formats the kept events, from the oldest one to the last one
+	 * @return null if nothing was recorded
+	 */
+	public String dump () {
+		if (next == 0)
+			return null;
+		
+		StringBuilder sb = new StringBuilder();
+		long first = Math.max(0, next - capacity);
+		
+		sb.append("Last ").append(next - first).append(" of ").append(next).append(" scheduling events:\n");
+		for (long e = first; e < next; e++)
+			sb.append("\t").append(format((int) (e % capacity))).append("\n");
+		return sb.toString();
+	}
+	
+	/*
+	 * Getters & Setters
+	 */
+	public int getLevel() {
+		return level;
+	}
+
+	/**
+	 * Changes the level, the buffer is allocated when the trace is turned on
+	 * @param level
+	 */
+	public void setLevel(int level) {
+		this.level = level;
+		if (level > OFF && types == null) {
+			capacity = Math.max(capacity, 1);
+			types = new byte[capacity];
+			modes = new int[capacity];
+			slots = new int[capacity];
+			args = new int[capacity];
+			values = new long[capacity];
+			vertices = new VertexScheduling[capacity];
+		}
+	}
+
+	public boolean isEcho() {
+		return echo;
+	}
+
+	public void setEcho(boolean echo) {
+		this.echo = echo;
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	public long getNbEvents() {
+		return next;
+	}
+}
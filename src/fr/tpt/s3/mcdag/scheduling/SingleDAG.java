@@ -22,6 +22,7 @@ import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.ListIterator;
 
+import fr.tpt.s3.mcdag.model.SchedulingTable;
 import fr.tpt.s3.mcdag.model.Vertex;
 import fr.tpt.s3.mcdag.model.VertexScheduling;
 import fr.tpt.s3.mcdag.scheduling.old.AbstractMixedCriticalityScheduler;
@@ -47,7 +48,7 @@ public class SingleDAG extends AbstractMixedCriticalityScheduler {
 	private int weights_HI[];
 	
 	// Scheduling tables, i: slot, j: task
-	private String sched[][][];
+	private SchedulingTable sched;
 	private String S_HLFET[][];
 	private String S_HLFET_HI[][];
 	
@@ -72,19 +73,20 @@ public class SingleDAG extends AbstractMixedCriticalityScheduler {
 	 * Initializes scheduling tables
 	 */
 	protected void initTables () {
-		sched = new String[2][getDeadline()][getNbCores()];
-		
-		for (int i = 0; i < 2; i++) {
-			for (int j = 0; j < getDeadline(); j++) {
-				for (int k = 0; k < getNbCores(); k++) {
-					sched[i][j][k] = "-";
-				}
-			}
-		}
+		closeTable();
+		sched = new SchedulingTable(2, getDeadline(), getNbCores(), getMxcDag().getVertices().size());
 		
 		if (debug) System.out.println("[DEBUG "+Thread.currentThread().getName()+"] initTables(): Sched tables initialized!");
 	}
 	
+	/**
+	 * Releases the scheduling tables, their spill file is deleted
+	 */
+	public void closeTable () {
+		if (sched != null)
+			sched.close();
+	}
+	
 	/**
 	 * Calc weights for HLFET for both tables
 	 */
@@ -209,7 +211,7 @@ public class SingleDAG extends AbstractMixedCriticalityScheduler {
 			for(int c = 0; c < nbCores; c++) {
 				if (li_it.hasNext()){
 					VertexScheduling n = li_it.next(); // Get head of the list
-					sched[1][t][c] = n.getName(); // Give the slot to the task
+					sched.set(1, t, c, n.getName()); // Give the slot to the task
 					
 					// Decrement slots left for the task
 					t_hi[n.getId()] = t_hi[n.getId()] - 1;
@@ -307,7 +309,7 @@ public class SingleDAG extends AbstractMixedCriticalityScheduler {
 				if (li_it.hasNext()){
 					VertexScheduling n = li_it.next(); // Get head of the list
 					
-					sched[0][t][c] = n.getName(); // Give the slot to the task
+					sched.set(0, t, c, n.getName()); // Give the slot to the task
 
 					// Decrement slots left for the task
 					t_lo[n.getId()] = t_lo[n.getId()] - 1;
@@ -737,7 +739,7 @@ public class SingleDAG extends AbstractMixedCriticalityScheduler {
 	public void printS_HI(){
 		for (int c = 0; c < nbCores; c++) {
 			for(int t = 0; t < deadline; t++) {
-				System.out.print(sched[1][t][c]+" | ");
+				System.out.print(sched.getCell(1, t, c)+" | ");
 			}
 			System.out.print("\n");
 		}
@@ -751,7 +753,7 @@ public class SingleDAG extends AbstractMixedCriticalityScheduler {
 	public void printS_LO(){
 		for (int c = 0; c < nbCores; c++) {
 			for(int t = 0; t < deadline; t++) {
-				System.out.print(sched[0][t][c]+" | ");
+				System.out.print(sched.getCell(0, t, c)+" | ");
 			}
 			System.out.print("\n");
 		}
@@ -827,11 +829,26 @@ public class SingleDAG extends AbstractMixedCriticalityScheduler {
 		this.debug = debug;
 	}
 
+	/**
+	 * Builds the String version of the scheduling tables
+	 * @return
+	 */
 	public String[][][] getSched() {
-		return sched;
+		return sched.toStrings();
 	}
 
 	public void setSched(String sched[][][]) {
+		closeTable();
+		this.sched = SchedulingTable.fromStrings(sched);
+	}
+
+	public SchedulingTable getTable() {
+		return sched;
+	}
+
+	public void setTable(SchedulingTable sched) {
+		if (sched != this.sched)
+			closeTable();
 		this.sched = sched;
 	}
 }
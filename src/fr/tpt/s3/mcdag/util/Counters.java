@@ -17,16 +17,14 @@
 package fr.tpt.s3.mcdag.util;
 
 import java.util.Hashtable;
-import java.util.Iterator;
-import java.util.LinkedList;
-import java.util.List;
-import java.util.Set;
 
+import fr.tpt.s3.mcdag.model.SchedulingTable;
 import fr.tpt.s3.mcdag.model.VertexScheduling;
 
 /**
  * Utility class to count the number of context switches and preemptions
- * on a scheduling table
+ * on a scheduling table. The counts come from a single pass over the table,
+ * see {@link TableStats}.
  * @author roberto
  *
  */
@@ -41,56 +39,41 @@ public class Counters {
 	 * @param nbCores
 	 */
 	public static void countContextSwitch (String sched[][][], Hashtable<VertexScheduling, Integer> refs, int nbLevels, int hPeriod, int nbCores) {
-		// Check for all tasks how many context switches it has
-		Set<VertexScheduling> keys = refs.keySet();
-		
-		for (VertexScheduling a : keys) {
-			int nbContSwitch = refs.get(a);
-			
-			// Iterate through the table to count context switches of a task
-			for (int l = 0; l < nbLevels; l++) {
-				for (int s = 0; s < hPeriod; s++) {
-					if (s != 0) { // Check if task was running in the previous slot
-						boolean wasRunning = false;
-						boolean isRunning = false;
-						
-						for (int c = 0; c < nbCores; c++) {
-							if (sched[l][s][c].contains(a.getName())) {
-								isRunning = true;
-								break;
-							}
-						}
-						
-						for (int c = 0; c < nbCores; c++) {
-							if (sched[l][s - 1][c].contains(a.getName())) {
-								wasRunning = true;
-								break;
-							}
-						}
-						
-						if (!wasRunning && isRunning)
-							nbContSwitch++;	
-					}					
-				}
-			}
-			refs.put(a, nbContSwitch);
-		}
+		countContextSwitch(SchedulingTable.fromStrings(sched), refs, nbLevels, hPeriod, nbCores);
 	}
 	
-	private static VertexScheduling lookForInList (List<VertexScheduling> listActors, String name) {
-		for (VertexScheduling a: listActors) {
-			if (a.getName().contentEquals(name))
-				return a;
-		}
-		return null;
+	/**
+	 * Method that counts the number of context switches for all tasks
+	 * @param table
+	 * @param refs
+	 * @param nbLevels
+	 * @param hPeriod
+	 * @param nbCores
+	 * @return The statistics of the table
+	 */
+	public static TableStats countContextSwitch (SchedulingTable table, Hashtable<VertexScheduling, Integer> refs, int nbLevels, int hPeriod, int nbCores) {
+		TableStats stats = new TableStats(table, refs.keySet(), nbLevels, hPeriod, nbCores);
+		
+		for (VertexScheduling a : refs.keySet())
+			refs.put(a, refs.get(a) + stats.getContextSwitches(a));
+		return stats;
 	}
 	
-	private static VertexScheduling lookForInKeys (Set<VertexScheduling> keys, String name) {
-		for (VertexScheduling a: keys) {
-			if (a.getName().contentEquals(name))
-				return a;
+	/**
+	 * Adds the starts of the tasks to their count, when several tasks
+	 * have the same name the first key found gets the count
+	 * @param stats
+	 * @param refs
+	 */
+	private static void addStarts (TableStats stats, Hashtable<VertexScheduling, Integer> refs) {
+		int starts[] = stats.getStarts();
+		
+		for (int n = 0; n < starts.length; n++) {
+			VertexScheduling a = stats.getTask(n);
+			
+			if (starts[n] != 0 && a != null)
+				refs.put(a, refs.get(a) + starts[n]);
 		}
-		return null;
 	}
 	
 	/**
@@ -104,104 +87,68 @@ public class Counters {
 	public static void countPreemptions (String sched[][][],
 										 Hashtable<VertexScheduling, Integer> refs,
 										 int levels, int hPeriod, int nbCores) {
+		countPreemptions(SchedulingTable.fromStrings(sched), refs, levels, hPeriod, nbCores);
+	}
+	
+	/**
+	 * Method to count the number of preemptions for each task
+	 * @param sched
+	 * @param refs
+	 * @param levels
+	 * @param hPeriod
+	 * @param deadline
+	 * @param nbCores
+	 */
+	public static void countPreemptions (String sched[][][],
+										 Hashtable<VertexScheduling, Integer> refs,
+										 int levels, int hPeriod, int deadline, int nbCores) {
+		countPreemptions(SchedulingTable.fromStrings(sched), refs, levels, hPeriod, deadline, nbCores);
+	}
+	
+	/**
+	 * Method to count the number of preemptions for each task
+	 * @param table
+	 * @param refs
+	 * @param levels
+	 * @param hPeriod
+	 * @param nbCores
+	 * @return The statistics of the table
+	 */
+	public static TableStats countPreemptions (SchedulingTable table,
+											   Hashtable<VertexScheduling, Integer> refs,
+											   int levels, int hPeriod, int nbCores) {
+		TableStats stats = new TableStats(table, refs.keySet(), levels, hPeriod, nbCores);
 		
-		Set<VertexScheduling> keys = refs.keySet();
-		List<VertexScheduling> runningPreviously = new LinkedList<>();
-				
-		for (int i = 0; i < levels; i++) {
-			for (int j = 0; j < hPeriod; j++) {
-				// Check if elements that were running in the previous slot are still running
-				Iterator<VertexScheduling> lit = runningPreviously.listIterator();
-				while (lit.hasNext()) {
-					boolean stillRunning = false;
-					VertexScheduling a = lit.next();
-					
-					for (int k = 0; k < nbCores; k++) {
-						if (sched[i][j][k].contentEquals(a.getName())) {
-							stillRunning = true;
-							break;
-						}
-					}
-					
-					if (!stillRunning)
-						lit.remove();	
-				}
-								
-				// Add new tasks that are scheduled + increment their preemption count
-				for (int k = 0; k < nbCores; k++) {
-					if (!sched[i][j][k].contentEquals("-") &&
-							lookForInList(runningPreviously, sched[i][j][k]) == null) {
-						VertexScheduling toAdd = lookForInKeys(keys, sched[i][j][k]);
-						int val = refs.get(toAdd);
-						val++;
-						refs.put(toAdd, val);
-						runningPreviously.add(toAdd);
-					}
-						
-				}
-			}
-		}
+		addStarts(stats, refs);
 		
 		// Decrement the preemption count by the nb of activations
-		for (VertexScheduling a : keys) {
+		for (VertexScheduling a : refs.keySet()) {
 			int nbActivations = 0;
 			for (int lvl = 0; lvl < levels; lvl++) {
 				if (a.getWcet(lvl) != 0)
 					nbActivations += (int)(hPeriod / a.getGraphDead());
 			}
-			int val = refs.get(a);
-			val -= nbActivations;
-			refs.put(a, val);
+			refs.put(a, refs.get(a) - nbActivations);
 		}
+		return stats;
 	}
 	
 	/**
 	 * Method to count the number of preemptions for each task
-	 * @param sched
+	 * @param table
 	 * @param refs
 	 * @param levels
 	 * @param hPeriod
+	 * @param deadline
 	 * @param nbCores
+	 * @return The statistics of the table
 	 */
-	public static void countPreemptions (String sched[][][],
-										 Hashtable<VertexScheduling, Integer> refs,
-										 int levels, int hPeriod, int deadline, int nbCores) {
+	public static TableStats countPreemptions (SchedulingTable table,
+											   Hashtable<VertexScheduling, Integer> refs,
+											   int levels, int hPeriod, int deadline, int nbCores) {
+		TableStats stats = new TableStats(table, refs.keySet(), levels, deadline, nbCores);
 		
-		Set<VertexScheduling> keys = refs.keySet();
-		List<VertexScheduling> runningPreviously = new LinkedList<>();
-				
-		for (int i = 0; i < levels; i++) {
-			for (int j = 0; j < deadline; j++) {
-				// Check if elements that were running in the previous slot are still running
-				Iterator<VertexScheduling> lit = runningPreviously.listIterator();
-				while (lit.hasNext()) {
-					boolean stillRunning = false;
-					VertexScheduling a = lit.next();
-					
-					for (int k = 0; k < nbCores; k++) {
-						if (sched[i][j][k].contentEquals(a.getName())) {
-							stillRunning = true;
-							break;
-						}
-					}
-					
-					if (!stillRunning)
-						lit.remove();	
-				}
-								
-				// Add new tasks that are scheduled + increment their preemption count
-				for (int k = 0; k < nbCores; k++) {
-					if (!sched[i][j][k].contentEquals("-") &&
-							lookForInList(runningPreviously, sched[i][j][k]) == null) {
-						VertexScheduling toAdd = lookForInKeys(keys, sched[i][j][k]);
-						int val = refs.get(toAdd);
-						val++;
-						refs.put(toAdd, val);
-						runningPreviously.add(toAdd);
-					}
-						
-				}
-			}
-		}
+		addStarts(stats, refs);
+		return stats;
 	}
 }
@@ -0,0 +1,137 @@
+/*******************************************************************************
+ * Copyright (c) 2017, 2018 Roberto Medina
+ * Written by Roberto Medina (rmedina@telecom-paristech.fr)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package fr.tpt.s3.mcdag.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogram of non negative values with a bounded relative error.
+ * Values lower than 2^SUB_BITS have their own bucket, the other ones are
+ * counted in 2^SUB_BITS buckets for each power of two, so a percentile is
+ * given with an error lower than 1 / 2^SUB_BITS. Recording does not lock
+ * and can be done by several threads.
+ * @author roberto
+ *
+ */
+public class Histogram {
+
+	private static final int SUB_BITS = 4;
+	private static final int SUB_COUNT = 1 << SUB_BITS;
+	private static final int NB_BUCKETS = SUB_COUNT + (63 - SUB_BITS) * SUB_COUNT;
+	
+	private AtomicLongArray buckets;
+	private LongAdder count;
+	private LongAdder sum;
+	private AtomicLong max;
+	
+	public Histogram () {
+		buckets = new AtomicLongArray(NB_BUCKETS);
+		count = new LongAdder();
+		sum = new LongAdder();
+		max = new AtomicLong();
+	}
+	
+	/**
+	 * Bucket of a value
+	 * @param value
+	 * @return
+	 */
+	private static int bucket (long value) {
+		if (value < SUB_COUNT)
+			return (int) value;
+		
+		int exp = 63 - Long.numberOfLeadingZeros(value);
+		int sub = (int) (value >>> (exp - SUB_BITS)) & (SUB_COUNT - 1);
+		
+		return SUB_COUNT + (exp - SUB_BITS) * SUB_COUNT + sub;
+	}
+	
+	/**
+	 * Highest value counted in a bucket
+	 * @param bucket
+	 * @return
+	 */
+	private static long highest (int bucket) {
+		if (bucket < SUB_COUNT)
+			return bucket;
+		
+		int exp = (bucket - SUB_COUNT) / SUB_COUNT + SUB_BITS;
+		long sub = (bucket - SUB_COUNT) % SUB_COUNT;
+		
+		return ((SUB_COUNT + sub + 1) << (exp - SUB_BITS)) - 1;
+	}
+	
+	/**
+	 * Records a value, negative values are counted as 0
+	 * @param value
+	 */
+	public void record (long value) {
+		long v = Math.max(value, 0);
+		long m = max.get();
+		
+		buckets.incrementAndGet(bucket(v));
+		count.increment();
+		sum.add(v);
+		while (v > m && !max.compareAndSet(m, v))
+			m = max.get();
+	}
+	
+	/**
+	 * Returns the value below which a percentage of the recorded values fall
+	 * @param percentile Between 0 and 100
+	 * @return
+	 */
+	public long getValueAtPercentile (double percentile) {
+		long total = getCount();
+		long target = (long) Math.ceil(total * Math.min(percentile, 100.0) / 100.0);
+		long seen = 0;
+		
+		if (total == 0)
+			return 0;
+		
+		target = Math.max(target, 1);
+		for (int b = 0; b < NB_BUCKETS; b++) {
+			seen += buckets.get(b);
+			if (seen >= target)
+				return Math.min(highest(b), getMax());
+		}
+		return getMax();
+	}
+	
+	public double getMean () {
+		long total = getCount();
+		
+		return total == 0 ? 0 : (double) getSum() / total;
+	}
+	
+	/*
+	 * Getters
+	 */
+	public long getCount() {
+		return count.sum();
+	}
+	
+	public long getSum() {
+		return sum.sum();
+	}
+	
+	public long getMax() {
+		return max.get();
+	}
+}
@@ -16,6 +16,11 @@
  *******************************************************************************/
 package fr.tpt.s3.mcdag.util;
 
+import java.util.Set;
+
+import fr.tpt.s3.mcdag.model.McDAG;
+import fr.tpt.s3.mcdag.model.Vertex;
+
 /**
  * Utility Math class
  * @author roberto
@@ -24,23 +29,111 @@ package fr.tpt.s3.mcdag.util;
 public class MathMCDAG {
 	
 	public static int gcd (int a , int b) {
+		return (int) gcd((long) a, (long) b);
+	}
+	
+	public static long gcd (long a, long b) {
 		while (b > 0) {
-			int tmp = b;
+			long tmp = b;
 			b = a % b;
 			a = tmp;
 		}
 		return a;
 	}
 	
+	/**
+	 * Least common multiple
+	 * @param a
+	 * @param b
+	 * @return
+	 * @throws ArithmeticException If the result does not fit in a long
+	 */
+	public static long lcm (long a, long b) {
+		return Math.multiplyExact(a, b / gcd(a, b));
+	}
+	
+	/**
+	 * Least common multiple
+	 * @param a
+	 * @param b
+	 * @return
+	 * @throws ArithmeticException If the result does not fit in an int
+	 */
 	public static int lcm (int a, int b) {
-		return a * (b / gcd(a, b));
+		return Math.toIntExact(lcm((long) a, (long) b));
 	}
 	
-	public static int lcm (int[] input) {
-		int res = input[0];
+	/**
+	 * Hyper-period of a set of periods, computed without overflow
+	 * @param input
+	 * @return
+	 * @throws ArithmeticException If the result does not fit in a long
+	 */
+	public static long hyperPeriod (int[] input) {
+		long res = input[0];
 		for (int i = 1; i < input.length; i ++)
-			res = lcm(res, input[i]);
+			res = lcm(res, (long) input[i]);
 		
 		return res;
 	}
+	
+	/**
+	 * Least common multiple of a set of periods
+	 * @param input
+	 * @return
+	 * @throws ArithmeticException If the result does not fit in an int
+	 */
+	public static int lcm (int[] input) {
+		return Math.toIntExact(hyperPeriod(input));
+	}
+	
+	/**
+	 * Time quantum of a system: greatest common divisor of the deadlines
+	 * and of the WCETs in all the levels
+	 * @param setDAGs
+	 * @return 1 if the times have no common divisor
+	 */
+	public static int quantum (Set<McDAG> setDAGs) {
+		int q = 0;
+		
+		for (McDAG d : setDAGs) {
+			q = gcd(q, d.getDeadline());
+			for (Vertex a : d.getVertices()) {
+				for (int c : a.getWcets())
+					q = gcd(q, c);
+			}
+			if (q == 1)
+				return 1;
+		}
+		return Math.max(q, 1);
+	}
+	
+	/**
+	 * Lower bound on the number of cores needed to schedule a multi-DAG
+	 * multi-level system: the highest utilization of a level and of a DAG
+	 * @param setDAGs
+	 * @param lvl
+	 * @return
+	 */
+	public static int minCores (Set<McDAG> setDAGs, int lvl) {
+		double[] sums = new double[lvl];
+		double max = 0;
+		int cores = 0;
+		
+		for (McDAG d : setDAGs) {
+			for (int i = 0; i < lvl; i++)
+				sums[i] += d.getUi(i);
+			// Dual-criticality bound of the DAG
+			if (lvl >= 2 && cores < d.getMinCores())
+				cores = d.getMinCores();
+		}
+		
+		// Look for the max
+		for (int i = 0; i < lvl; i++) {
+			if (max < sums[i])
+				max = sums[i];
+		}
+		
+		return Math.max(cores, (int) Math.ceil(max));
+	}
 }
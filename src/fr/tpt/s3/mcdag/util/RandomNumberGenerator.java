@@ -16,19 +16,67 @@
  *******************************************************************************/
 package fr.tpt.s3.mcdag.util;
 
+import java.util.SplittableRandom;
+
 import cern.jet.random.Uniform;
 import cern.jet.random.engine.MersenneTwister;
 
+/**
+ * Random numbers used by the generator. The default generator is seeded with
+ * the date. A seeded generator draws from one stream of a master seed: the
+ * same seed and stream always give the same numbers and different streams are
+ * independent, so generators running in parallel need no shared state.
+ * @author roberto
+ *
+ */
 public class RandomNumberGenerator {
 	
+	// Increment used by SplittableRandom between two seeds
+	private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+	
 	private MersenneTwister random;
 	private Uniform uniform;
+	private SplittableRandom splittable;
 	
 	public RandomNumberGenerator () {
 		random = new MersenneTwister(new java.util.Date());
 		uniform = new Uniform(random);
 	}
-
+	
+	/**
+	 * Seeded generator
+	 * @param seed Master seed
+	 * @param stream Index of the stream, e.g. the index of the generated file
+	 */
+	public RandomNumberGenerator (long seed, long stream) {
+		this(new SplittableRandom(mix(seed + GOLDEN_GAMMA * stream)).split());
+	}
+	
+	private RandomNumberGenerator (SplittableRandom splittable) {
+		this.splittable = splittable;
+	}
+	
+	/**
+	 * Finalizer of SplittableRandom, close seeds give unrelated values
+	 * @param z
+	 * @return
+	 */
+	private static long mix (long z) {
+		z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+		z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+		return z ^ (z >>> 31);
+	}
+	
+	/**
+	 * Returns a new generator with a stream independent of this one
+	 * @return
+	 */
+	public RandomNumberGenerator split () {
+		if (splittable == null)
+			return new RandomNumberGenerator(new SplittableRandom(((long) random.nextInt() << 32) ^ random.nextInt()));
+		return new RandomNumberGenerator(splittable.split());
+	}
+	
 	/**
 	 * Returns a uniform integer between a lower and an upper bound
 	 * @param lb
@@ -36,7 +84,11 @@ public class RandomNumberGenerator {
 	 * @return
 	 */
 	public int randomUnifInt(int lb, int ub) {
-		return uniform.nextIntFromTo(lb, ub);
+		if (splittable == null)
+			return uniform.nextIntFromTo(lb, ub);
+		if (ub <= lb)
+			return lb;
+		return (int) (lb + splittable.nextLong(1L + ub - lb));
 	}
 	
 	/**
@@ -46,6 +98,8 @@ public class RandomNumberGenerator {
 	 * @return
 	 */
 	public double randomUnifDouble (double lb, double ub) {
-		return uniform.nextDoubleFromTo(lb, ub);
+		if (splittable == null)
+			return uniform.nextDoubleFromTo(lb, ub);
+		return lb + (ub - lb) * splittable.nextDouble();
 	}
 }
@@ -0,0 +1,257 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Roberto Medina
+ * Written by Roberto Medina (rmedina@telecom-paristech.fr)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package fr.tpt.s3.mcdag.util;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+import fr.tpt.s3.mcdag.model.SchedulingTable;
+import fr.tpt.s3.mcdag.model.VertexScheduling;
+
+/**
+ * Execution statistics of the tasks of a scheduling table, all computed in
+ * a single pass over the index-encoded cells.
+ * Slots are visited level after level. For each task (dictionary index) we count:
+ * - starts: slots where it runs and did not run in the previous visited slot
+ * - context switches: starts that are not on the first slot of a level
+ * - migrations: a job resuming on a different core than the one it last ran on
+ * - activations: jobs that run at least once, a job of a task with a period P
+ *   covers the slots [k * P, (k + 1) * P[ of a level
+ * @author roberto
+ *
+ */
+public class TableStats {
+
+	private SchedulingTable table;
+	private int levels;
+	private int slots;
+	private int nbCores;
+
+	// Counters by dictionary index
+	private int starts[];
+	private int contextSwitches[];
+	private int migrations[];
+	private int activations[];
+
+	// Tasks matched by name, the first one found is kept
+	private Map<String, VertexScheduling> tasks;
+
+	/**
+	 * Constructor, the statistics are computed right away
+	 * @param table
+	 * @param tasks Tasks of the table, their graph deadline is the period of their jobs
+	 * @param levels
+	 * @param slots Number of slots visited in each level
+	 * @param nbCores
+	 */
+	public TableStats (SchedulingTable table, Collection<VertexScheduling> tasks,
+					   int levels, int slots, int nbCores) {
+		this.table = table;
+		this.levels = levels;
+		this.slots = slots;
+		this.nbCores = nbCores;
+		this.tasks = new HashMap<String, VertexScheduling>(2 * tasks.size() + 1);
+
+		for (VertexScheduling a : tasks) {
+			if (!this.tasks.containsKey(a.getName()))
+				this.tasks.put(a.getName(), a);
+		}
+		count();
+	}
+
+	/**
+	 * Period of the jobs of a dictionary index, the whole level if it is unknown
+	 * @param index
+	 * @return
+	 */
+	private int period (int index) {
+		VertexScheduling a = tasks.get(table.getName(index));
+
+		if (a == null || a.getGraphDead() <= 0 || a.getGraphDead() > slots)
+			return slots;
+		return a.getGraphDead();
+	}
+
+	private void count () {
+		int nbNames = table.getNbNames();
+		int periods[] = new int[nbNames];
+		int lastSeen[] = new int[nbNames];
+		int lastJob[] = new int[nbNames];
+		int lastCore[] = new int[nbNames];
+		int step = 0;
+
+		starts = new int[nbNames];
+		contextSwitches = new int[nbNames];
+		migrations = new int[nbNames];
+		activations = new int[nbNames];
+
+		for (int n = 0; n < nbNames; n++) {
+			periods[n] = period(n);
+			lastSeen[n] = -2;
+			lastJob[n] = -1;
+			lastCore[n] = -1;
+		}
+
+		for (int i = 0; i < levels; i++) {
+			for (int j = 0; j < slots; j++) {
+				for (int k = 0; k < nbCores; k++) {
+					int index = table.get(i, j, k);
+
+					if (index == SchedulingTable.IDLE || lastSeen[index] == step)
+						continue;
+
+					// Steps where the jobs of the task are released
+					int job = step - j % periods[index];
+					if (job != lastJob[index]) {
+						activations[index]++;
+						lastJob[index] = job;
+						lastCore[index] = -1;
+					}
+
+					if (lastSeen[index] != step - 1) {
+						starts[index]++;
+						if (j != 0)
+							contextSwitches[index]++;
+					}
+
+					if (lastCore[index] != -1 && lastCore[index] != k)
+						migrations[index]++;
+					lastCore[index] = k;
+					lastSeen[index] = step;
+				}
+				step++;
+			}
+		}
+	}
+
+	private static int sum (int values[]) {
+		int ret = 0;
+
+		for (int v : values)
+			ret += v;
+		return ret;
+	}
+
+	/**
+	 * Returns the dictionary index of a task, IDLE if it never runs
+	 * @param a
+	 * @return
+	 */
+	public int indexOf (VertexScheduling a) {
+		int index = table.indexOf(a.getName());
+
+		return index < starts.length ? index : SchedulingTable.IDLE;
+	}
+
+	/**
+	 * Returns the task counted with a dictionary index, null if it is unknown
+	 * @param index
+	 * @return
+	 */
+	public VertexScheduling getTask (int index) {
+		return tasks.get(table.getName(index));
+	}
+
+	public int getStarts (VertexScheduling a) {
+		int index = indexOf(a);
+
+		return index == SchedulingTable.IDLE ? 0 : starts[index];
+	}
+
+	public int getContextSwitches (VertexScheduling a) {
+		int index = indexOf(a);
+
+		return index == SchedulingTable.IDLE ? 0 : contextSwitches[index];
+	}
+
+	public int getMigrations (VertexScheduling a) {
+		int index = indexOf(a);
+
+		return index == SchedulingTable.IDLE ? 0 : migrations[index];
+	}
+
+	public int getActivations (VertexScheduling a) {
+		int index = indexOf(a);
+
+		return index == SchedulingTable.IDLE ? 0 : activations[index];
+	}
+
+	/**
+	 * Preemptions of a task: the starts that do not begin a job
+	 * @param a
+	 * @return
+	 */
+	public int getPreemptions (VertexScheduling a) {
+		return getStarts(a) - getActivations(a);
+	}
+
+	public int getTotalStarts () {
+		return sum(starts);
+	}
+
+	public int getTotalContextSwitches () {
+		return sum(contextSwitches);
+	}
+
+	public int getTotalMigrations () {
+		return sum(migrations);
+	}
+
+	public int getTotalActivations () {
+		return sum(activations);
+	}
+
+	public int getTotalPreemptions () {
+		return getTotalStarts() - getTotalActivations();
+	}
+
+	/*
+	 * Getters
+	 */
+	public SchedulingTable getTable() {
+		return table;
+	}
+
+	public int getLevels() {
+		return levels;
+	}
+
+	public int getSlots() {
+		return slots;
+	}
+
+	public int getNbCores() {
+		return nbCores;
+	}
+
+	public int[] getStarts() {
+		return starts;
+	}
+
+	public int[] getContextSwitches() {
+		return contextSwitches;
+	}
+
+	public int[] getMigrations() {
+		return migrations;
+	}
+
+	public int[] getActivations() {
+		return activations;
+	}
+}